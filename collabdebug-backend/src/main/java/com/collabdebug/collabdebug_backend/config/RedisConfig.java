@@ -1,28 +1,36 @@
 package com.collabdebug.collabdebug_backend.config;
 
 import com.collabdebug.collabdebug_backend.redis.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
- * 🚨 CRITICAL FIX: Redis configuration now registers ALL message listeners
- * for complete real-time support:
- * 
- * 1. TerminalOutputListener - terminal execution output
- * 2. ChatMessageListener - chat messages
- * 3. EditMessageListener - collaborative code edits
- * 4. PresenceListener - participant join/leave events (THIS WAS MISSING!)
- * 5. SessionMetaListener - session metadata changes (language, etc.)
- * 6. SessionEndListener - session end notifications
- * 
- * This ensures all changes are instantly propagated via WebSocket to connected clients.
+ * Redis configuration: connection, template and pub/sub listeners.
+ * <p>
+ * All session channels (session-updates, session-chat, session-terminal, session-presence,
+ * session-meta, session-end) are handled by one {@link RedisRelayDispatcher}, which routes by
+ * channel prefix and relays to the matching STOMP topic so every change reaches WebSocket clients
+ * on every instance; {@link SessionSubscriptions} decides which of them this node subscribes to.
+ * Each node additionally listens on its own inbox channel (NodeInboxListener).
+ * With {@code collab.edits.transport=stream}, edits travel over a Redis Stream (EditStreamTransport)
+ * instead of the session-updates channels.
+ * <p>
+ * The container calls listeners on its subscription thread; {@link RelayLanes} moves each message
+ * onto the lane of its session, so messages of a session stay in order while sessions relay in
+ * parallel.
+ * <p>
+ * With {@code collab.transport=loopback} (single node) there is no listener container: events stay
+ * in the JVM (LoopbackSessionTransport), and chat history, snapshots and leases do not use Redis either.
  */
 @Configuration
 public class RedisConfig {
@@ -33,65 +41,45 @@ public class RedisConfig {
     }
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory cf) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory cf,
+                                                       @Value("${collab.redis.codec:binary}") String codec) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(cf);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        // "binary": compact encoding for pub/sub payloads; "json": readable payloads for debugging.
+        // The binary codec still reads JSON payloads (existing keys, JSON-only writers).
+        if ("json".equalsIgnoreCase(codec)) {
+            template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        } else {
+            template.setValueSerializer(new CompactRedisSerializer());
+        }
+        System.out.println("[RedisConfig] ✅ Redis value codec: " + ("json".equalsIgnoreCase(codec) ? "json" : "binary"));
         template.afterPropertiesSet();
         return template;
     }
 
-    /**
-     * 🚨 CRITICAL: Register ALL Redis message listeners for complete real-time coverage
-     */
     @Bean
+    @ConditionalOnProperty(name = "collab.transport", havingValue = "redis", matchIfMissing = true)
     public RedisMessageListenerContainer container(
             RedisConnectionFactory connectionFactory,
-            TerminalOutputListener terminalOutputListener,
-            ChatMessageListener chatMessageListener,
-            EditMessageListener editMessageListener,
-            PresenceListener presenceListener,
-            SessionMetaListener sessionMetaListener,
-            SessionEndListener sessionEndListener) {
+            NodeInboxListener nodeInboxListener,
+            NodeIdentity nodeIdentity,
+            RelayLanes relayLanes) {
 
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
+        // No per-message threads: RelayLanes does the hand-off and keeps per-session order
+        container.setTaskExecutor(new SyncTaskExecutor());
 
-        // Register terminal output listener
-        container.addMessageListener(terminalOutputListener,
-                new PatternTopic("session-terminal:*"));
+        // Session channels are registered by SessionSubscriptions (globally or per session with
+        // local connections)
 
-        // Register chat message listener
-        container.addMessageListener(chatMessageListener,
-                new PatternTopic("session-chat:*"));
+        // Register this node's inbox (requests forwarded to the sessions it owns, and replies)
+        container.addMessageListener(relayLanes.listener(nodeInboxListener),
+                new ChannelTopic(NodeInboxListener.CHANNEL_PREFIX + nodeIdentity.getNodeId()));
 
-        // Register edit message listener (for collaborative editing)
-        container.addMessageListener(editMessageListener,
-                new PatternTopic("session-updates:*"));
-
-        // 🚨 CRITICAL FIX: Register presence listener for participant join/leave events
-        // This was the MISSING piece causing instant updates to not work!
-        container.addMessageListener(presenceListener,
-                new PatternTopic("session-presence:*"));
-
-        // Register session metadata listener (language changes, etc.)
-        container.addMessageListener(sessionMetaListener,
-                new PatternTopic("session-meta:*"));
-
-        // Register session end listener
-        container.addMessageListener(sessionEndListener,
-                new PatternTopic("session-end:*"));
-
-        System.out.println("[RedisConfig] ✅ All Redis message listeners registered successfully!");
-        System.out.println("[RedisConfig] Listening to channels:");
-        System.out.println("  - session-terminal:*");
-        System.out.println("  - session-chat:*");
-        System.out.println("  - session-updates:*");
-        System.out.println("  - session-presence:* (NOW ACTIVE - FIX!)");
-        System.out.println("  - session-meta:*");
-        System.out.println("  - session-end:*");
+        System.out.println("[RedisConfig] ✅ Node inbox: " + NodeInboxListener.CHANNEL_PREFIX + nodeIdentity.getNodeId());
 
         return container;
     }
-}
\ No newline at end of file
+}
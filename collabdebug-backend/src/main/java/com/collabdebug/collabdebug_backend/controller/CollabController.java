@@ -1,8 +1,10 @@
 package com.collabdebug.collabdebug_backend.controller;
 
+import com.collabdebug.collabdebug_backend.dto.ws.BaseMessage;
 import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
 import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
 import com.collabdebug.collabdebug_backend.dto.ws.EditResponse;
+import com.collabdebug.collabdebug_backend.dto.ws.SyncResponse;
 import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
 import com.collabdebug.collabdebug_backend.service.SessionService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -45,11 +47,14 @@ public class CollabController {
         System.out.println("Received edit from client ID: " + userId + " for session: " + sessionId);
 
         // --- Core Collaboration Logic ---
-        EditResponse res = sessionService.applyEdit(edit);
+        // Applied here if this node owns the session, otherwise forwarded to the owner node
+        EditResponse res = sessionService.submitEdit(edit, 0);
 
-        if (res.applied) {
-            // 1. Publish to Redis (for multi-instance scaling)
-            redisPublisher.publishEdit(edit);
+        if (res == null) {
+            // Forwarded: the owner's broadcast and any rejection come back through Redis
+        } else if (res.applied) {
+            // 1. Redis publish (for multi-instance scaling) and the local broadcast happen in the
+            // session's next micro-batch, see EditBroadcaster.
 
             // 2. 🚨 CRITICAL FIX: Send the message back to ALL subscribers on the topic
             // Note: The Redis message listener *should* be doing this if using a broker config.
@@ -66,6 +71,24 @@ public class CollabController {
         }
     }
 
+    /**
+     * Reconnect/catch-up: the client reports the last server version it has seen and gets back
+     * only the ops it missed, or the full document if it has fallen out of the op log window.
+     */
+    @MessageMapping("/session/{sessionId}/sync")
+    public void receiveSync(@DestinationVariable String sessionId,
+                            @Payload BaseMessage sync,
+                            Principal principal) {
+        String userId = principal != null ? principal.getName() : sync.getUserId();
+        sync.sessionId = sessionId;
+        sync.setUserId(userId);
+        SyncResponse res = sessionService.submitSync(sync, 0);
+        if (res == null) return; // forwarded to the session's owner node, which replies through us
+        System.out.println("Sync for " + userId + " in session " + sessionId + ": " + sync.clientVersion + " -> "
+                + res.serverVersion + (res.fullSnapshot ? " (full snapshot)" : " (" + res.ops.size() + " ops)"));
+        sessionService.replyToUser(userId, "/queue/sync", res);
+    }
+
     @MessageMapping("/session/{sessionId}/chat")
     public void receiveChat(@DestinationVariable String sessionId, @Payload ChatMessage chat, Principal principal){
         String userIdFromAuth = null;
@@ -93,12 +116,8 @@ public class CollabController {
         redisPublisher.publishChat(chat);
 
         // 3. 🚨 FIX DUPLICATION: Ensure you DO NOT send the message directly to the topic here.
-        // The Redis Listener is responsible for picking it up and broadcasting it.
-        // Keep this part commented out:
-//        messagingTemplate.convertAndSend(
-//                "/topic/session/" + sessionId + "/chat",
-//                chat
-//        );
+        // publishChat delivers it to this instance's subscribers; the Redis relay skips messages
+        // published by its own node and only broadcasts it on the other instances.
     }
 
     @MessageMapping("/session/{sessionId}/meta")
@@ -126,15 +145,8 @@ public class CollabController {
             } else {
                 payload = Map.of("type", "language", "language", language, "userId", userId);
             }
-            // Publish to Redis so other backend instances receive this update
+            // Delivered to local subscribers and published to Redis so other backend instances receive this update
             redisPublisher.publishSessionMeta(sessionId, payload);
-
-            // Also send directly to local subscribers to ensure immediate propagation
-            try {
-                messagingTemplate.convertAndSend("/topic/session/" + sessionId + "/meta", payload);
-            } catch (Exception ex) {
-                System.err.println("Failed to send local session meta websocket message: " + ex.getMessage());
-            }
         } catch (Exception e) {
             System.err.println("Failed to publish session meta change: " + e.getMessage());
         }
@@ -0,0 +1,26 @@
+package com.collabdebug.collabdebug_backend.controller;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final CollabMetrics metrics;
+
+    public MetricsController(CollabMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // GET /api/metrics
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(metrics.snapshot());
+    }
+}
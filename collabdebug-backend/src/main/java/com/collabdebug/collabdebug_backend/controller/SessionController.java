@@ -1,7 +1,9 @@
 package com.collabdebug.collabdebug_backend.controller;
 
+import com.collabdebug.collabdebug_backend.dto.ChatHistoryPage;
 import com.collabdebug.collabdebug_backend.dto.CreateSessionRequest;
 import com.collabdebug.collabdebug_backend.model.DebugSession;
+import com.collabdebug.collabdebug_backend.service.ChatHistoryService;
 import com.collabdebug.collabdebug_backend.service.SessionService;
 import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
@@ -16,9 +18,11 @@ import java.util.UUID;
 public class SessionController {
 
     private final SessionService sessionService;
+    private final ChatHistoryService chatHistory;
 
-    public SessionController(SessionService sessionService) {
+    public SessionController(SessionService sessionService, ChatHistoryService chatHistory) {
         this.sessionService = sessionService;
+        this.chatHistory = chatHistory;
     }
 
     // POST /api/sessions/create
@@ -58,6 +62,17 @@ public class SessionController {
         return ResponseEntity.noContent().build();
     }
 
+    // GET /api/sessions/{sessionId}/chat?before=&limit=
+    // Most recent messages without "before"; older pages with the returned nextBefore
+    @GetMapping("/{sessionId}/chat")
+    public ResponseEntity<ChatHistoryPage> chatHistory(
+            @PathVariable UUID sessionId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        return ResponseEntity.ok(chatHistory.page(sessionId.toString(), before, limit));
+    }
+
     // POST /api/sessions/run/{sessionId}
     @PostMapping("/run/{sessionId}")
     public ResponseEntity<String> runCode(
@@ -0,0 +1,25 @@
+package com.collabdebug.collabdebug_backend.document;
+
+/**
+ * Mutable text of a collaborative session. Implementations must make edits cheap relative to
+ * the document size and {@link #snapshot()} cheap enough to call on every edit.
+ */
+public interface Document {
+
+    int length();
+
+    /** Replaces the character range [start, end) with {@code text}. */
+    void replace(int start, int end, String text);
+
+    /** Number of leading characters this document shares with {@code text}. */
+    int commonPrefixLength(CharSequence text);
+
+    /** Number of trailing characters (at most {@code limit}) this document shares with {@code text}. */
+    int commonSuffixLength(CharSequence text, int limit);
+
+    /** Materializes the full text; allocates a String the size of the document. */
+    String getText();
+
+    /** Returns an immutable view of the current content that later edits do not affect. */
+    Document snapshot();
+}
@@ -0,0 +1,75 @@
+package com.collabdebug.collabdebug_backend.document;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bounded ring of the operations applied to one session's document, keyed by the server version
+ * each op produced. Used both to transform edits made against an older version and to let a
+ * client that reports its last seen version catch up with only the ops it missed.
+ * Not thread-safe: callers hold the session's edit lock.
+ */
+public class OperationHistory {
+
+    private final TextOperation[] ring;
+    // Index of the oldest retained op
+    private int head;
+    private int size;
+    // Version of the document before the oldest retained operation
+    private long baseVersion;
+
+    public OperationHistory(int capacity, long currentVersion) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.ring = new TextOperation[capacity];
+        this.baseVersion = currentVersion;
+    }
+
+    /** Records {@code op} as the operation that produced the next server version. */
+    public void record(TextOperation op) {
+        if (size == ring.length) {
+            ring[head] = op;
+            head = (head + 1) % ring.length;
+            baseVersion++;
+        } else {
+            ring[(head + size) % ring.length] = op;
+            size++;
+        }
+    }
+
+    /**
+     * Drops all history, e.g. after a full-document replacement that ranged ops cannot be
+     * transformed against. Clients behind {@code currentVersion} will have to resync.
+     */
+    public void reset(long currentVersion) {
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        baseVersion = currentVersion;
+    }
+
+    /** Oldest version a client can be at and still be served from this history. */
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getLatestVersion() {
+        return baseVersion + size;
+    }
+
+    /**
+     * @return the operations applied after {@code version}, oldest first, or {@code null} if
+     * that part of the history is no longer retained (or the version is from the future)
+     */
+    public List<TextOperation> since(long version) {
+        long latest = getLatestVersion();
+        if (version < baseVersion || version > latest) return null;
+        int count = (int) (latest - version);
+        int offset = (int) (version - baseVersion);
+        List<TextOperation> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(ring[(head + offset + i) % ring.length]);
+        }
+        return result;
+    }
+}
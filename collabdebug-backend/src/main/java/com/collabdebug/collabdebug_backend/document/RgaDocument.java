@@ -0,0 +1,590 @@
+package com.collabdebug.collabdebug_backend.document;
+
+import com.collabdebug.collabdebug_backend.dto.ws.CrdtOp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link Document} backed by a Replicated Growable Array (RGA) sequence CRDT, used when several
+ * backend instances edit the same session concurrently without a single ordering point.
+ * <p>
+ * Every character ever inserted is an element with a unique id (Lamport counter, site) and the id
+ * of the element it was inserted after. Deletes leave tombstones. Concurrent inserts after the same
+ * element are ordered by descending id, so every replica that has integrated the same set of ops
+ * holds the same sequence, whatever order the ops arrived in.
+ * <p>
+ * Local edits ({@link #replace}) are applied immediately and queued as {@link CrdtOp}s for other
+ * replicas ({@link #drainLocalOps()}); remote ops are merged with {@link #applyRemote}, which
+ * reports their effect as positional {@link TextOperation}s for local clients. The visible text is
+ * mirrored in a {@link RopeDocument}, so reads and snapshots cost the same as in OT mode. Elements
+ * are also kept in a splay tree weighted by visible characters, so position lookups are
+ * logarithmic (amortized) instead of a walk over the element list.
+ * <p>
+ * A replica seeded with {@link #RgaDocument(String, String)} starts from elements with fixed ids
+ * ({@link #SEED_SITE}), so replicas seeded from the same text agree on them without exchanging ops.
+ * <p>
+ * Tombstones are collected once every known peer replica has acknowledged their delete
+ * ({@link #exportAck()} / {@link #applyAck}): from then on no op can refer to them any more.
+ * <p>
+ * Not thread-safe: callers hold the session's edit lock.
+ */
+public class RgaDocument implements Document {
+
+    /** Site of the elements a replica is seeded with. */
+    public static final String SEED_SITE = "seed";
+    /** Remote ops buffered for missing dependencies beyond this are dropped (see {@link #pollStateLost()}). */
+    static final int MAX_PENDING = 10_000;
+    /** Peers that neither sent ops nor acknowledged anything for this long no longer hold back tombstone collection. */
+    static final long PEER_TIMEOUT_MS = 5 * 60_000;
+    /**
+     * Minimum age of a tombstone before it is collected, so that stored snapshots a joining replica
+     * may seed from already show the element as deleted.
+     */
+    static final long TOMBSTONE_MIN_AGE_MS = 60_000;
+
+    private final String site;
+    private long clock;
+    private final Element head = new Element(new Id(0, ""), null, '\0');
+    private Element root = head;
+    private final Map<Id, Element> elements = new HashMap<>();
+    private final RopeDocument visible = new RopeDocument();
+    private final List<CrdtOp> outbox = new ArrayList<>();
+    // Remote ops whose origin (or deleted elements) have not arrived yet, oldest first
+    private final Deque<CrdtOp> pending = new ArrayDeque<>();
+    private boolean stateLost;
+    // Highest counter integrated per site, and what each peer replica last acknowledged of ours
+    private final Map<String, Long> integrated = new HashMap<>();
+    private final Map<String, Peer> peers = new HashMap<>();
+    private final List<Element> tombstones = new ArrayList<>();
+    long peerTimeoutMs = PEER_TIMEOUT_MS;
+    long tombstoneMinAgeMs = TOMBSTONE_MIN_AGE_MS;
+
+    public RgaDocument(String site) {
+        this.site = site;
+        head.deleted = true;
+        head.weight = 0;
+    }
+
+    /** A replica holding {@code seedText} as elements (1..n, {@link #SEED_SITE}) chained after the start. */
+    public RgaDocument(String site, String seedText) {
+        this(site);
+        if (seedText == null || seedText.isEmpty()) return;
+        Element[] sequence = new Element[seedText.length() + 1];
+        sequence[0] = head;
+        for (int k = 1; k < sequence.length; k++) {
+            Element e = new Element(new Id(k, SEED_SITE), sequence[k - 1].id, seedText.charAt(k - 1));
+            sequence[k - 1].next = e;
+            e.prev = sequence[k - 1];
+            elements.put(e.id, e);
+            sequence[k] = e;
+        }
+        root = build(sequence, 0, sequence.length - 1, null);
+        clock = seedText.length();
+        integrated.put(SEED_SITE, clock);
+        visible.replace(0, 0, seedText);
+    }
+
+    // ------------------- Document -------------------
+
+    @Override
+    public int length() {
+        return visible.length();
+    }
+
+    @Override
+    public void replace(int start, int end, String text) {
+        if (start < 0 || end < start || end > visible.length()) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") outside document of length " + visible.length());
+        }
+        Element anchor = visibleBefore(start);
+
+        // Tombstone the visible elements in [start, end), all under one delete stamp
+        CrdtOp run = null;
+        int toDelete = end - start;
+        Id stamp = toDelete > 0 ? tick() : null;
+        for (Element e = anchor.next; e != null && toDelete > 0; e = e.next) {
+            if (e.deleted) continue;
+            markDeleted(e, stamp);
+            toDelete--;
+            if (run != null && run.site.equals(e.id.site) && run.counter + run.length == e.id.counter) {
+                run.length++;
+            } else {
+                run = deleteOp(e.id, stamp);
+                outbox.add(run);
+            }
+        }
+
+        // Insert the new characters as one chained run right after the anchor
+        if (text != null && !text.isEmpty()) {
+            CrdtOp insert = new CrdtOp();
+            insert.counter = clock + 1;
+            insert.site = site;
+            insert.originCounter = anchor.id.counter;
+            insert.originSite = anchor.id.site;
+            insert.text = text;
+            Element prev = anchor;
+            for (int k = 0; k < text.length(); k++) {
+                Element e = new Element(tick(), prev.id, text.charAt(k));
+                insertAfter(prev, e);
+                prev = e;
+            }
+            outbox.add(insert);
+        }
+
+        visible.replace(start, end, text);
+    }
+
+    @Override
+    public int commonPrefixLength(CharSequence text) {
+        return visible.commonPrefixLength(text);
+    }
+
+    @Override
+    public int commonSuffixLength(CharSequence text, int limit) {
+        return visible.commonSuffixLength(text, limit);
+    }
+
+    @Override
+    public String getText() {
+        return visible.getText();
+    }
+
+    @Override
+    public Document snapshot() {
+        return visible.snapshot();
+    }
+
+    // ------------------- Replication -------------------
+
+    /** Returns and clears the ops produced by local edits since the last call. */
+    public List<CrdtOp> drainLocalOps() {
+        List<CrdtOp> ops = new ArrayList<>(outbox);
+        outbox.clear();
+        return ops;
+    }
+
+    /**
+     * Merges ops from another replica. Ops already integrated are ignored, and ops whose
+     * dependencies have not arrived yet are buffered until they do. If the buffer overflows, the
+     * oldest ops are dropped and {@link #pollStateLost()} reports that the replica must be rebuilt
+     * from a peer's state.
+     *
+     * @return the visible changes, in order, each relative to the text after the previous one
+     */
+    public List<TextOperation> applyRemote(List<CrdtOp> ops) {
+        List<TextOperation> effects = new ArrayList<>();
+        for (CrdtOp op : ops) {
+            if (!integrate(op, effects)) buffer(op);
+        }
+        boolean progress = true;
+        while (progress && !pending.isEmpty()) {
+            progress = false;
+            for (Iterator<CrdtOp> it = pending.iterator(); it.hasNext(); ) {
+                if (integrate(it.next(), effects)) {
+                    it.remove();
+                    progress = true;
+                }
+            }
+        }
+        return effects;
+    }
+
+    /** @return true once after buffered remote ops had to be dropped; the caller should request a peer's state */
+    public boolean pollStateLost() {
+        boolean lost = stateLost;
+        stateLost = false;
+        return lost;
+    }
+
+    /**
+     * Full replica state as CRDT ops (all elements in document order, then tombstones), for a
+     * replica that joins late. Applying it with {@link #applyRemote} is idempotent.
+     */
+    public List<CrdtOp> exportState() {
+        List<CrdtOp> state = new ArrayList<>();
+        List<CrdtOp> deletes = new ArrayList<>();
+        CrdtOp run = null;
+        StringBuilder runText = null;
+        CrdtOp deleteRun = null;
+        Element prev = head;
+        for (Element e = head.next; e != null; prev = e, e = e.next) {
+            boolean extendsRun = run != null && e.origin.equals(prev.id)
+                    && e.id.site.equals(run.site) && e.id.counter == run.counter + runText.length();
+            if (extendsRun) {
+                runText.append(e.ch);
+            } else {
+                if (run != null) run.text = runText.toString();
+                run = new CrdtOp();
+                run.counter = e.id.counter;
+                run.site = e.id.site;
+                run.originCounter = e.origin.counter;
+                run.originSite = e.origin.site;
+                runText = new StringBuilder().append(e.ch);
+                state.add(run);
+            }
+            if (e.deleted) {
+                boolean extendsDeleteRun = deleteRun != null && deleteRun.site.equals(e.id.site)
+                        && deleteRun.counter + deleteRun.length == e.id.counter
+                        && deleteRun.originCounter == e.stampCounter() && Objects.equals(deleteRun.originSite, e.stampSite());
+                if (extendsDeleteRun) {
+                    deleteRun.length++;
+                } else {
+                    deleteRun = deleteOp(e.id, e.deletedBy);
+                    deletes.add(deleteRun);
+                }
+            }
+        }
+        if (run != null) run.text = runText.toString();
+        state.addAll(deletes);
+        return state;
+    }
+
+    /**
+     * Records that a replica on {@code peerSite} exists (it sent ops or asked for our state): its
+     * acknowledgement is needed before tombstones can be collected.
+     */
+    public void notePeer(String peerSite) {
+        if (!peerSite.equals(site)) peerSeen(peerSite, System.currentTimeMillis());
+    }
+
+    /**
+     * This replica's acknowledgement for the other replicas: one entry per site with the highest
+     * counter integrated from it. Only meaningful while no remote ops are buffered (null otherwise).
+     */
+    public List<CrdtOp> exportAck() {
+        if (!pending.isEmpty()) return null;
+        List<CrdtOp> ack = new ArrayList<>(integrated.size());
+        for (Map.Entry<String, Long> entry : integrated.entrySet()) {
+            CrdtOp e = new CrdtOp();
+            e.site = entry.getKey();
+            e.counter = entry.getValue();
+            ack.add(e);
+        }
+        return ack;
+    }
+
+    /**
+     * Records a peer's acknowledgement ({@link #exportAck()}) and collects the tombstones every
+     * live peer has now acknowledged.
+     *
+     * @return the number of tombstones collected
+     */
+    public int applyAck(String peerSite, List<CrdtOp> ack) {
+        if (peerSite == null || peerSite.equals(site) || ack == null) return 0;
+        long now = System.currentTimeMillis();
+        Peer peer = peerSeen(peerSite, now);
+        for (CrdtOp e : ack) {
+            if (e.site != null) peer.acknowledged.merge(e.site, e.counter, Math::max);
+        }
+        return collectTombstones(now);
+    }
+
+    /** Number of elements held, visible or not (tombstones that were not collected yet included). */
+    public int elementCount() {
+        return elements.size();
+    }
+
+    private int collectTombstones(long now) {
+        // A buffered op may still name a tombstone among the elements it is waiting for
+        if (!pending.isEmpty() || tombstones.isEmpty()) return 0;
+        peers.values().removeIf(peer -> now - peer.lastSeen > peerTimeoutMs);
+        int collected = 0;
+        for (Iterator<Element> it = tombstones.iterator(); it.hasNext(); ) {
+            Element e = it.next();
+            if (e.deletedBy == null || now - e.deletedAt < tombstoneMinAgeMs || !acknowledgedByAll(e.deletedBy)) continue;
+            remove(e);
+            it.remove();
+            collected++;
+        }
+        return collected;
+    }
+
+    private boolean acknowledgedByAll(Id stamp) {
+        for (Peer peer : peers.values()) {
+            if (peer.acknowledged.getOrDefault(stamp.site, 0L) < stamp.counter) return false;
+        }
+        return true;
+    }
+
+    private Peer peerSeen(String peerSite, long now) {
+        Peer peer = peers.computeIfAbsent(peerSite, k -> new Peer());
+        peer.lastSeen = now;
+        return peer;
+    }
+
+    private void buffer(CrdtOp op) {
+        pending.addLast(op);
+        if (pending.size() > MAX_PENDING) {
+            CrdtOp dropped = pending.removeFirst();
+            System.err.println("[RgaDocument] ❌ Dropping buffered CRDT " + (dropped.delete ? "delete" : "insert")
+                    + " (" + dropped.counter + ", " + dropped.site + "): more than " + MAX_PENDING
+                    + " ops waiting for missing dependencies, replica " + site + " needs a peer's state");
+            stateLost = true;
+        }
+    }
+
+    private boolean integrate(CrdtOp op, List<TextOperation> effects) {
+        return op.delete ? integrateDelete(op, effects) : integrateInsert(op, effects);
+    }
+
+    private boolean integrateInsert(CrdtOp op, List<TextOperation> effects) {
+        Element origin = op.originCounter == 0 ? head : elements.get(new Id(op.originCounter, op.originSite));
+        if (origin == null) return false;
+
+        for (int k = 0; k < op.text.length(); k++) {
+            Id id = new Id(op.counter + k, op.site);
+            if (elements.containsKey(id)) {
+                origin = elements.get(id);
+                continue;
+            }
+            // RGA rule: skip concurrent inserts after the same origin that have a greater id
+            Element prev = origin;
+            while (prev.next != null && prev.next.id.compareTo(id) > 0) {
+                prev = prev.next;
+            }
+            Element e = new Element(id, origin.id, op.text.charAt(k));
+            insertAfter(prev, e);
+            int index = rank(e) - 1;
+            visible.replace(index, index, String.valueOf(e.ch));
+            addEffect(effects, new TextOperation(index, index, String.valueOf(e.ch)));
+            origin = e;
+        }
+        observe(op.site, op.counter + op.text.length() - 1);
+        return true;
+    }
+
+    private boolean integrateDelete(CrdtOp op, List<TextOperation> effects) {
+        for (int k = 0; k < op.length; k++) {
+            if (!elements.containsKey(new Id(op.counter + k, op.site))) return false;
+        }
+        // Ops without a stamp (originCounter 0) are integrated but their tombstones are never collected
+        Id stamp = op.originCounter > 0 ? new Id(op.originCounter, op.originSite) : null;
+        for (int k = 0; k < op.length; k++) {
+            Element e = elements.get(new Id(op.counter + k, op.site));
+            if (e.deleted) continue;
+            int index = rank(e) - 1;
+            markDeleted(e, stamp);
+            visible.replace(index, index + 1, "");
+            addEffect(effects, new TextOperation(index, index + 1, ""));
+        }
+        if (stamp != null) observe(stamp.site, stamp.counter);
+        return true;
+    }
+
+    private Id tick() {
+        Id id = new Id(++clock, site);
+        integrated.put(site, clock);
+        return id;
+    }
+
+    private void observe(String opSite, long counter) {
+        clock = Math.max(clock, counter);
+        integrated.merge(opSite, counter, Math::max);
+    }
+
+    /** Appends an effect, merging it into the previous one when they are contiguous. */
+    private static void addEffect(List<TextOperation> effects, TextOperation effect) {
+        if (!effects.isEmpty()) {
+            TextOperation last = effects.get(effects.size() - 1);
+            boolean lastIsInsert = last.getStart() == last.getEnd();
+            boolean isInsert = effect.getStart() == effect.getEnd();
+            if (lastIsInsert && isInsert && effect.getStart() == last.getStart() + last.getText().length()) {
+                effects.set(effects.size() - 1, new TextOperation(last.getStart(), last.getEnd(), last.getText() + effect.getText()));
+                return;
+            }
+            if (!lastIsInsert && !isInsert && last.getText().isEmpty() && effect.getStart() == last.getStart()) {
+                effects.set(effects.size() - 1, new TextOperation(last.getStart(), last.getEnd() + 1, ""));
+                return;
+            }
+        }
+        effects.add(effect);
+    }
+
+    private static CrdtOp deleteOp(Id id, Id stamp) {
+        CrdtOp op = new CrdtOp();
+        op.delete = true;
+        op.counter = id.counter;
+        op.site = id.site;
+        op.length = 1;
+        if (stamp != null) {
+            op.originCounter = stamp.counter;
+            op.originSite = stamp.site;
+        }
+        return op;
+    }
+
+    // ------------------- Sequence helpers -------------------
+    // Elements form a doubly linked list in document order (what the RGA rule walks) and, over the
+    // same order, a splay tree whose nodes count the visible characters below them.
+
+    /** The element after which the visible character at {@code index} lives (head for 0). */
+    private Element visibleBefore(int index) {
+        if (index == 0) return head;
+        Element e = root;
+        int k = index;
+        while (true) {
+            int left = weight(e.left);
+            int self = e.deleted ? 0 : 1;
+            if (k <= left) {
+                e = e.left;
+            } else if (k == left + self) {
+                splay(e);
+                return e;
+            } else {
+                k -= left + self;
+                e = e.right;
+            }
+        }
+    }
+
+    /** Number of visible characters up to and including {@code target}. */
+    private int rank(Element target) {
+        splay(target);
+        return weight(target.left) + (target.deleted ? 0 : 1);
+    }
+
+    private void insertAfter(Element prev, Element e) {
+        e.next = prev.next;
+        e.prev = prev;
+        if (prev.next != null) prev.next.prev = e;
+        prev.next = e;
+        elements.put(e.id, e);
+
+        splay(prev);
+        e.right = prev.right;
+        if (e.right != null) e.right.parent = e;
+        prev.right = e;
+        e.parent = prev;
+        update(e);
+        update(prev);
+    }
+
+    private void markDeleted(Element e, Id stamp) {
+        splay(e);
+        e.deleted = true;
+        e.deletedBy = stamp;
+        e.deletedAt = System.currentTimeMillis();
+        update(e);
+        tombstones.add(e);
+    }
+
+    private void remove(Element e) {
+        e.prev.next = e.next;
+        if (e.next != null) e.next.prev = e.prev;
+        elements.remove(e.id);
+
+        splay(e);
+        Element left = e.left;
+        Element right = e.right;
+        if (right != null) right.parent = null;
+        // The head is never removed, so the left subtree is never empty
+        left.parent = null;
+        Element max = left;
+        while (max.right != null) max = max.right;
+        splay(max);
+        max.right = right;
+        if (right != null) right.parent = max;
+        update(max);
+    }
+
+    private void splay(Element x) {
+        while (x.parent != null) {
+            Element p = x.parent;
+            Element g = p.parent;
+            if (g != null) rotate((g.left == p) == (p.left == x) ? p : x);
+            rotate(x);
+        }
+        root = x;
+    }
+
+    private static void rotate(Element x) {
+        Element p = x.parent;
+        Element g = p.parent;
+        if (p.left == x) {
+            p.left = x.right;
+            if (x.right != null) x.right.parent = p;
+            x.right = p;
+        } else {
+            p.right = x.left;
+            if (x.left != null) x.left.parent = p;
+            x.left = p;
+        }
+        p.parent = x;
+        x.parent = g;
+        if (g != null) {
+            if (g.left == p) g.left = x;
+            else g.right = x;
+        }
+        update(p);
+        update(x);
+    }
+
+    private static Element build(Element[] sequence, int from, int to, Element parent) {
+        if (from > to) return null;
+        int mid = (from + to) >>> 1;
+        Element e = sequence[mid];
+        e.parent = parent;
+        e.left = build(sequence, from, mid - 1, e);
+        e.right = build(sequence, mid + 1, to, e);
+        update(e);
+        return e;
+    }
+
+    private static int weight(Element e) {
+        return e == null ? 0 : e.weight;
+    }
+
+    private static void update(Element e) {
+        e.weight = weight(e.left) + weight(e.right) + (e.deleted ? 0 : 1);
+    }
+
+    private record Id(long counter, String site) implements Comparable<Id> {
+        @Override
+        public int compareTo(Id other) {
+            int c = Long.compare(counter, other.counter);
+            return c != 0 ? c : site.compareTo(other.site);
+        }
+    }
+
+    private static final class Peer {
+        final Map<String, Long> acknowledged = new HashMap<>();
+        long lastSeen;
+    }
+
+    private static final class Element {
+        final Id id;
+        final Id origin;
+        final char ch;
+        boolean deleted;
+        Id deletedBy;
+        long deletedAt;
+        Element prev;
+        Element next;
+        // Splay tree links and the number of visible elements in this subtree
+        Element parent;
+        Element left;
+        Element right;
+        int weight = 1;
+
+        Element(Id id, Id origin, char ch) {
+            this.id = id;
+            this.origin = origin;
+            this.ch = ch;
+        }
+
+        long stampCounter() {
+            return deletedBy != null ? deletedBy.counter : 0;
+        }
+
+        String stampSite() {
+            return deletedBy != null ? deletedBy.site : null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.collabdebug.collabdebug_backend.document;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * {@link Document} backed by a persistent, height-balanced rope. Edits split and re-join the
+ * tree in O(log n), copying only the path to the edited leaf, so nodes are shared between
+ * versions and {@link #snapshot()} is O(1).
+ * <p>
+ * Mutations must be externally serialized (the session's edit lock); snapshots and reads of a
+ * snapshot are safe from any thread.
+ */
+public class RopeDocument implements Document {
+
+    // Leaves are kept small so an edit copies at most a few hundred characters
+    static final int MAX_LEAF = 512;
+
+    private volatile Node root;
+    private final boolean readOnly;
+
+    public RopeDocument() {
+        this("");
+    }
+
+    public RopeDocument(String text) {
+        this(build(text, 0, text.length()), false);
+    }
+
+    private RopeDocument(Node root, boolean readOnly) {
+        this.root = root;
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public int length() {
+        return root.length;
+    }
+
+    @Override
+    public void replace(int start, int end, String text) {
+        if (readOnly) throw new UnsupportedOperationException("Snapshots are read-only");
+        Node current = root;
+        if (start < 0 || end < start || end > current.length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") outside document of length " + current.length);
+        }
+        Node[] head = split(current, start);
+        Node[] tail = split(head[1], end - start);
+        Node inserted = text == null || text.isEmpty() ? Leaf.EMPTY : build(text, 0, text.length());
+        root = join(join(head[0], inserted), tail[1]);
+    }
+
+    @Override
+    public int commonPrefixLength(CharSequence text) {
+        int matched = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node instanceof Branch branch) {
+                stack.push(branch.right);
+                stack.push(branch.left);
+                continue;
+            }
+            String leaf = ((Leaf) node).text;
+            for (int i = 0; i < leaf.length(); i++, matched++) {
+                if (matched >= text.length() || leaf.charAt(i) != text.charAt(matched)) return matched;
+            }
+        }
+        return matched;
+    }
+
+    @Override
+    public int commonSuffixLength(CharSequence text, int limit) {
+        int matched = 0;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node instanceof Branch branch) {
+                stack.push(branch.left);
+                stack.push(branch.right);
+                continue;
+            }
+            String leaf = ((Leaf) node).text;
+            for (int i = leaf.length() - 1; i >= 0; i--, matched++) {
+                if (matched >= limit || matched >= text.length()
+                        || leaf.charAt(i) != text.charAt(text.length() - 1 - matched)) return matched;
+            }
+        }
+        return matched;
+    }
+
+    @Override
+    public String getText() {
+        Node current = root;
+        StringBuilder sb = new StringBuilder(current.length);
+        current.appendTo(sb);
+        return sb.toString();
+    }
+
+    @Override
+    public Document snapshot() {
+        return readOnly ? this : new RopeDocument(root, true);
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+
+    // ------------------- Tree operations -------------------
+
+    private static Node build(String text, int from, int to) {
+        int len = to - from;
+        if (len <= MAX_LEAF) return len == 0 ? Leaf.EMPTY : new Leaf(text.substring(from, to));
+        int mid = from + len / 2;
+        return new Branch(build(text, from, mid), build(text, mid, to));
+    }
+
+    /** Splits {@code node} into [0, index) and [index, length). */
+    private static Node[] split(Node node, int index) {
+        if (index <= 0) return new Node[]{Leaf.EMPTY, node};
+        if (index >= node.length) return new Node[]{node, Leaf.EMPTY};
+        if (node instanceof Leaf leaf) {
+            return new Node[]{new Leaf(leaf.text.substring(0, index)), new Leaf(leaf.text.substring(index))};
+        }
+        Branch branch = (Branch) node;
+        int leftLength = branch.left.length;
+        if (index < leftLength) {
+            Node[] parts = split(branch.left, index);
+            return new Node[]{parts[0], join(parts[1], branch.right)};
+        }
+        if (index > leftLength) {
+            Node[] parts = split(branch.right, index - leftLength);
+            return new Node[]{join(branch.left, parts[0]), parts[1]};
+        }
+        return new Node[]{branch.left, branch.right};
+    }
+
+    /** Concatenates two trees, rebalancing so sibling heights differ by at most one. */
+    private static Node join(Node left, Node right) {
+        if (left.length == 0) return right;
+        if (right.length == 0) return left;
+        if (left instanceof Leaf l && right instanceof Leaf r && l.length + r.length <= MAX_LEAF) {
+            return new Leaf(l.text.concat(r.text));
+        }
+        if (left.height > right.height + 1) {
+            Branch b = (Branch) left;
+            return balance(b.left, join(b.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch b = (Branch) right;
+            return balance(join(left, b.left), b.right);
+        }
+        return new Branch(left, right);
+    }
+
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            Branch l = (Branch) left;
+            if (l.left.height >= l.right.height) {
+                return new Branch(l.left, new Branch(l.right, right));
+            }
+            Branch lr = (Branch) l.right;
+            return new Branch(new Branch(l.left, lr.left), new Branch(lr.right, right));
+        }
+        if (right.height > left.height + 1) {
+            Branch r = (Branch) right;
+            if (r.right.height >= r.left.height) {
+                return new Branch(new Branch(left, r.left), r.right);
+            }
+            Branch rl = (Branch) r.left;
+            return new Branch(new Branch(left, rl.left), new Branch(rl.right, r.right));
+        }
+        return new Branch(left, right);
+    }
+
+    private abstract static sealed class Node permits Leaf, Branch {
+        final int length;
+        final int height;
+
+        Node(int length, int height) {
+            this.length = length;
+            this.height = height;
+        }
+
+        abstract void appendTo(StringBuilder sb);
+    }
+
+    private static final class Leaf extends Node {
+        static final Leaf EMPTY = new Leaf("");
+        final String text;
+
+        Leaf(String text) {
+            super(text.length(), 0);
+            this.text = text;
+        }
+
+        @Override
+        void appendTo(StringBuilder sb) {
+            sb.append(text);
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node left;
+        final Node right;
+
+        Branch(Node left, Node right) {
+            super(left.length + right.length, Math.max(left.height, right.height) + 1);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void appendTo(StringBuilder sb) {
+            left.appendTo(sb);
+            right.appendTo(sb);
+        }
+    }
+}
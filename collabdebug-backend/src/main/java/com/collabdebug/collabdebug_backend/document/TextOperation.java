@@ -0,0 +1,141 @@
+package com.collabdebug.collabdebug_backend.document;
+
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+
+/**
+ * A positional text edit that replaces the character range [start, end) with {@code text}.
+ * Inserts have {@code start == end}; deletes have an empty {@code text}.
+ * Offsets are zero-based character indexes into the document.
+ */
+public final class TextOperation {
+
+    private final int start;
+    private final int end;
+    private final String text;
+
+    public TextOperation(int start, int end, String text) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range [" + start + ", " + end + ")");
+        }
+        this.start = start;
+        this.end = end;
+        this.text = text == null ? "" : text;
+    }
+
+    /**
+     * Builds an operation from the wire format. {@code rangeStart}/{@code rangeEnd} carry character
+     * offsets; an insert ignores {@code rangeEnd}.
+     *
+     * @throws IllegalArgumentException if the offsets are missing or malformed
+     */
+    public static TextOperation fromEdit(EditOperation op) {
+        if (op.rangeStart == null) {
+            throw new IllegalArgumentException("Ranged edit without rangeStart");
+        }
+        int start = Integer.parseInt(op.rangeStart.trim());
+        if (op.isInsert) {
+            return new TextOperation(start, start, op.text);
+        }
+        if (op.rangeEnd == null) {
+            throw new IllegalArgumentException("Delete/replace edit without rangeEnd");
+        }
+        return new TextOperation(start, Integer.parseInt(op.rangeEnd.trim()), op.text);
+    }
+
+    /**
+     * Computes the single-range delta that turns {@code current} into {@code revised} by trimming
+     * their common prefix and suffix. A keystroke in a large file yields an op of a few bytes.
+     */
+    public static TextOperation diff(Document current, String revised) {
+        int prefix = current.commonPrefixLength(revised);
+        int maxSuffix = Math.min(current.length(), revised.length()) - prefix;
+        int suffix = current.commonSuffixLength(revised, maxSuffix);
+        return new TextOperation(prefix, current.length() - suffix, revised.substring(prefix, revised.length() - suffix));
+    }
+
+    /** Writes this operation's (possibly transformed) range back onto the wire format. */
+    public void copyTo(EditOperation op) {
+        op.rangeStart = String.valueOf(start);
+        op.rangeEnd = String.valueOf(end);
+        op.text = text;
+        op.isInsert = start == end;
+    }
+
+    public EditOperation toEditOperation() {
+        EditOperation op = new EditOperation();
+        copyTo(op);
+        return op;
+    }
+
+    public void applyTo(Document doc) {
+        if (end > doc.length()) {
+            throw new IllegalArgumentException("Range [" + start + ", " + end + ") exceeds document length " + doc.length());
+        }
+        doc.replace(start, end, text);
+    }
+
+    /**
+     * Rewrites this operation so it applies on top of {@code applied}, an operation that was
+     * sequenced before it against the same base document. On ties the earlier operation wins:
+     * an insert at the same offset lands after text inserted by {@code applied}, and a range that
+     * only partially overlaps {@code applied} is clipped so it keeps the text {@code applied} inserted.
+     * A range that encloses {@code applied} entirely still removes it.
+     */
+    public TextOperation transformAgainst(TextOperation applied) {
+        int newStart = mapStart(start, applied);
+        int newEnd = start == end ? newStart : Math.max(newStart, mapEnd(end, applied));
+        return new TextOperation(newStart, newEnd, text);
+    }
+
+    private static int mapStart(int pos, TextOperation applied) {
+        if (pos < applied.start) return pos;
+        if (pos >= applied.end) return pos + applied.lengthDelta();
+        // Inside the range the applied op removed: continue after its inserted text.
+        return applied.start + applied.text.length();
+    }
+
+    private static int mapEnd(int pos, TextOperation applied) {
+        if (pos <= applied.start) return pos;
+        if (pos >= applied.end) return pos + applied.lengthDelta();
+        // Inside the range the applied op removed: stop before its inserted text.
+        return applied.start;
+    }
+
+    /**
+     * Composes this operation with {@code next}, an operation applied right after it, into one
+     * operation with the same effect on the base document. Only possible when {@code next} touches
+     * or overlaps the text this operation inserted (typing, backspacing, forward deletes);
+     * returns null otherwise.
+     */
+    public TextOperation composeWith(TextOperation next) {
+        int insertedEnd = start + text.length();
+        if (next.start > insertedEnd || next.end < start) return null;
+
+        int keepHead = Math.min(Math.max(next.start - start, 0), text.length());
+        int keepTail = Math.min(Math.max(next.end - start, 0), text.length());
+        String composed = text.substring(0, keepHead) + next.text + text.substring(keepTail);
+        int composedEnd = end + Math.max(0, next.end - insertedEnd);
+        return new TextOperation(Math.min(start, next.start), composedEnd, composed);
+    }
+
+    public int lengthDelta() {
+        return text.length() - (end - start);
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "TextOperation[" + start + ", " + end + ") -> \"" + text + "\"";
+    }
+}
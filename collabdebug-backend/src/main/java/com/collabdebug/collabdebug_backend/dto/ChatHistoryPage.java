@@ -0,0 +1,16 @@
+package com.collabdebug.collabdebug_backend.dto;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+
+import java.util.List;
+
+/**
+ * One page of a session's chat history, oldest first. Messages are numbered by a per-session
+ * sequence that survives trimming; pass {@code nextBefore} as {@code before} to load the page
+ * before this one. {@code nextBefore} is null when there is nothing older left.
+ */
+public class ChatHistoryPage {
+    public List<ChatMessage> messages;
+    public long firstSeq;             // sequence number of messages.get(0)
+    public Long nextBefore;
+}
@@ -0,0 +1,24 @@
+package com.collabdebug.collabdebug_backend.dto;
+
+import com.collabdebug.collabdebug_backend.dto.ws.CrdtOp;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+
+import java.util.List;
+
+/**
+ * Compact warm-up state of one session as stored in Redis ({@code session-snapshot:{id}}): the
+ * document at {@code version} plus the last ops of the op log, so a node that picks the session up
+ * can keep serving catch-up and transforming slightly stale edits.
+ * <p>
+ * In CRDT mode the snapshot carries the replica state ({@code crdt}, element ids included) instead
+ * of an op-log tail, or only {@code text} for the seed every replica starts from.
+ */
+public class SessionSnapshot {
+    public String sessionId;
+    public long version;
+    public String text;
+    public long tailBaseVersion;      // version before tail.get(0); tail ends at version
+    public List<EditOperation> tail;
+    public List<CrdtOp> crdt;         // CRDT mode: RgaDocument.exportState()
+    public long timestamp;
+}
@@ -0,0 +1,23 @@
+package com.collabdebug.collabdebug_backend.dto.ws;
+
+/**
+ * Wire format of a sequence-CRDT operation (see RgaDocument).
+ * <p>
+ * An insert carries a run of characters: character k has id (counter + k, site) and is inserted
+ * after character k-1; the first one is inserted after (originCounter, originSite), where
+ * originCounter 0 means the start of the document. A delete tombstones {@code length} elements
+ * with ids (counter .. counter + length - 1, site); its (originCounter, originSite) is the stamp of
+ * the delete itself, which replicas acknowledge before collecting the tombstones.
+ * <p>
+ * In a {@code crdt-ack} message each entry is (counter, site): the highest counter the sender has
+ * integrated from that site.
+ */
+public class CrdtOp {
+    public boolean delete;
+    public long counter;
+    public String site;
+    public long originCounter;
+    public String originSite;
+    public String text;   // inserted characters (insert only)
+    public int length;    // number of deleted elements (delete only)
+}
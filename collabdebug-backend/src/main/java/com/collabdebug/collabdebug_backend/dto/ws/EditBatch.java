@@ -0,0 +1,12 @@
+package com.collabdebug.collabdebug_backend.dto.ws;
+
+import java.util.List;
+
+/**
+ * Consecutive edits of one session sent as a single frame (type "edit-batch"). Edits are in
+ * version order; each keeps its own userId, baseVersion and serverVersion, so clients apply them
+ * one by one exactly as if they had arrived separately. serverVersion is that of the last edit.
+ */
+public class EditBatch extends BaseMessage {
+    public List<EditMessage> edits;
+}
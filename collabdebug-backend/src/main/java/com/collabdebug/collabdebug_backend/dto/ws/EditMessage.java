@@ -1,9 +1,11 @@
 package com.collabdebug.collabdebug_backend.dto.ws;
 
+import java.util.List;
+
+// sessionId, userId, clientVersion and serverVersion are inherited from BaseMessage
 public class EditMessage extends BaseMessage {
     public EditOperation op;
-    public String sessionId;
-    public String userId;
-    public long clientVersion;
-    public long serverVersion;
+    public long baseVersion;   // server version the (broadcast) op applies to; serverVersion is the result
+    public String originNode;  // backend instance that produced the message (CRDT mode)
+    public List<CrdtOp> crdt;  // CRDT ops for other replicas (CRDT mode only)
 }
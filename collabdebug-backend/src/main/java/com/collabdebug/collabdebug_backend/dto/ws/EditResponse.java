@@ -5,6 +5,10 @@ public class EditResponse {
     private String updatedText;
     private long serverVersion;
 
+    public EditResponse() {
+        // for deserialization (replies forwarded between nodes)
+    }
+
     public EditResponse(boolean applied, String updatedText, long serverVersion) {
         this.applied = applied;
         this.updatedText = updatedText;
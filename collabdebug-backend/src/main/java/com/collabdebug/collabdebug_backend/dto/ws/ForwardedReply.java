@@ -0,0 +1,12 @@
+package com.collabdebug.collabdebug_backend.dto.ws;
+
+/**
+ * The owner's answer to a {@link ForwardedRequest}, delivered by the node holding the client's
+ * connection to that user's queue.
+ */
+public class ForwardedReply {
+    public String userId;
+    public String destination;          // "/queue/edits" or "/queue/sync"
+    public EditResponse editResponse;   // rejected edit
+    public SyncResponse syncResponse;   // catch-up reply
+}
@@ -0,0 +1,13 @@
+package com.collabdebug.collabdebug_backend.dto.ws;
+
+/**
+ * A client request received by a node that does not own the session, forwarded to the owner's
+ * inbox channel ({@code node-inbox:{nodeId}}). Replies travel back as {@link ForwardedReply}.
+ */
+public class ForwardedRequest {
+    public String type;        // "edit" | "sync" | "replace"
+    public String fromNode;    // node holding the client's connection
+    public int hops;           // times the request has been forwarded (ownership may have moved)
+    public EditMessage edit;   // type "edit"; "replace" carries submitted code as a full-text op
+    public BaseMessage sync;   // type "sync"
+}
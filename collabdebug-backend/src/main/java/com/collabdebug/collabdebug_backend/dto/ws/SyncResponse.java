@@ -0,0 +1,36 @@
+package com.collabdebug.collabdebug_backend.dto.ws;
+
+import java.util.List;
+
+/**
+ * Catch-up reply for a client that reported its last seen version. Carries either the ops it
+ * missed (versions fromVersion+1 .. serverVersion, in order) or, when the client has fallen out
+ * of the server's op window, the full document in {@code snapshot}.
+ */
+public class SyncResponse {
+    public String sessionId;
+    public long fromVersion;
+    public long serverVersion;
+    public boolean fullSnapshot;
+    public List<EditOperation> ops;   // null when fullSnapshot
+    public String snapshot;           // null unless fullSnapshot
+
+    public static SyncResponse ops(String sessionId, long fromVersion, long serverVersion, List<EditOperation> ops) {
+        SyncResponse res = new SyncResponse();
+        res.sessionId = sessionId;
+        res.fromVersion = fromVersion;
+        res.serverVersion = serverVersion;
+        res.ops = ops;
+        return res;
+    }
+
+    public static SyncResponse snapshot(String sessionId, long serverVersion, String snapshot) {
+        SyncResponse res = new SyncResponse();
+        res.sessionId = sessionId;
+        res.fromVersion = serverVersion;
+        res.serverVersion = serverVersion;
+        res.fullSnapshot = true;
+        res.snapshot = snapshot;
+        return res;
+    }
+}
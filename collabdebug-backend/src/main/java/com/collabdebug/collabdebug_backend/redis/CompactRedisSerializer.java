@@ -0,0 +1,397 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.BaseMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.CrdtOp;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary {@link RedisSerializer} for the hot pub/sub payloads: edits and edit batches,
+ * chat messages, the presence/meta/end maps and terminal output strings.
+ * <p>
+ * Layout: {@code [schema version][type tag][fields...]}. Fields are written in declaration order
+ * without names or type metadata; integers are varints (signed ones zigzag-encoded) and strings
+ * are UTF-8 prefixed with their length + 1 (0 means null). Any other value (snapshots, forwarded
+ * requests, ...) is embedded as JSON behind the {@code JSON} tag.
+ * <p>
+ * Payloads that do not start with the schema version byte are read as JSON, so nodes using the
+ * JSON codec ({@code collab.redis.codec=json}) and old keys stay readable. A version byte this
+ * build does not know is rejected rather than misread.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    /** First byte of every binary payload. Bump it when the layout changes. Never a valid first byte of JSON. */
+    public static final byte SCHEMA_VERSION = 1;
+
+    private static final byte T_STRING = 1;
+    private static final byte T_EDIT = 2;
+    private static final byte T_EDIT_BATCH = 3;
+    private static final byte T_CHAT = 4;
+    private static final byte T_MAP = 5;
+    private static final byte T_JSON = 127;
+
+    // Map value tags
+    private static final byte V_NULL = 0;
+    private static final byte V_STRING = 1;
+    private static final byte V_LONG = 2;
+    private static final byte V_INT = 3;
+    private static final byte V_BOOLEAN = 4;
+    private static final byte V_DOUBLE = 5;
+
+    private final GenericJackson2JsonRedisSerializer json;
+
+    public CompactRedisSerializer() {
+        this(new GenericJackson2JsonRedisSerializer());
+    }
+
+    public CompactRedisSerializer(GenericJackson2JsonRedisSerializer json) {
+        this.json = json;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) return new byte[0];
+        Out out = new Out();
+        out.writeByte(SCHEMA_VERSION);
+        if (value instanceof EditMessage edit) {
+            out.writeByte(T_EDIT);
+            writeEdit(out, edit);
+        } else if (value instanceof EditBatch batch) {
+            out.writeByte(T_EDIT_BATCH);
+            writeBase(out, batch);
+            if (batch.edits == null) {
+                out.writeVarInt(0);
+            } else {
+                out.writeVarInt(batch.edits.size() + 1);
+                for (EditMessage edit : batch.edits) writeEdit(out, edit);
+            }
+        } else if (value instanceof ChatMessage chat) {
+            out.writeByte(T_CHAT);
+            writeBase(out, chat);
+            out.writeString(chat.text);
+        } else if (value instanceof String text) {
+            out.writeByte(T_STRING);
+            out.writeString(text);
+        } else if (value instanceof Map<?, ?> map && isCompactMap(map)) {
+            out.writeByte(T_MAP);
+            writeMap(out, map);
+        } else {
+            out.writeByte(T_JSON);
+            out.writeBytes(json.serialize(value));
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        return bytes == null ? null : deserialize(bytes, 0, bytes.length);
+    }
+
+    /** Decodes the payload in {@code bytes[offset, offset + length)} without copying it out first. */
+    public Object deserialize(byte[] bytes, int offset, int length) throws SerializationException {
+        if (length == 0) return null;
+        int end = offset + length;
+        byte version = bytes[offset];
+        if (version != SCHEMA_VERSION) {
+            // Control bytes are reserved for binary schema versions; anything else is JSON text
+            if (version >= 0 && version < 0x20 && version != '\t' && version != '\n' && version != '\r') {
+                throw new SerializationException("Unsupported binary schema version " + version);
+            }
+            return json.deserialize(slice(bytes, offset, end));
+        }
+        In in = new In(bytes, offset + 1, end);
+        byte type = in.readByte();
+        return switch (type) {
+            case T_EDIT -> readEdit(in);
+            case T_EDIT_BATCH -> {
+                EditBatch batch = new EditBatch();
+                readBase(in, batch);
+                int size = in.readVarInt() - 1;
+                if (size >= 0) {
+                    batch.edits = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) batch.edits.add(readEdit(in));
+                }
+                yield batch;
+            }
+            case T_CHAT -> {
+                ChatMessage chat = new ChatMessage();
+                readBase(in, chat);
+                chat.text = in.readString();
+                yield chat;
+            }
+            case T_STRING -> in.readString();
+            case T_MAP -> readMap(in);
+            case T_JSON -> json.deserialize(slice(bytes, in.pos, end));
+            default -> throw new SerializationException("Unknown payload type " + type);
+        };
+    }
+
+    // The JSON serializer only reads whole arrays
+    private static byte[] slice(byte[] bytes, int from, int to) {
+        return from == 0 && to == bytes.length ? bytes : Arrays.copyOfRange(bytes, from, to);
+    }
+
+    // ------------------- Messages -------------------
+
+    private static void writeBase(Out out, BaseMessage msg) {
+        out.writeString(msg.type);
+        out.writeString(msg.sessionId);
+        out.writeString(msg.userId);
+        out.writeVarLong(msg.clientVersion);
+        out.writeVarLong(msg.serverVersion);
+        out.writeVarLong(msg.timestamp);
+    }
+
+    private static void readBase(In in, BaseMessage msg) {
+        msg.type = in.readString();
+        msg.sessionId = in.readString();
+        msg.userId = in.readString();
+        msg.clientVersion = in.readVarLong();
+        msg.serverVersion = in.readVarLong();
+        msg.timestamp = in.readVarLong();
+    }
+
+    private static void writeEdit(Out out, EditMessage edit) {
+        writeBase(out, edit);
+        out.writeVarLong(edit.baseVersion);
+        out.writeString(edit.originNode);
+        EditOperation op = edit.op;
+        out.writeBoolean(op != null);
+        if (op != null) {
+            out.writeString(op.opId);
+            out.writeString(op.rangeStart);
+            out.writeString(op.rangeEnd);
+            out.writeString(op.text);
+            out.writeBoolean(op.isInsert);
+        }
+        if (edit.crdt == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(edit.crdt.size() + 1);
+        for (CrdtOp c : edit.crdt) {
+            out.writeBoolean(c.delete);
+            out.writeVarLong(c.counter);
+            out.writeString(c.site);
+            out.writeVarLong(c.originCounter);
+            out.writeString(c.originSite);
+            out.writeString(c.text);
+            out.writeVarLong(c.length);
+        }
+    }
+
+    private static EditMessage readEdit(In in) {
+        EditMessage edit = new EditMessage();
+        readBase(in, edit);
+        edit.baseVersion = in.readVarLong();
+        edit.originNode = in.readString();
+        if (in.readBoolean()) {
+            EditOperation op = new EditOperation();
+            op.opId = in.readString();
+            op.rangeStart = in.readString();
+            op.rangeEnd = in.readString();
+            op.text = in.readString();
+            op.isInsert = in.readBoolean();
+            edit.op = op;
+        }
+        int size = in.readVarInt() - 1;
+        if (size >= 0) {
+            List<CrdtOp> crdt = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                CrdtOp c = new CrdtOp();
+                c.delete = in.readBoolean();
+                c.counter = in.readVarLong();
+                c.site = in.readString();
+                c.originCounter = in.readVarLong();
+                c.originSite = in.readString();
+                c.text = in.readString();
+                c.length = (int) in.readVarLong();
+                crdt.add(c);
+            }
+            edit.crdt = crdt;
+        }
+        return edit;
+    }
+
+    // ------------------- Maps -------------------
+
+    /** String keys with null, string, integer, boolean or double values (presence/meta/end payloads). */
+    private static boolean isCompactMap(Map<?, ?> map) {
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            Object v = e.getValue();
+            if (!(e.getKey() instanceof String)) return false;
+            if (v != null && !(v instanceof String || v instanceof Long || v instanceof Integer
+                    || v instanceof Boolean || v instanceof Double)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeMap(Out out, Map<?, ?> map) {
+        out.writeVarInt(map.size());
+        for (Map.Entry<?, ?> e : map.entrySet()) {
+            out.writeString((String) e.getKey());
+            Object v = e.getValue();
+            if (v == null) {
+                out.writeByte(V_NULL);
+            } else if (v instanceof String s) {
+                out.writeByte(V_STRING);
+                out.writeString(s);
+            } else if (v instanceof Long l) {
+                out.writeByte(V_LONG);
+                out.writeVarLong(l);
+            } else if (v instanceof Integer i) {
+                out.writeByte(V_INT);
+                out.writeVarLong(i);
+            } else if (v instanceof Boolean b) {
+                out.writeByte(V_BOOLEAN);
+                out.writeBoolean(b);
+            } else {
+                out.writeByte(V_DOUBLE);
+                out.writeVarLong(Double.doubleToRawLongBits((Double) v));
+            }
+        }
+    }
+
+    private static Map<String, Object> readMap(In in) {
+        int size = in.readVarInt();
+        Map<String, Object> map = new LinkedHashMap<>(Math.max(4, size * 2));
+        for (int i = 0; i < size; i++) {
+            String key = in.readString();
+            byte tag = in.readByte();
+            Object value = switch (tag) {
+                case V_NULL -> null;
+                case V_STRING -> in.readString();
+                case V_LONG -> in.readVarLong();
+                case V_INT -> (int) in.readVarLong();
+                case V_BOOLEAN -> in.readBoolean();
+                case V_DOUBLE -> Double.longBitsToDouble(in.readVarLong());
+                default -> throw new SerializationException("Unknown map value tag " + tag);
+            };
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    // ------------------- Encoding primitives -------------------
+
+    private static final class Out {
+        private byte[] buf = new byte[64];
+        private int pos;
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeBoolean(boolean b) {
+            writeByte(b ? 1 : 0);
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeVarInt(int value) {
+            writeUnsigned(value & 0xFFFFFFFFL);
+        }
+
+        /** Zigzag-encoded, so small negative values (e.g. version -1) stay one byte. */
+        void writeVarLong(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length + 1);
+            writeBytes(utf8);
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class In {
+        private final byte[] buf;
+        private final int end;
+        private int pos;
+
+        In(byte[] buf, int pos, int end) {
+            this.buf = buf;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        byte readByte() {
+            if (pos >= end) throw new SerializationException("Truncated payload");
+            return buf[pos++];
+        }
+
+        boolean readBoolean() {
+            return readByte() != 0;
+        }
+
+        int readVarInt() {
+            return (int) readUnsigned();
+        }
+
+        long readVarLong() {
+            long raw = readUnsigned();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        private long readUnsigned() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new SerializationException("Malformed varint");
+        }
+
+        String readString() {
+            int len = readVarInt() - 1;
+            if (len < 0) return null;
+            if (len > end - pos) throw new SerializationException("Truncated payload");
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
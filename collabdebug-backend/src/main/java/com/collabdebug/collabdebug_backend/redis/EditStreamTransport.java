@@ -0,0 +1,208 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Optional Redis Streams transport for session-updates ({@code collab.edits.transport=stream}).
+ * <p>
+ * Edits and edit batches are appended with {@code XADD} to one stream, trimmed to about
+ * {@code collab.edits.stream.max-len} entries. Every node reads the whole stream through its own
+ * consumer group (named after the node id), up to {@code batch-size} entries per
+ * {@code XREADGROUP}, relays them, then acknowledges the batch with one {@code XACK}.
+ * <p>
+ * Unlike pub/sub, a node that loses its Redis connection does not miss edits: the group remembers
+ * what was delivered, so after reconnecting the reader first re-reads its unacknowledged entries
+ * and then continues after the last delivered one. Groups of nodes with a configured
+ * {@code collab.node-id} survive restarts; groups of random-id nodes are removed on shutdown.
+ */
+@Component
+public class EditStreamTransport {
+
+    static final String STREAM_KEY = "session-updates-stream";
+    private static final byte[] STREAM_KEY_BYTES = STREAM_KEY.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SESSION_FIELD = "s".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAYLOAD_FIELD = "p".getBytes(StandardCharsets.UTF_8);
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String nodeId;
+    private final boolean stableNodeId;
+    private final boolean enabled;
+    private final long maxLen;
+    private final int batchSize;
+    private final Duration blockTimeout;
+    private final ExecutorService reader;
+
+    private volatile boolean running;
+
+    @Autowired
+    public EditStreamTransport(RedisTemplate<String, Object> redisTemplate, NodeIdentity nodeIdentity,
+                               @Value("${collab.node-id:}") String configuredNodeId,
+                               @Value("${collab.edits.transport:pubsub}") String transport,
+                               @Value("${collab.edits.stream.max-len:100000}") long maxLen,
+                               @Value("${collab.edits.stream.batch-size:256}") int batchSize,
+                               @Value("${collab.edits.stream.block-ms:2000}") long blockMs) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeIdentity.getNodeId();
+        this.stableNodeId = StringUtils.hasText(configuredNodeId);
+        this.enabled = "stream".equalsIgnoreCase(transport);
+        this.maxLen = maxLen;
+        this.batchSize = batchSize;
+        this.blockTimeout = Duration.ofMillis(blockMs);
+        this.reader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "edit-stream-reader");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Issues the XADD for an already serialized edit payload (EditMessage or EditBatch) of
+     * {@code sessionId} on {@code connection} (which may be pipelined).
+     */
+    public void append(RedisConnection connection, String sessionId, byte[] body) {
+        MapRecord<byte[], byte[], byte[]> record = MapRecord.create(STREAM_KEY_BYTES, Map.of(
+                SESSION_FIELD, sessionId.getBytes(StandardCharsets.UTF_8),
+                PAYLOAD_FIELD, body));
+        connection.streamCommands().xAdd(record, RedisStreamCommands.XAddOptions.maxlen(maxLen).approximateTrimming(true));
+    }
+
+    /** Starts reading the stream on a dedicated thread, handing each entry's (sessionId, payload bytes) to {@code relay}. */
+    public void start(BiConsumer<String, byte[]> relay) {
+        if (!enabled || running) return;
+        running = true;
+        reader.execute(() -> readLoop(relay));
+        System.out.println("[EditStreamTransport] ✅ Reading " + STREAM_KEY + " as consumer group " + nodeId);
+    }
+
+    private void readLoop(BiConsumer<String, byte[]> relay) {
+        Consumer consumer = Consumer.from(nodeId, nodeId);
+        while (running) {
+            RedisConnection connection = null;
+            try {
+                // Blocking reads get a connection of their own rather than the shared one
+                connection = redisTemplate.getRequiredConnectionFactory().getConnection();
+                RedisStreamCommands streams = connection.streamCommands();
+                createGroup(streams);
+
+                // Entries delivered before a disconnect but never acknowledged come first
+                boolean pending = true;
+                while (running) {
+                    ReadOffset offset = pending ? ReadOffset.from("0") : ReadOffset.lastConsumed();
+                    StreamReadOptions options = StreamReadOptions.empty().count(batchSize);
+                    if (!pending) options = options.block(blockTimeout);
+                    List<ByteRecord> records = streams.xReadGroup(consumer, options, streamOffsets(offset));
+                    if (records == null || records.isEmpty()) {
+                        pending = false;
+                        continue;
+                    }
+                    RecordId[] ids = new RecordId[records.size()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ByteRecord record = records.get(i);
+                        ids[i] = record.getId();
+                        relay(record, relay);
+                    }
+                    streams.xAck(STREAM_KEY_BYTES, nodeId, ids);
+                }
+            } catch (Exception e) {
+                if (!running) break;
+                System.err.println("[EditStreamTransport] ❌ Stream read failed, reconnecting in " + RECONNECT_DELAY_MS + " ms: " + e.getMessage());
+                sleep(RECONNECT_DELAY_MS);
+            } finally {
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    private void relay(ByteRecord record, BiConsumer<String, byte[]> relay) {
+        byte[] sessionId = null;
+        byte[] payload = null;
+        // Map<byte[], ...> does not look keys up by content
+        for (Map.Entry<byte[], byte[]> field : record.getValue().entrySet()) {
+            if (Arrays.equals(field.getKey(), SESSION_FIELD)) sessionId = field.getValue();
+            else if (Arrays.equals(field.getKey(), PAYLOAD_FIELD)) payload = field.getValue();
+        }
+        // Pending entries that were trimmed away in the meantime come back without fields
+        if (sessionId == null || payload == null) return;
+        try {
+            relay.accept(new String(sessionId, StandardCharsets.UTF_8), payload);
+        } catch (Exception e) {
+            System.err.println("[EditStreamTransport] ❌ Error relaying stream entry " + record.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private void createGroup(RedisStreamCommands streams) {
+        try {
+            // A new group starts at the end: its clients catch up through sync, not through old edits
+            streams.xGroupCreate(STREAM_KEY_BYTES, nodeId, ReadOffset.latest(), true);
+        } catch (Exception e) {
+            if (!String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage()).contains("BUSYGROUP")) throw e;
+        }
+    }
+
+    // xReadGroup only takes StreamOffset varargs; passing a ready array avoids a generic varargs array at the call site
+    @SuppressWarnings("unchecked")
+    private static StreamOffset<byte[]>[] streamOffsets(ReadOffset offset) {
+        return new StreamOffset[]{StreamOffset.create(STREAM_KEY_BYTES, offset)};
+    }
+
+    private static void closeQuietly(RedisConnection connection) {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) return;
+        running = false;
+        reader.shutdownNow();
+        if (stableNodeId) return;
+        RedisConnectionFactory factory = redisTemplate.getConnectionFactory();
+        if (factory == null) return;
+        try (RedisConnection connection = factory.getConnection()) {
+            connection.streamCommands().xGroupDestroy(STREAM_KEY_BYTES, nodeId);
+        } catch (Exception e) {
+            System.err.println("[EditStreamTransport] ❌ Failed to remove consumer group " + nodeId + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.service.ChatHistoryService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-process transport for single-node deployments ({@code collab.transport=loopback}).
+ * <p>
+ * All subscribers are on this node and RedisPublisher has already delivered to them, so session
+ * events and edits are not sent anywhere: no serialization, no Redis round trip. Messages to this
+ * node's own inbox are handed to {@link NodeInboxListener} directly; there are no other nodes to
+ * reach. Chat history, snapshots and session ownership have in-memory counterparts in this mode
+ * (InMemoryChatHistoryService, InMemorySnapshotStore, leases disabled), so a loopback node runs
+ * without Redis.
+ */
+@Component
+@ConditionalOnProperty(name = "collab.transport", havingValue = "loopback")
+public class LoopbackSessionTransport implements SessionTransport {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final ChatHistoryService chatHistory;
+    private final NodeIdentity nodeIdentity;
+    // NodeInboxListener publishes its replies through RedisPublisher, which uses this transport
+    private final ObjectProvider<NodeInboxListener> inbox;
+
+    @Autowired
+    public LoopbackSessionTransport(ChatHistoryService chatHistory, NodeIdentity nodeIdentity,
+                                    ObjectProvider<NodeInboxListener> inbox) {
+        this.chatHistory = chatHistory;
+        this.nodeIdentity = nodeIdentity;
+        this.inbox = inbox;
+        System.out.println("[LoopbackSessionTransport] ✅ Single-node mode: session events stay in this JVM");
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String channel, Object payload) {
+        return DONE;
+    }
+
+    @Override
+    public CompletableFuture<Void> publishEdits(String sessionId, Object payload) {
+        return DONE;
+    }
+
+    @Override
+    public CompletableFuture<Void> publishChat(ChatMessage chat) {
+        return chatHistory.append(chat);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendToNode(String nodeId, Object message) {
+        if (!nodeIdentity.getNodeId().equals(nodeId)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No node " + nodeId + " in loopback mode"));
+        }
+        inbox.getObject().handle(message);
+        return DONE;
+    }
+}
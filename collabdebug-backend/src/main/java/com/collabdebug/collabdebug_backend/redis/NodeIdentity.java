@@ -0,0 +1,26 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.UUID;
+
+/**
+ * Identifies this backend instance in cross-node Redis traffic. Configure {@code collab.node-id}
+ * for stable ids across restarts; otherwise a random id is generated per JVM.
+ */
+@Component
+public class NodeIdentity {
+
+    private final String nodeId;
+
+    public NodeIdentity(@Value("${collab.node-id:}") String configuredId) {
+        this.nodeId = StringUtils.hasText(configuredId) ? configuredId : UUID.randomUUID().toString();
+        System.out.println("[NodeIdentity] Node ID: " + nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
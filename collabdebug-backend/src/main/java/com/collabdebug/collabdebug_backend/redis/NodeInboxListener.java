@@ -0,0 +1,88 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.EditResponse;
+import com.collabdebug.collabdebug_backend.dto.ws.ForwardedReply;
+import com.collabdebug.collabdebug_backend.dto.ws.ForwardedRequest;
+import com.collabdebug.collabdebug_backend.dto.ws.SyncResponse;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Listens on this node's inbox channel ({@code node-inbox:{nodeId}}).
+ * As a session owner it receives edits and sync requests forwarded by the nodes holding the clients'
+ * connections; as such a node it receives the owner's replies and delivers them to the user.
+ */
+@Component
+public class NodeInboxListener implements MessageListener {
+
+    public static final String CHANNEL_PREFIX = "node-inbox:";
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private RedisPublisher redisPublisher;
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object payload;
+        try {
+            payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        } catch (Exception e) {
+            System.err.println("[NodeInboxListener] ❌ Error processing inbox message: " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+        handle(payload);
+    }
+
+    /** Handles one inbox message; called directly by the loopback transport. */
+    public void handle(Object payload) {
+        try {
+            if (payload instanceof ForwardedRequest request) {
+                handleRequest(request);
+            } else if (payload instanceof ForwardedReply reply) {
+                Object body = reply.editResponse != null ? reply.editResponse : reply.syncResponse;
+                sessionService.replyToUser(reply.userId, reply.destination, body);
+            } else {
+                System.err.println("[NodeInboxListener] ❌ Unexpected inbox message: " + payload);
+            }
+        } catch (Exception e) {
+            System.err.println("[NodeInboxListener] ❌ Error processing inbox message: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private void handleRequest(ForwardedRequest request) {
+        ForwardedReply reply = new ForwardedReply();
+        if ("edit".equals(request.type) && request.edit != null) {
+            EditResponse res = sessionService.submitEdit(request.edit, request.hops);
+            // Accepted edits reach the author through the session broadcast; only rejections are answered
+            if (res == null || res.applied || request.edit.userId == null) return;
+            reply.userId = request.edit.userId;
+            reply.destination = "/queue/edits";
+            reply.editResponse = res;
+        } else if ("replace".equals(request.type) && request.edit != null && request.edit.op != null) {
+            // Code submitted for a run on the forwarding node; nobody waits for an answer
+            sessionService.replaceDocument(request.edit.sessionId, request.edit.op.text, request.hops);
+            return;
+        } else if ("sync".equals(request.type) && request.sync != null) {
+            SyncResponse res = sessionService.submitSync(request.sync, request.hops);
+            if (res == null) return;
+            reply.userId = request.sync.userId;
+            reply.destination = "/queue/sync";
+            reply.syncResponse = res;
+        } else {
+            System.err.println("[NodeInboxListener] ❌ Malformed forwarded request of type " + request.type);
+            return;
+        }
+        redisPublisher.publishToNode(request.fromNode, reply);
+    }
+}
@@ -0,0 +1,154 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbound path for the Redis commands issued by {@link RedisPublisher}.
+ * <p>
+ * In {@code async} mode (default) commands go into a bounded FIFO queue and return right away; a
+ * single "redis-publisher" thread drains whatever has accumulated (up to {@code max-batch}) and
+ * sends it as one pipelined round trip. Order is preserved across all commands, so edits of a
+ * session still reach Redis in sequence. When the queue stays full for {@code offer-timeout-ms}
+ * the command is rejected and its future fails.
+ * <p>
+ * In {@code sync} mode each command (which may be several Redis calls) runs pipelined on the
+ * caller's thread.
+ * <p>
+ * Either way the returned future completes once Redis has answered; callers that don't care
+ * simply ignore it. Latency from submit to completion is recorded as {@code redis.publish.latency}.
+ */
+@Component
+public class RedisCommandPipeline {
+
+    /** One logical publish; may issue several Redis calls on the (pipelined) connection. */
+    @FunctionalInterface
+    public interface Command {
+        void execute(RedisConnection connection);
+    }
+
+    private record Queued(Command command, CompletableFuture<Void> done, long submittedAt) {
+    }
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final CollabMetrics metrics;
+    private final boolean async;
+    private final int maxBatch;
+    private final long offerTimeoutMs;
+    private final BlockingQueue<Queued> queue;
+    private final ExecutorService drainer;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public RedisCommandPipeline(RedisTemplate<String, Object> redisTemplate, CollabMetrics metrics,
+                                @Value("${collab.redis.publish.mode:async}") String mode,
+                                @Value("${collab.redis.publish.queue-capacity:10000}") int queueCapacity,
+                                @Value("${collab.redis.publish.max-batch:256}") int maxBatch,
+                                @Value("${collab.redis.publish.offer-timeout-ms:1000}") long offerTimeoutMs) {
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+        this.async = !"sync".equalsIgnoreCase(mode);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.drainer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "redis-publisher");
+            t.setDaemon(true);
+            return t;
+        });
+        metrics.gauge("redis.publish.queue-depth", queue::size);
+        if (async) drainer.execute(this::drainLoop);
+    }
+
+    public CompletableFuture<Void> submit(Command command) {
+        long now = System.nanoTime();
+        if (!async || !running) {
+            List<Queued> single = List.of(new Queued(command, new CompletableFuture<>(), now));
+            execute(single);
+            return single.get(0).done;
+        }
+        Queued queued = new Queued(command, new CompletableFuture<>(), now);
+        try {
+            if (queue.offer(queued, offerTimeoutMs, TimeUnit.MILLISECONDS)) return queued.done;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        metrics.increment("redis.publish.rejected");
+        System.err.println("[RedisCommandPipeline] ❌ Publish queue full (" + queue.size() + "), command rejected");
+        return CompletableFuture.failedFuture(new RejectedExecutionException("Redis publish queue full"));
+    }
+
+    private void drainLoop() {
+        List<Queued> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Queued first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Everything that piled up while the previous round trip was in flight goes out together
+                queue.drainTo(batch, maxBatch - 1);
+                execute(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<Queued> batch) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Queued queued : batch) queued.command.execute(connection);
+                return null;
+            });
+            long done = System.nanoTime();
+            metrics.increment("redis.publish.round-trips");
+            metrics.add("redis.publish.commands", batch.size());
+            for (Queued queued : batch) {
+                metrics.recordNanos("redis.publish.latency", done - queued.submittedAt);
+                queued.done.complete(null);
+            }
+        } catch (Exception e) {
+            metrics.add("redis.publish.failed", batch.size());
+            System.err.println("[RedisCommandPipeline] ❌ Failed to send " + batch.size() + " Redis command(s): " + e.getMessage());
+            for (Queued queued : batch) queued.done.completeExceptionally(e);
+        }
+    }
+
+    /** Sends what is still queued before the connection factory goes away. */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Queued> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            System.out.println("[RedisCommandPipeline] Flushing " + rest.size() + " queued Redis command(s) on shutdown");
+            execute(rest);
+        }
+    }
+}
@@ -1,58 +1,85 @@
 package com.collabdebug.collabdebug_backend.redis;
 
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
 import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
 import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Publishes session events to the other backend nodes through the configured
+ * {@link SessionTransport} (Redis pub/sub by default, in-process loopback on a single node). With
+ * Redis, payloads are serialized on the caller's thread and the Redis calls are queued and
+ * pipelined, so publishing does not block the STOMP inbound thread. Every method returns a future
+ * that completes when the transport has accepted the message; fire-and-forget callers just ignore it.
+ * <p>
+ * Chat, terminal, presence, meta and end events are delivered to this node's subscribers here,
+ * once; the relay skips messages published by this node. Edits are delivered locally by their
+ * callers (EditBroadcaster), since clients get a different view of them than other nodes.
+ */
 @Component
 public class RedisPublisher {
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private SessionTransport transport;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
 
     // Existing method
-    public void publishEdit(EditMessage edit) {
-        String channel = "session-updates:" + edit.sessionId;
-        redisTemplate.convertAndSend(channel, edit);
+    public CompletableFuture<Void> publishEdit(EditMessage edit) {
+        return transport.publishEdits(edit.sessionId, edit);
+    }
 
-        // persist master doc and version in Redis for durability if desired
-        redisTemplate.opsForValue().set("session-doc:" + edit.sessionId, edit); // or store doc+version separately
+    // Publish a micro-batch of edits with a single message (see EditBroadcaster)
+    public CompletableFuture<Void> publishEdits(EditBatch batch) {
+        return transport.publishEdits(batch.sessionId, batch);
     }
 
-    // NEW: publish chat messages
-    public void publishChat(ChatMessage chat) {
-        String channel = "session-chat:" + chat.sessionId;
-        redisTemplate.convertAndSend(channel, chat);
+    // Point-to-point message to one backend node (requests forwarded to a session's owner and their replies)
+    public CompletableFuture<Void> publishToNode(String nodeId, Object message) {
+        return transport.sendToNode(nodeId, message);
+    }
 
-        // Optional: persist chat to Redis if needed for history
-        redisTemplate.opsForList().rightPush("session-chat-history:" + chat.sessionId, chat);
+    // NEW: publish chat messages
+    public CompletableFuture<Void> publishChat(ChatMessage chat) {
+        deliverLocally("/topic/session/" + chat.sessionId + "/chat", chat);
+        return transport.publishChat(chat);
     }
     // 🚨 NEW: Publish terminal output
-    public void publishTerminalOutput(String sessionId, String output) {
+    public CompletableFuture<Void> publishTerminalOutput(String sessionId, String output) {
         // Use a simple map/DTO for the terminal output payload if needed,
         // but a raw string often suffices.
-        String channel = "session-terminal:" + sessionId;
-        redisTemplate.convertAndSend(channel, output);
+        deliverLocally("/topic/session/" + sessionId + "/terminal", output);
+        return transport.publish("session-terminal:" + sessionId, output);
     }
 
     // 🚨 NEW: Publish presence updates
-    public void publishPresence(String sessionId, Object payload) {
-        String channel = "session-presence:" + sessionId;
-        redisTemplate.convertAndSend(channel, payload);
+    public CompletableFuture<Void> publishPresence(String sessionId, Object payload) {
+        deliverLocally("/topic/session/" + sessionId + "/presence", payload);
+        return transport.publish("session-presence:" + sessionId, payload);
     }
 
     // 🚨 NEW: Publish session end event
-    public void publishSessionEnded(String sessionId, Object payload) {
-        String channel = "session-end:" + sessionId;
-        redisTemplate.convertAndSend(channel, payload);
+    public CompletableFuture<Void> publishSessionEnded(String sessionId, Object payload) {
+        deliverLocally("/topic/session/" + sessionId + "/end", payload);
+        return transport.publish("session-end:" + sessionId, payload);
     }
 
     // 🚨 NEW: Publish session metadata changes (language, etc.)
-    public void publishSessionMeta(String sessionId, Object payload) {
-        String channel = "session-meta:" + sessionId;
-        redisTemplate.convertAndSend(channel, payload);
+    public CompletableFuture<Void> publishSessionMeta(String sessionId, Object payload) {
+        deliverLocally("/topic/session/" + sessionId + "/meta", payload);
+        return transport.publish("session-meta:" + sessionId, payload);
+    }
+
+    private void deliverLocally(String destination, Object payload) {
+        try {
+            messagingTemplate.convertAndSend(destination, payload);
+        } catch (Exception e) {
+            System.err.println("[RedisPublisher] ❌ Failed to deliver to local subscribers of " + destination + ": " + e.getMessage());
+        }
     }
 }
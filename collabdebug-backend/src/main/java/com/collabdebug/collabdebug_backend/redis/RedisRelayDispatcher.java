@@ -0,0 +1,225 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single Redis pub/sub listener for all session channels (session-updates, session-chat,
+ * session-terminal, session-presence, session-meta, session-end), relaying each message to the
+ * matching STOMP topic {@code /topic/session/{id}/...}.
+ * <p>
+ * The channel is routed by comparing its raw bytes against a small prefix table; the only string
+ * built from it is the session id. Payloads are decoded in place, from their offset behind the
+ * origin tag: with the binary codec by the template's {@link CompactRedisSerializer}; with the JSON
+ * codec chat, terminal and map payloads are read with one shared, preconfigured
+ * {@link ObjectReader} per payload type. Only edit traffic under the JSON codec (polymorphic type
+ * info, template serializer without an offset API) copies the payload out of a tagged message.
+ * <p>
+ * Messages published by this node (see {@link RelayEnvelope}) were already delivered locally and
+ * are dropped before decoding; {@code redis.relay.suppressed} counts them.
+ */
+@Component
+public class RedisRelayDispatcher implements MessageListener {
+
+    public static final String EDITS_CHANNEL_PREFIX = "session-updates:";
+    private static final String TYPE_PROPERTY = "@class";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final Decoder<Object> typedDecoder;
+    private final SessionService sessionService;
+    private final NodeIdentity nodeIdentity;
+    private final CollabMetrics metrics;
+    private final byte[] ownNode;
+
+    private final Decoder<ChatMessage> chatDecoder;
+    private final Decoder<Map<String, Object>> mapDecoder;
+    private final Decoder<String> stringDecoder;
+    private final Route[] routes;
+
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T decode(byte[] body, int offset) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(String sessionId, String destination, byte[] body, int offset) throws IOException;
+    }
+
+    private record Route(byte[] prefix, String channelPrefix, String topicSuffix, Handler handler) {
+    }
+
+    @Autowired
+    public RedisRelayDispatcher(SimpMessagingTemplate messagingTemplate, RedisTemplate<String, Object> redisTemplate,
+                                SessionService sessionService, NodeIdentity nodeIdentity, CollabMetrics metrics) {
+        this.messagingTemplate = messagingTemplate;
+        RedisSerializer<?> typedSerializer = redisTemplate.getValueSerializer();
+        this.sessionService = sessionService;
+        this.nodeIdentity = nodeIdentity;
+        this.metrics = metrics;
+        this.ownNode = nodeIdentity.getNodeId().getBytes(StandardCharsets.UTF_8);
+
+        if (typedSerializer instanceof CompactRedisSerializer compact) {
+            this.typedDecoder = (body, offset) -> compact.deserialize(body, offset, body.length - offset);
+            this.chatDecoder = (body, offset) -> (ChatMessage) typedDecoder.decode(body, offset);
+            this.mapDecoder = (body, offset) -> castMap(typedDecoder.decode(body, offset));
+            this.stringDecoder = (body, offset) -> (String) typedDecoder.decode(body, offset);
+        } else {
+            this.typedDecoder = (body, offset) -> typedSerializer.deserialize(offset == 0 ? body : Arrays.copyOfRange(body, offset, body.length));
+            // Payloads are written by GenericJackson2JsonRedisSerializer: ignore its "@class" hints
+            ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            ObjectReader chatReader = mapper.readerFor(ChatMessage.class);
+            ObjectReader mapReader = mapper.readerFor(new TypeReference<Map<String, Object>>() { });
+            ObjectReader stringReader = mapper.readerFor(String.class);
+            this.chatDecoder = (body, offset) -> chatReader.readValue(body, offset, body.length - offset);
+            this.mapDecoder = (body, offset) -> mapReader.readValue(body, offset, body.length - offset);
+            this.stringDecoder = (body, offset) -> stringReader.readValue(body, offset, body.length - offset);
+        }
+
+        this.routes = new Route[] {
+                route(EDITS_CHANNEL_PREFIX, "/edits", this::relayEdits),
+                route("session-chat:", "/chat", (sid, dest, body, offset) -> messagingTemplate.convertAndSend(dest, (Object) chatDecoder.decode(body, offset))),
+                route("session-terminal:", "/terminal", (sid, dest, body, offset) -> messagingTemplate.convertAndSend(dest, (Object) stringDecoder.decode(body, offset))),
+                route("session-presence:", "/presence", this::relayMap),
+                route("session-meta:", "/meta", this::relayMap),
+                route("session-end:", "/end", this::relayMap),
+        };
+    }
+
+    private static Route route(String channelPrefix, String topicSuffix, Handler handler) {
+        return new Route(channelPrefix.getBytes(StandardCharsets.US_ASCII), channelPrefix, topicSuffix, handler);
+    }
+
+    /** Channel prefixes this dispatcher relays, one per route; the session id follows the prefix. */
+    public List<String> channelPrefixes() {
+        List<String> prefixes = new ArrayList<>(routes.length);
+        for (Route route : routes) prefixes.add(route.channelPrefix);
+        return prefixes;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        byte[] channel = message.getChannel();
+        Route route = match(channel);
+        if (route == null) {
+            System.err.println("[RedisRelayDispatcher] ❌ Received message on unknown Redis channel: " + new String(channel, StandardCharsets.UTF_8));
+            return;
+        }
+        byte[] body = message.getBody();
+        int offset = payloadOffset(body);
+        if (offset < 0) return;
+        int idStart = route.prefix.length;
+        String sessionId = new String(channel, idStart, channel.length - idStart, StandardCharsets.UTF_8);
+        String destination = "/topic/session/" + sessionId + route.topicSuffix;
+        try {
+            route.handler.handle(sessionId, destination, body, offset);
+        } catch (Exception e) {
+            System.err.println("[RedisRelayDispatcher] ❌ Error relaying Redis message " + describe(body) + " to " + destination + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /** @return where the payload starts in {@code body}, or -1 if this node published it */
+    private int payloadOffset(byte[] body) {
+        int offset = RelayEnvelope.payloadOffset(body);
+        if (offset > 0 && RelayEnvelope.isFrom(body, ownNode)) {
+            metrics.increment("redis.relay.suppressed");
+            return -1;
+        }
+        return offset;
+    }
+
+    private static String describe(byte[] body) {
+        int offset = RelayEnvelope.payloadOffset(body);
+        if (offset == 0) return "(untagged)";
+        return new String(body, 2, body[1] & 0xFF, StandardCharsets.UTF_8) + "/" + RelayEnvelope.messageId(body);
+    }
+
+    /** Relays one session-updates payload that arrived outside pub/sub (see EditStreamTransport). */
+    public void relayEdits(String sessionId, byte[] body) {
+        int offset = payloadOffset(body);
+        if (offset < 0) return;
+        String destination = "/topic/session/" + sessionId + "/edits";
+        try {
+            relayEdits(sessionId, destination, body, offset);
+        } catch (Exception e) {
+            System.err.println("[RedisRelayDispatcher] ❌ Error relaying Redis message " + describe(body) + " to " + destination + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private Route match(byte[] channel) {
+        for (Route route : routes) {
+            byte[] prefix = route.prefix;
+            if (channel.length > prefix.length && Arrays.equals(channel, 0, prefix.length, prefix, 0, prefix.length)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void relayMap(String sessionId, String destination, byte[] body, int offset) throws IOException {
+        Map<String, Object> payload = mapDecoder.decode(body, offset);
+        if (payload == null) return;
+        payload.remove(TYPE_PROPERTY);
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object payload) {
+        return (Map<String, Object>) payload;
+    }
+
+    /**
+     * Edit traffic: micro-batches from EditBroadcaster are relayed to the topic as one frame, CRDT
+     * replica ops from other nodes are merged into the local replica, and replica state requests
+     * are answered by SessionService.
+     */
+    private void relayEdits(String sessionId, String destination, byte[] body, int offset) throws IOException {
+        Object payload = typedDecoder.decode(body, offset);
+        if (payload instanceof EditBatch batch) {
+            if (batch.edits == null || batch.edits.isEmpty()) return;
+            boolean replicaOps = false;
+            for (EditMessage edit : batch.edits) {
+                if (edit.originNode == null) continue;
+                replicaOps = true;
+                if (!nodeIdentity.getNodeId().equals(edit.originNode)) {
+                    sessionService.applyRemoteEdit(edit);
+                }
+            }
+            if (!replicaOps) messagingTemplate.convertAndSend(destination, batch);
+        } else if (payload instanceof EditMessage edit) {
+            if (edit.originNode != null) {
+                // CRDT replication traffic: ours is already applied locally
+                if (!nodeIdentity.getNodeId().equals(edit.originNode)) {
+                    sessionService.applyRemoteEdit(edit);
+                }
+                return;
+            }
+            messagingTemplate.convertAndSend(destination, edit);
+        } else {
+            System.err.println("[RedisRelayDispatcher] ❌ Unexpected edit payload on " + destination + ": " + payload);
+        }
+    }
+}
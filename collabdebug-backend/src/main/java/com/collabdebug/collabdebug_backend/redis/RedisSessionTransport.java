@@ -0,0 +1,99 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.service.RedisChatHistoryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Redis pub/sub transport ({@code collab.transport=redis}, default). Payloads are serialized on the
+ * caller's thread and sent through {@link RedisCommandPipeline}; edits go to the edit stream when
+ * {@code collab.edits.transport=stream}.
+ * <p>
+ * Session messages are tagged with this node's id and a message id ({@link RelayEnvelope}), so the
+ * relay can skip its own node's messages. Inbox messages and the chat history entry are not tagged.
+ * <p>
+ * With the STOMP broker relay ({@code collab.stomp.broker=relay}) the broker already delivers session
+ * events to every node's clients, so only the inbox, chat history and CRDT replica ops use Redis.
+ */
+@Component
+@ConditionalOnProperty(name = "collab.transport", havingValue = "redis", matchIfMissing = true)
+public class RedisSessionTransport implements SessionTransport {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final RedisSerializer<Object> serializer;
+    private final EditStreamTransport editStream;
+    private final RedisCommandPipeline pipeline;
+    private final RedisChatHistoryService chatHistory;
+    private final byte[] originNode;
+    private final boolean brokerRelay;
+    private final boolean replicateEdits;
+    private final AtomicLong messageIds = new AtomicLong();
+
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public RedisSessionTransport(RedisTemplate<String, Object> redisTemplate, EditStreamTransport editStream,
+                                 RedisCommandPipeline pipeline, RedisChatHistoryService chatHistory, NodeIdentity nodeIdentity,
+                                 @Value("${collab.stomp.broker:simple}") String broker,
+                                 @Value("${collab.document.mode:ot}") String documentMode) {
+        this.serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        this.editStream = editStream;
+        this.pipeline = pipeline;
+        this.chatHistory = chatHistory;
+        this.originNode = nodeIdentity.getNodeId().getBytes(StandardCharsets.UTF_8);
+        this.brokerRelay = "relay".equalsIgnoreCase(broker);
+        // CRDT replicas merge each other's ops; OT edits only need to reach clients
+        this.replicateEdits = !brokerRelay || "crdt".equalsIgnoreCase(documentMode);
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String channel, Object payload) {
+        if (brokerRelay) return DONE;
+        byte[] channelBytes = channel.getBytes(StandardCharsets.UTF_8);
+        byte[] body = tag(serializer.serialize(payload));
+        return pipeline.submit(connection -> connection.publish(channelBytes, body));
+    }
+
+    @Override
+    public CompletableFuture<Void> publishEdits(String sessionId, Object payload) {
+        if (!replicateEdits) return DONE;
+        byte[] body = tag(serializer.serialize(payload));
+        if (editStream.isEnabled()) {
+            return pipeline.submit(connection -> editStream.append(connection, sessionId, body));
+        }
+        // Document and version are persisted by SessionSnapshotService (session-snapshot:{id})
+        byte[] channel = (RedisRelayDispatcher.EDITS_CHANNEL_PREFIX + sessionId).getBytes(StandardCharsets.UTF_8);
+        return pipeline.submit(connection -> connection.publish(channel, body));
+    }
+
+    @Override
+    public CompletableFuture<Void> publishChat(ChatMessage chat) {
+        byte[] channel = ("session-chat:" + chat.sessionId).getBytes(StandardCharsets.UTF_8);
+        byte[] body = serializer.serialize(chat);
+        CompletableFuture<Void> stored = chatHistory.append(chat.sessionId, body);
+        if (brokerRelay) return stored;
+        byte[] tagged = tag(body);
+        return CompletableFuture.allOf(pipeline.submit(connection -> connection.publish(channel, tagged)), stored);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendToNode(String nodeId, Object message) {
+        // Not tagged: the inbox is not relayed, and only its addressee listens to it
+        byte[] channel = (NodeInboxListener.CHANNEL_PREFIX + nodeId).getBytes(StandardCharsets.UTF_8);
+        byte[] body = serializer.serialize(message);
+        return pipeline.submit(connection -> connection.publish(channel, body));
+    }
+
+    private byte[] tag(byte[] payload) {
+        return RelayEnvelope.wrap(originNode, messageIds.incrementAndGet(), payload);
+    }
+}
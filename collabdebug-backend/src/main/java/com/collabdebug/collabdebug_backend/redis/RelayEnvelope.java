@@ -0,0 +1,52 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import java.util.Arrays;
+
+/**
+ * Origin tag in front of every payload RedisPublisher sends on the session channels and the edit
+ * stream: {@code [0xEC][node id length][node id][message id: 8 bytes][payload]}.
+ * <p>
+ * The publishing node has already delivered the message to its own subscribers, so the relay drops
+ * messages carrying its own node id without decoding them. The marker byte can't start a JSON or
+ * binary codec payload, so untagged payloads are still relayed as before.
+ */
+final class RelayEnvelope {
+
+    static final byte MARKER = (byte) 0xEC;
+    private static final int MESSAGE_ID_BYTES = 8;
+
+    private RelayEnvelope() {
+    }
+
+    static byte[] wrap(byte[] originNode, long messageId, byte[] payload) {
+        if (originNode.length > 255) throw new IllegalArgumentException("Node id longer than 255 bytes");
+        byte[] out = new byte[2 + originNode.length + MESSAGE_ID_BYTES + payload.length];
+        out[0] = MARKER;
+        out[1] = (byte) originNode.length;
+        System.arraycopy(originNode, 0, out, 2, originNode.length);
+        int pos = 2 + originNode.length;
+        for (int shift = 56; shift >= 0; shift -= 8) out[pos++] = (byte) (messageId >>> shift);
+        System.arraycopy(payload, 0, out, pos, payload.length);
+        return out;
+    }
+
+    /** @return where the payload starts in {@code body}, or 0 if {@code body} is not an envelope */
+    static int payloadOffset(byte[] body) {
+        if (body.length < 2 || body[0] != MARKER) return 0;
+        int offset = 2 + (body[1] & 0xFF) + MESSAGE_ID_BYTES;
+        return offset <= body.length ? offset : 0;
+    }
+
+    /** Whether the envelope {@code body} was published by {@code node}. */
+    static boolean isFrom(byte[] body, byte[] node) {
+        int length = body[1] & 0xFF;
+        return length == node.length && Arrays.equals(body, 2, 2 + length, node, 0, length);
+    }
+
+    static long messageId(byte[] body) {
+        int pos = 2 + (body[1] & 0xFF);
+        long id = 0;
+        for (int i = 0; i < MESSAGE_ID_BYTES; i++) id = (id << 8) | (body[pos + i] & 0xFF);
+        return id;
+    }
+}
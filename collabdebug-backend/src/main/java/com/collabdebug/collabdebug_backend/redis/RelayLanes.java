@@ -0,0 +1,125 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs incoming Redis messages on N single-threaded lanes, picked by hashing the session id.
+ * Messages of one session are handled in arrival order on one lane, while different sessions are
+ * relayed in parallel.
+ * <p>
+ * The listener container delivers messages on its subscription thread (RedisConfig), and
+ * {@link #listener} hands them to the lane of the channel's key: everything after the first
+ * {@code ':'}, i.e. the session id on session channels and the node id on the inbox. Each lane has
+ * a bounded queue; when it stays full for {@code offer-timeout-ms} the message is dropped and
+ * counted as {@code redis.relay.rejected}. Queue depths are exposed as {@code redis.relay.lane-depth}
+ * (total) and {@code redis.relay.lane-depth.max} (deepest lane).
+ */
+@Component
+public class RelayLanes {
+
+    private final CollabMetrics metrics;
+    private final ThreadPoolExecutor[] lanes;
+    private final long offerTimeoutMs;
+
+    @Autowired
+    public RelayLanes(CollabMetrics metrics,
+                      @Value("${collab.redis.relay.lanes:0}") int laneCount,
+                      @Value("${collab.redis.relay.lane-capacity:10000}") int laneCapacity,
+                      @Value("${collab.redis.relay.offer-timeout-ms:1000}") long offerTimeoutMs) {
+        this.metrics = metrics;
+        this.offerTimeoutMs = offerTimeoutMs;
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ThreadPoolExecutor[count];
+        for (int i = 0; i < count; i++) {
+            String name = "redis-relay-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, laneCapacity)), r -> {
+                        Thread t = new Thread(r, name);
+                        t.setDaemon(true);
+                        return t;
+                    }, this::waitForRoom);
+        }
+        metrics.gauge("redis.relay.lanes", () -> lanes.length);
+        metrics.gauge("redis.relay.lane-depth", this::totalDepth);
+        metrics.gauge("redis.relay.lane-depth.max", this::maxDepth);
+        System.out.println("[RelayLanes] ✅ Relaying Redis messages on " + count + " lanes");
+    }
+
+    /** Wraps {@code delegate} so each message runs on the lane of its channel's key. */
+    public MessageListener listener(MessageListener delegate) {
+        return (message, pattern) -> {
+            byte[] channel = message.getChannel();
+            execute(laneOf(channel), () -> delegate.onMessage(message, pattern));
+        };
+    }
+
+    /** Runs {@code task} on the lane of {@code sessionId}, after the session's earlier messages. */
+    public void execute(String sessionId, Runnable task) {
+        execute(laneOf(sessionId.getBytes(StandardCharsets.UTF_8), 0), task);
+    }
+
+    private void execute(int lane, Runnable task) {
+        try {
+            lanes[lane].execute(task);
+        } catch (RejectedExecutionException e) {
+            metrics.increment("redis.relay.rejected");
+            System.err.println("[RelayLanes] ❌ Relay lane " + lane + " full, message dropped");
+        }
+    }
+
+    int laneOf(byte[] channel) {
+        int keyStart = 0;
+        for (int i = 0; i < channel.length; i++) {
+            if (channel[i] == ':') {
+                keyStart = i + 1;
+                break;
+            }
+        }
+        return laneOf(channel, keyStart);
+    }
+
+    private int laneOf(byte[] bytes, int from) {
+        int hash = 0;
+        for (int i = from; i < bytes.length; i++) hash = 31 * hash + bytes[i];
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    // Called on the subscription thread when a lane is full: hold back the next message for a bit
+    private void waitForRoom(Runnable task, ThreadPoolExecutor lane) {
+        if (lane.isShutdown()) throw new RejectedExecutionException("Relay lanes shut down");
+        try {
+            if (lane.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new RejectedExecutionException("Relay lane full");
+    }
+
+    private int totalDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) depth += lane.getQueue().size();
+        return depth;
+    }
+
+    private int maxDepth() {
+        int depth = 0;
+        for (ThreadPoolExecutor lane : lanes) depth = Math.max(depth, lane.getQueue().size());
+        return depth;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) lane.shutdown();
+    }
+}
@@ -0,0 +1,144 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decides which session channels this node receives, and registers {@link RedisRelayDispatcher}
+ * for them.
+ * <p>
+ * With {@code collab.redis.subscriptions=interest} (default) a node subscribes to a session's
+ * channels when its first local connection joins and unsubscribes when the last one is gone
+ * (SessionService's local connection bookkeeping), so relay traffic scales with the node's own
+ * sessions instead of the whole cluster's. Subscription changes run on one background thread and
+ * re-check the current state, so a quick join/leave sequence always ends in the right state.
+ * Messages published while a subscription is being set up are not replayed; clients that miss an
+ * edit catch up through version sync.
+ * <p>
+ * {@code global} keeps one pattern subscription per channel type for all sessions. In CRDT mode
+ * session-updates stay global either way, since every node merges every session's replica ops.
+ * With the stream transport, edits come from the edit stream and are filtered the same way.
+ * <p>
+ * Either way messages are handed to the dispatcher through {@link RelayLanes}, in order per session.
+ * Not used with {@code collab.transport=loopback}, where nothing arrives from other nodes. With the
+ * STOMP broker relay ({@code collab.stomp.broker=relay}) the broker carries session events between
+ * nodes, so only CRDT replica ops are received here.
+ */
+@Component
+@ConditionalOnProperty(name = "collab.transport", havingValue = "redis", matchIfMissing = true)
+public class SessionSubscriptions {
+
+    private final RedisMessageListenerContainer container;
+    private final RedisRelayDispatcher dispatcher;
+    private final RelayLanes lanes;
+    private final MessageListener relay;
+    private final SessionService sessionService;
+    private final CollabMetrics metrics;
+    private final boolean interestBased;
+    private final boolean globalEdits;
+    private final boolean streamEdits;
+    private final ExecutorService subscriber;
+
+    // Sessions whose channels this node is currently subscribed to
+    private final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public SessionSubscriptions(RedisMessageListenerContainer container, RedisRelayDispatcher dispatcher,
+                                RelayLanes lanes, SessionService sessionService, EditStreamTransport editStream, CollabMetrics metrics,
+                                @Value("${collab.redis.subscriptions:interest}") String mode,
+                                @Value("${collab.document.mode:ot}") String documentMode,
+                                @Value("${collab.stomp.broker:simple}") String broker) {
+        this.container = container;
+        this.dispatcher = dispatcher;
+        this.lanes = lanes;
+        this.relay = lanes.listener(dispatcher);
+        this.sessionService = sessionService;
+        this.metrics = metrics;
+        boolean brokerRelay = "relay".equalsIgnoreCase(broker);
+        this.interestBased = !brokerRelay && !"global".equalsIgnoreCase(mode);
+        this.globalEdits = "crdt".equalsIgnoreCase(documentMode) || (!brokerRelay && !interestBased);
+        this.streamEdits = editStream.isEnabled();
+        this.subscriber = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "redis-subscriber");
+            t.setDaemon(true);
+            return t;
+        });
+
+        List<Topic> patterns = new ArrayList<>();
+        for (String prefix : dispatcher.channelPrefixes()) {
+            boolean edits = prefix.equals(RedisRelayDispatcher.EDITS_CHANNEL_PREFIX);
+            if (edits ? !streamEdits && globalEdits : !brokerRelay && !interestBased) {
+                patterns.add(new PatternTopic(prefix + "*"));
+            }
+        }
+        if (!patterns.isEmpty()) container.addMessageListener(relay, patterns);
+        editStream.start(this::relayStreamEdits);
+
+        metrics.gauge("redis.subscribed-sessions", subscribed::size);
+        if (interestBased) sessionService.setOnLocalInterestChanged(this::interestChanged);
+        System.out.println("[SessionSubscriptions] ✅ Session channels: " + (brokerRelay ? "via STOMP broker relay" : interestBased ? "per session with local connections" : "global")
+                + (patterns.isEmpty() ? "" : ", patterns " + patterns));
+    }
+
+    private void interestChanged(String sessionId) {
+        subscriber.execute(() -> reconcile(sessionId));
+    }
+
+    /** Brings the subscription of {@code sessionId} in line with its current local connections. */
+    void reconcile(String sessionId) {
+        boolean wanted = sessionService.hasLocalConnections(sessionId);
+        try {
+            if (wanted && !subscribed.contains(sessionId)) {
+                container.addMessageListener(relay, topics(sessionId));
+                subscribed.add(sessionId);
+                System.out.println("[SessionSubscriptions] ✅ Subscribed to session " + sessionId);
+            } else if (!wanted && subscribed.contains(sessionId)) {
+                container.removeMessageListener(relay, topics(sessionId));
+                subscribed.remove(sessionId);
+                System.out.println("[SessionSubscriptions] Unsubscribed from session " + sessionId);
+            }
+        } catch (Exception e) {
+            System.err.println("[SessionSubscriptions] ❌ Failed to update subscription for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    private List<Topic> topics(String sessionId) {
+        List<Topic> topics = new ArrayList<>();
+        for (String prefix : dispatcher.channelPrefixes()) {
+            boolean edits = prefix.equals(RedisRelayDispatcher.EDITS_CHANNEL_PREFIX);
+            if (edits && (streamEdits || globalEdits)) continue;
+            topics.add(new ChannelTopic(prefix + sessionId));
+        }
+        return topics;
+    }
+
+    private void relayStreamEdits(String sessionId, byte[] body) {
+        if (!globalEdits && !subscribed.contains(sessionId)) {
+            metrics.increment("redis.relay.skipped-no-interest");
+            return;
+        }
+        lanes.execute(sessionId, () -> dispatcher.relayEdits(sessionId, body));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriber.shutdownNow();
+    }
+}
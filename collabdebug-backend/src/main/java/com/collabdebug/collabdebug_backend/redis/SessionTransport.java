@@ -0,0 +1,29 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * How {@link RedisPublisher} reaches other backend nodes, selected by {@code collab.transport}:
+ * {@link RedisSessionTransport} ({@code redis}, default) for clusters, or
+ * {@link LoopbackSessionTransport} ({@code loopback}) for a single node, where every subscriber is
+ * in this JVM and RedisPublisher's local delivery is all there is to do.
+ * <p>
+ * Callers have already delivered session events to this node's STOMP subscribers; the transport
+ * only carries them to the other nodes. Futures complete once the message is handed off.
+ */
+public interface SessionTransport {
+
+    /** Sends a session event (chat, terminal, presence, meta, end) on {@code channel}. */
+    CompletableFuture<Void> publish(String channel, Object payload);
+
+    /** Sends an edit or edit batch of {@code sessionId} to the other nodes. */
+    CompletableFuture<Void> publishEdits(String sessionId, Object payload);
+
+    /** Sends a chat message and appends it to the session's chat history. */
+    CompletableFuture<Void> publishChat(ChatMessage chat);
+
+    /** Point-to-point message to one node's inbox (forwarded requests and their replies). */
+    CompletableFuture<Void> sendToNode(String nodeId, Object message);
+}
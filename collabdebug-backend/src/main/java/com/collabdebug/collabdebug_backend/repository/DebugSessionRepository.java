@@ -1,6 +1,11 @@
 package com.collabdebug.collabdebug_backend.repository;
 import com.collabdebug.collabdebug_backend.model.DebugSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
 import java.util.List;
 import java.util.UUID;
 
@@ -8,4 +13,10 @@ public interface DebugSessionRepository extends JpaRepository<DebugSession, UUID
 
     // Find all active sessions to list them on the main page
     List<DebugSession> findAllByIsActiveTrueOrderByCreatedAtDesc();
-}
\ No newline at end of file
+
+    // Single UPDATE of the code column, without loading the entity (used by write-behind flushes)
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update DebugSession s set s.latestCode = :code where s.id = :id")
+    int updateLatestCode(@Param("id") UUID id, @Param("code") String code);
+}
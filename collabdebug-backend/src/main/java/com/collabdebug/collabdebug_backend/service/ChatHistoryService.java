@@ -0,0 +1,30 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.ChatHistoryPage;
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Capped chat history per session, selected by {@code collab.transport} like the session transport:
+ * {@link RedisChatHistoryService} ({@code redis}, default) shares it between the nodes,
+ * {@link InMemoryChatHistoryService} ({@code loopback}) keeps it in this JVM.
+ * <p>
+ * Only the last {@code collab.chat.history.max-messages} messages are kept. Message n (0-based) of a
+ * session keeps sequence number n after older ones are trimmed away, which gives readers a stable
+ * cursor. When a session ends its history is dropped after {@code ttl-after-end-seconds}.
+ */
+public interface ChatHistoryService {
+
+    /** Appends a chat message to its session's history; messages are stored in call order. */
+    CompletableFuture<Void> append(ChatMessage chat);
+
+    /**
+     * Up to {@code limit} messages older than sequence number {@code before} (null: the most
+     * recent ones), oldest first.
+     */
+    ChatHistoryPage page(String sessionId, Long before, int limit);
+
+    /** Lets the history of an ended session expire after {@code ttl-after-end}. */
+    void expire(String sessionId);
+}
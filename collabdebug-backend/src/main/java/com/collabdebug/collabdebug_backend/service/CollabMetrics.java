@@ -0,0 +1,70 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process counters, timers and gauges for the realtime pipeline, served by
+ * {@code GET /api/metrics}. Recording is lock-free and cheap enough for per-message hot paths.
+ */
+@Component
+public class CollabMetrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    private static final class Timer {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, n -> new LongAdder()).add(delta);
+    }
+
+    public long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public void recordNanos(String name, long nanos) {
+        Timer timer = timers.computeIfAbsent(name, n -> new Timer());
+        timer.count.increment();
+        timer.totalNanos.add(nanos);
+        timer.maxNanos.accumulate(nanos);
+    }
+
+    /** Registers a value sampled whenever metrics are read (queue depths, pool sizes, ...). */
+    public void gauge(String name, Supplier<? extends Number> value) {
+        gauges.put(name, value);
+    }
+
+    /** Current values, sorted by name; timers are reported as count / mean / max in microseconds. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new TreeMap<>();
+        counters.forEach((name, counter) -> out.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> out.put(name, gauge.get()));
+        timers.forEach((name, timer) -> {
+            long count = timer.count.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", count);
+            stats.put("meanMicros", count == 0 ? 0 : timer.totalNanos.sum() / count / 1000);
+            stats.put("maxMicros", timer.maxNanos.get() / 1000);
+            out.put(name, stats);
+        });
+        return out;
+    }
+}
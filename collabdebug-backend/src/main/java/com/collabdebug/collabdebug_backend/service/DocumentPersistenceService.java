@@ -0,0 +1,120 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.document.Document;
+import com.collabdebug.collabdebug_backend.repository.DebugSessionRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind persistence for session documents.
+ * <p>
+ * Edits only mark a session dirty with a snapshot of its document; the latest snapshot is written
+ * to {@code debug_session.latest_code} with a single UPDATE every flush interval, or as soon as a
+ * session has accumulated {@code flush-version-threshold} unsaved versions. Intermediate versions
+ * are coalesced, so DB write volume no longer depends on typing speed.
+ */
+@Service
+public class DocumentPersistenceService {
+
+    private final DebugSessionRepository sessionRepository;
+    private final long versionThreshold;
+    private final ScheduledExecutorService flusher;
+
+    // sessionId -> newest unsaved snapshot
+    private final Map<String, PendingWrite> dirty = new ConcurrentHashMap<>();
+    // sessionId -> last version written to the DB
+    private final Map<String, Long> persistedVersion = new ConcurrentHashMap<>();
+    // Sessions with a threshold flush already queued on the flusher thread
+    private final Set<String> flushQueued = ConcurrentHashMap.newKeySet();
+    // Serializes DB writes so an older snapshot can never overwrite a newer one
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private record PendingWrite(Document snapshot, long version) {
+    }
+
+    public DocumentPersistenceService(DebugSessionRepository sessionRepository,
+                                      @Value("${collab.persistence.flush-interval-ms:2000}") long flushIntervalMs,
+                                      @Value("${collab.persistence.flush-version-threshold:200}") long versionThreshold) {
+        this.sessionRepository = sessionRepository;
+        this.versionThreshold = versionThreshold;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "document-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Records that {@code sessionId} has a new version waiting to be persisted. Cheap enough to
+     * call on every edit: it stores the snapshot and returns without touching the DB.
+     */
+    public void markDirty(String sessionId, Document snapshot, long version) {
+        dirty.merge(sessionId, new PendingWrite(snapshot, version),
+                (old, latest) -> latest.version >= old.version ? latest : old);
+
+        long persisted = persistedVersion.getOrDefault(sessionId, 0L);
+        if (version - persisted >= versionThreshold && flushQueued.add(sessionId)) {
+            flusher.execute(() -> {
+                flushQueued.remove(sessionId);
+                flush(sessionId);
+            });
+        }
+    }
+
+    /** Synchronously persists the pending snapshot for {@code sessionId}, if any. */
+    public void flush(String sessionId) {
+        PendingWrite pending = dirty.remove(sessionId);
+        if (pending == null) return;
+
+        writeLock.lock();
+        try {
+            long persisted = persistedVersion.getOrDefault(sessionId, 0L);
+            if (pending.version <= persisted) return;
+            try {
+                sessionRepository.updateLatestCode(UUID.fromString(sessionId), pending.snapshot.getText());
+                persistedVersion.put(sessionId, pending.version);
+            } catch (Exception e) {
+                System.err.println("[DocumentPersistenceService] ❌ Failed to persist session " + sessionId + ": " + e.getMessage());
+                // Keep the snapshot so the next flush retries, unless a newer one arrived meanwhile
+                dirty.merge(sessionId, pending, (newer, failed) -> newer.version >= failed.version ? newer : failed);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void flushAll() {
+        for (String sessionId : dirty.keySet()) {
+            flush(sessionId);
+        }
+    }
+
+    /** Flushes and drops the bookkeeping for a session that is over. */
+    public void close(String sessionId) {
+        flush(sessionId);
+        persistedVersion.remove(sessionId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("[DocumentPersistenceService] Flushing " + dirty.size() + " dirty session(s) on shutdown");
+        flushAll();
+    }
+}
@@ -0,0 +1,210 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.document.TextOperation;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fans applied edits out to WebSocket clients and other nodes in per-session micro-batches.
+ * <p>
+ * The first edit of a burst opens a batching window ({@code collab.edits.batch-window-ms}); every
+ * edit applied in that window joins the batch, which is then sent as one {@link EditBatch} frame to
+ * {@code /topic/session/{id}/edits} and one Redis publish. A batch that reaches
+ * {@code collab.edits.batch-max-ops} is sent right away. In the client frame, consecutive edits by
+ * the same user that touch each other (typing, backspacing) are composed into a single op; edits by
+ * different users stay separate so every client can still skip its own.
+ * <p>
+ * A window of 0 disables batching: each edit is sent immediately, still inside the caller's lock.
+ */
+@Service
+public class EditBroadcaster {
+
+    private final SimpMessagingTemplate msgTemplate;
+    private final RedisPublisher redisPublisher;
+    private final long windowMs;
+    private final int maxOps;
+    private final ScheduledExecutorService timer;
+
+    // sessionId -> edits waiting for the current window to close; dropped once sent and idle
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private static final class Batch {
+        final ReentrantLock lock = new ReentrantLock();
+        final List<Pending> edits = new ArrayList<>();
+        boolean scheduled;
+        boolean dropped;
+    }
+
+    private record Pending(EditMessage edit, boolean replicate) {
+    }
+
+    @Autowired
+    public EditBroadcaster(SimpMessagingTemplate msgTemplate, RedisPublisher redisPublisher,
+                           @Value("${collab.edits.batch-window-ms:10}") long windowMs,
+                           @Value("${collab.edits.batch-max-ops:64}") int maxOps) {
+        this.msgTemplate = msgTemplate;
+        this.redisPublisher = redisPublisher;
+        this.windowMs = windowMs;
+        this.maxOps = Math.max(1, maxOps);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "edit-batcher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues an applied edit for broadcast. Callers hold the session's edit lock, so edits are
+     * queued in version order.
+     *
+     * @param replicate whether the edit is also published to Redis for the other nodes (false for
+     *                  edits that arrived from Redis in the first place)
+     */
+    public void enqueue(EditMessage edit, boolean replicate) {
+        String sid = edit.sessionId;
+        while (true) {
+            Batch batch = batches.computeIfAbsent(sid, k -> new Batch());
+            batch.lock.lock();
+            try {
+                if (batch.dropped) continue; // emptied and removed meanwhile: start a new one
+                batch.edits.add(new Pending(edit, replicate));
+                if (windowMs <= 0 || batch.edits.size() >= maxOps) {
+                    send(sid, batch);
+                    dropIfIdle(sid, batch);
+                } else if (!batch.scheduled) {
+                    batch.scheduled = true;
+                    timer.schedule(() -> flush(sid), windowMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            } finally {
+                batch.lock.unlock();
+            }
+        }
+    }
+
+    /** Sends whatever is queued for {@code sessionId} now. */
+    public void flush(String sessionId) {
+        Batch batch = batches.get(sessionId);
+        if (batch == null) return;
+        batch.lock.lock();
+        try {
+            batch.scheduled = false;
+            send(sessionId, batch);
+            dropIfIdle(sessionId, batch);
+        } finally {
+            batch.lock.unlock();
+        }
+    }
+
+    /** Sends the pending edits of a session that is over; its batch is dropped with them. */
+    public void close(String sessionId) {
+        flush(sessionId);
+    }
+
+    /** Number of sessions with a batch entry (edits queued or a window open). */
+    int batchedSessions() {
+        return batches.size();
+    }
+
+    // Under the batch's lock: a batch with nothing queued and no window open is removed, so
+    // sessions that went quiet do not keep an entry
+    private void dropIfIdle(String sid, Batch batch) {
+        if (batch.edits.isEmpty() && !batch.scheduled) {
+            batch.dropped = true;
+            batches.remove(sid, batch);
+        }
+    }
+
+    // Runs under the batch's lock, so batches of one session never overtake each other
+    private void send(String sid, Batch batch) {
+        if (batch.edits.isEmpty()) return;
+        List<EditMessage> replicated = new ArrayList<>();
+        List<EditMessage> local = new ArrayList<>();
+        for (Pending p : batch.edits) {
+            if (p.replicate) replicated.add(p.edit);
+            appendForClients(local, p.edit);
+        }
+        batch.edits.clear();
+
+        try {
+            msgTemplate.convertAndSend("/topic/session/" + sid + "/edits", toBatch(sid, local));
+        } catch (Exception e) {
+            System.err.println("[EditBroadcaster] ❌ Failed to broadcast " + local.size() + " edit(s) for session " + sid + ": " + e.getMessage());
+        }
+        if (!replicated.isEmpty()) {
+            try {
+                redisPublisher.publishEdits(toBatch(sid, replicated));
+            } catch (Exception e) {
+                System.err.println("[EditBroadcaster] ❌ Failed to publish " + replicated.size() + " edit(s) for session " + sid + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds the client view of {@code edit} (no replica data) to {@code frame}, composing it into the
+     * previous entry when both come from the same user and their ranges touch.
+     */
+    private static void appendForClients(List<EditMessage> frame, EditMessage edit) {
+        if (!frame.isEmpty()) {
+            EditMessage last = frame.get(frame.size() - 1);
+            if (Objects.equals(last.userId, edit.userId) && last.serverVersion == edit.baseVersion
+                    && last.op != null && edit.op != null) {
+                try {
+                    TextOperation composed = TextOperation.fromEdit(last.op).composeWith(TextOperation.fromEdit(edit.op));
+                    if (composed != null) {
+                        last.op = composed.toEditOperation();
+                        last.serverVersion = edit.serverVersion;
+                        last.timestamp = edit.timestamp;
+                        return;
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Not a ranged op; send it as is
+                }
+            }
+        }
+        EditMessage copy = new EditMessage();
+        copy.type = "edit";
+        copy.sessionId = edit.sessionId;
+        copy.userId = edit.userId;
+        copy.clientVersion = edit.clientVersion;
+        copy.timestamp = edit.timestamp;
+        copy.op = edit.op;
+        copy.baseVersion = edit.baseVersion;
+        copy.serverVersion = edit.serverVersion;
+        frame.add(copy);
+    }
+
+    private static EditBatch toBatch(String sid, List<EditMessage> edits) {
+        EditBatch batch = new EditBatch();
+        batch.type = "edit-batch";
+        batch.sessionId = sid;
+        batch.edits = edits;
+        batch.serverVersion = edits.get(edits.size() - 1).serverVersion;
+        batch.timestamp = System.currentTimeMillis();
+        return batch;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        for (String sid : batches.keySet()) {
+            flush(sid);
+        }
+    }
+}
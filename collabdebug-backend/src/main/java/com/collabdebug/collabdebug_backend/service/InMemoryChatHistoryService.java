@@ -0,0 +1,119 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.ChatHistoryPage;
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Chat history kept in this JVM ({@code collab.transport=loopback}): a single node has no one to
+ * share it with, so loopback mode runs without Redis. Same capping, sequence numbers and paging as
+ * {@link RedisChatHistoryService}; histories of ended sessions are dropped lazily once their
+ * {@code ttl-after-end} has passed.
+ */
+@Service
+@ConditionalOnProperty(name = "collab.transport", havingValue = "loopback")
+public class InMemoryChatHistoryService implements ChatHistoryService {
+
+    private static final class History {
+        final ReentrantLock lock = new ReentrantLock();
+        final ArrayDeque<ChatMessage> messages = new ArrayDeque<>();
+        long seq;            // messages ever appended
+        long expiresAt = -1; // -1: session still running
+    }
+
+    private final Map<String, History> histories = new ConcurrentHashMap<>();
+    private final int maxMessages;
+    private final long ttlAfterEndMs;
+    private final int maxPageSize;
+    private final LongSupplier clock;
+
+    @Autowired
+    public InMemoryChatHistoryService(@Value("${collab.chat.history.max-messages:500}") int maxMessages,
+                                      @Value("${collab.chat.history.ttl-after-end-seconds:86400}") long ttlAfterEndSeconds,
+                                      @Value("${collab.chat.history.max-page-size:200}") int maxPageSize) {
+        this(maxMessages, ttlAfterEndSeconds, maxPageSize, System::currentTimeMillis);
+    }
+
+    InMemoryChatHistoryService(int maxMessages, long ttlAfterEndSeconds, int maxPageSize, LongSupplier clock) {
+        this.maxMessages = Math.max(1, maxMessages);
+        this.ttlAfterEndMs = ttlAfterEndSeconds * 1000;
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.clock = clock;
+    }
+
+    @Override
+    public CompletableFuture<Void> append(ChatMessage chat) {
+        sweep();
+        History history = histories.computeIfAbsent(chat.sessionId, id -> new History());
+        history.lock.lock();
+        try {
+            history.seq++;
+            history.messages.addLast(chat);
+            if (history.messages.size() > maxMessages) history.messages.removeFirst();
+        } finally {
+            history.lock.unlock();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public ChatHistoryPage page(String sessionId, Long before, int limit) {
+        sweep();
+        int size = Math.min(Math.max(1, limit), maxPageSize);
+        ChatHistoryPage page = new ChatHistoryPage();
+        page.messages = new ArrayList<>();
+        History history = histories.get(sessionId);
+        if (history == null) {
+            page.firstSeq = 0;
+            return page;
+        }
+        history.lock.lock();
+        try {
+            long seq = history.seq;
+            long oldest = seq - history.messages.size();
+            long end = before == null || before > seq ? seq : Math.max(0, before);
+            long first = Math.max(oldest, end - size);
+            page.firstSeq = first;
+            if (end > first) {
+                Iterator<ChatMessage> it = history.messages.iterator();
+                for (long s = oldest; s < end; s++) {
+                    ChatMessage chat = it.next();
+                    if (s >= first) page.messages.add(chat);
+                }
+            }
+            page.nextBefore = first > oldest ? first : null;
+        } finally {
+            history.lock.unlock();
+        }
+        return page;
+    }
+
+    @Override
+    public void expire(String sessionId) {
+        History history = histories.get(sessionId);
+        if (history == null) return;
+        history.lock.lock();
+        try {
+            history.expiresAt = clock.getAsLong() + ttlAfterEndMs;
+        } finally {
+            history.lock.unlock();
+        }
+    }
+
+    private void sweep() {
+        long now = clock.getAsLong();
+        histories.values().removeIf(h -> h.expiresAt >= 0 && h.expiresAt <= now);
+    }
+}
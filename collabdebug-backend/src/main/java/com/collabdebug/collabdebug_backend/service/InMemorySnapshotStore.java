@@ -0,0 +1,66 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.SessionSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Snapshots kept in this JVM ({@code collab.transport=loopback}). They do not survive a restart, but
+ * still let a session that was evicted from memory come back without replaying from version 0.
+ * Expired snapshots are dropped lazily on the next write.
+ */
+@Service
+@ConditionalOnProperty(name = "collab.transport", havingValue = "loopback")
+public class InMemorySnapshotStore implements SnapshotStore {
+
+    private record Entry(SessionSnapshot snapshot, long expiresAt) {}
+
+    private final Map<String, Entry> snapshots = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private final LongSupplier clock;
+
+    @Autowired
+    public InMemorySnapshotStore(@Value("${collab.snapshot.ttl-seconds:86400}") long ttlSeconds) {
+        this(ttlSeconds, System::currentTimeMillis);
+    }
+
+    InMemorySnapshotStore(long ttlSeconds, LongSupplier clock) {
+        this.ttlMs = ttlSeconds * 1000;
+        this.clock = clock;
+    }
+
+    @Override
+    public SessionSnapshot get(String sessionId) {
+        Entry entry = snapshots.get(sessionId);
+        return entry != null && entry.expiresAt() > clock.getAsLong() ? entry.snapshot() : null;
+    }
+
+    @Override
+    public void put(String sessionId, SessionSnapshot snapshot) {
+        sweep();
+        snapshots.put(sessionId, new Entry(snapshot, clock.getAsLong() + ttlMs));
+    }
+
+    @Override
+    public SessionSnapshot putIfAbsent(String sessionId, SessionSnapshot snapshot) {
+        sweep();
+        Entry entry = snapshots.putIfAbsent(sessionId, new Entry(snapshot, clock.getAsLong() + ttlMs));
+        return entry != null ? entry.snapshot() : null;
+    }
+
+    @Override
+    public void delete(String sessionId) {
+        snapshots.remove(sessionId);
+    }
+
+    private void sweep() {
+        long now = clock.getAsLong();
+        snapshots.values().removeIf(e -> e.expiresAt() <= now);
+    }
+}
@@ -0,0 +1,154 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.ChatHistoryPage;
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chat history in Redis ({@code collab.transport=redis}), shared by all nodes.
+ * <p>
+ * Messages are appended to {@code session-chat-history:{id}} and the list is trimmed to the last
+ * {@code max-messages} in the same script, so a long-lived session keeps a fixed amount of history.
+ * {@code session-chat-seq:{id}} counts every message ever appended and provides the sequence
+ * numbers. Pages are read with one LRANGE window. When a session ends both keys expire after
+ * {@code ttl-after-end}.
+ * <p>
+ * Both scripts run through {@link RedisTemplate#execute} (EVALSHA, falling back to EVAL once after a
+ * Redis restart), so the script text is not resent with every message. Appends are written in
+ * order by one background thread, off the publishing thread.
+ */
+@Service
+@ConditionalOnProperty(name = "collab.transport", havingValue = "redis", matchIfMissing = true)
+public class RedisChatHistoryService implements ChatHistoryService {
+
+    static final String LIST_PREFIX = "session-chat-history:";
+    static final String SEQ_PREFIX = "session-chat-seq:";
+
+    // KEYS: list, seq; ARGV: message, max messages
+    static final RedisScript<Long> APPEND = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[2])
+            redis.call('RPUSH', KEYS[1], ARGV[1])
+            redis.call('LTRIM', KEYS[1], -tonumber(ARGV[2]), -1)
+            return 1
+            """, Long.class);
+
+    // KEYS: list, seq; ARGV: before (exclusive, -1 = latest), limit. Returns {first seq, oldest seq, messages}
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> PAGE = new DefaultRedisScript<>("""
+            local len = redis.call('LLEN', KEYS[1])
+            local seq = tonumber(redis.call('GET', KEYS[2]) or '0')
+            if seq < len then seq = len end
+            local oldest = seq - len
+            local before = tonumber(ARGV[1])
+            if before < 0 or before > seq then before = seq end
+            local first = math.max(oldest, before - tonumber(ARGV[2]))
+            if before <= first then return {first, oldest, {}} end
+            return {first, oldest, redis.call('LRANGE', KEYS[1], first - oldest, before - 1 - oldest)}
+            """, List.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final int maxMessages;
+    private final Duration ttlAfterEnd;
+    private final int maxPageSize;
+    private final ExecutorService writer;
+
+    @Autowired
+    public RedisChatHistoryService(RedisTemplate<String, Object> redisTemplate,
+                                   @Value("${collab.chat.history.max-messages:500}") int maxMessages,
+                                   @Value("${collab.chat.history.ttl-after-end-seconds:86400}") long ttlAfterEndSeconds,
+                                   @Value("${collab.chat.history.max-page-size:200}") int maxPageSize) {
+        this.redisTemplate = redisTemplate;
+        this.maxMessages = Math.max(1, maxMessages);
+        this.ttlAfterEnd = Duration.ofSeconds(ttlAfterEndSeconds);
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "chat-history-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> append(ChatMessage chat) {
+        return append(chat.sessionId, serializer().serialize(chat));
+    }
+
+    /** Appends a message already serialized with the template's value serializer (RedisSessionTransport publishes the same bytes). */
+    public CompletableFuture<Void> append(String sessionId, byte[] message) {
+        return CompletableFuture.runAsync(() -> redisTemplate.execute(APPEND, RedisSerializer.byteArray(), raw(),
+                List.of(LIST_PREFIX + sessionId, SEQ_PREFIX + sessionId), message, bytes(maxMessages)), writer);
+    }
+
+    @Override
+    public ChatHistoryPage page(String sessionId, Long before, int limit) {
+        int size = Math.min(Math.max(1, limit), maxPageSize);
+        List<?> reply = redisTemplate.execute(PAGE, RedisSerializer.byteArray(), raw(),
+                List.of(LIST_PREFIX + sessionId, SEQ_PREFIX + sessionId),
+                bytes(before == null ? -1 : Math.max(0, before)), bytes(size));
+
+        ChatHistoryPage page = new ChatHistoryPage();
+        page.messages = new ArrayList<>();
+        if (reply == null) return page;
+        page.firstSeq = ((Number) reply.get(0)).longValue();
+        long oldest = ((Number) reply.get(1)).longValue();
+        for (Object raw : (List<?>) reply.get(2)) {
+            Object message = serializer().deserialize((byte[]) raw);
+            if (message instanceof ChatMessage chat) page.messages.add(chat);
+        }
+        page.nextBefore = page.firstSeq > oldest ? page.firstSeq : null;
+        return page;
+    }
+
+    @Override
+    public void expire(String sessionId) {
+        try {
+            redisTemplate.expire(LIST_PREFIX + sessionId, ttlAfterEnd);
+            redisTemplate.expire(SEQ_PREFIX + sessionId, ttlAfterEnd);
+        } catch (Exception e) {
+            System.err.println("[RedisChatHistoryService] ❌ Failed to set chat history TTL for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    // Script arguments and replies are raw bytes (serialized messages, decimal numbers); integers stay numbers
+    @SuppressWarnings("unchecked")
+    private static <T> RedisSerializer<T> raw() {
+        return (RedisSerializer<T>) (RedisSerializer<?>) RedisSerializer.byteArray();
+    }
+
+    private static byte[] bytes(long number) {
+        return Long.toString(number).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisSerializer<Object> serializer() {
+        return (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+    }
+
+    /** Writes the appends still queued before the connection factory goes away. */
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.SessionSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Snapshots as one blob per session in {@code session-snapshot:{id}}. Every write sets the key's
+ * expiry, so snapshots of sessions that were abandoned without being ended do not stay in Redis forever.
+ */
+@Service
+@ConditionalOnProperty(name = "collab.transport", havingValue = "redis", matchIfMissing = true)
+public class RedisSnapshotStore implements SnapshotStore {
+
+    static final String KEY_PREFIX = "session-snapshot:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Duration ttl;
+
+    @Autowired
+    public RedisSnapshotStore(RedisTemplate<String, Object> redisTemplate,
+                              @Value("${collab.snapshot.ttl-seconds:86400}") long ttlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    @Override
+    public SessionSnapshot get(String sessionId) {
+        return redisTemplate.opsForValue().get(KEY_PREFIX + sessionId) instanceof SessionSnapshot snapshot ? snapshot : null;
+    }
+
+    @Override
+    public void put(String sessionId, SessionSnapshot snapshot) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + sessionId, snapshot, ttl);
+    }
+
+    @Override
+    public SessionSnapshot putIfAbsent(String sessionId, SessionSnapshot snapshot) {
+        if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + sessionId, snapshot, ttl))) return null;
+        // Another node stored its snapshot first
+        SessionSnapshot existing = get(sessionId);
+        return existing != null ? existing : snapshot;
+    }
+
+    @Override
+    public void delete(String sessionId) {
+        redisTemplate.delete(KEY_PREFIX + sessionId);
+    }
+}
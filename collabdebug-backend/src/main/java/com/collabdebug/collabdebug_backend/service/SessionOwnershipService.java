@@ -0,0 +1,231 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.redis.NodeIdentity;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Cluster-wide session ownership through Redis leases.
+ * <p>
+ * The first node that needs a session claims {@code session-owner:{id}} with {@code SET NX PX} and
+ * becomes its single sequencer; it renews the lease every third of {@code lease-ms} while it holds
+ * it. Other nodes look the owner up (cached for {@code owner-cache-ms}) and forward their clients'
+ * requests to it. When the owner dies its lease expires and the next node to touch the session
+ * takes over, warming up from the session's Redis snapshot.
+ * <p>
+ * Every claim increments {@code session-owner-epoch:{id}}: the epoch is the fencing token of that
+ * ownership term, and the new owner numbers its versions from it so they never collide with the
+ * previous owner's. The owner also tracks each lease's expiry locally (minus a tenth for clock
+ * drift) and stops acting as owner once it passes without a successful renewal, so a paused or
+ * partitioned node cannot keep sequencing next to its successor. If Redis cannot be reached the
+ * owner is unknown ({@link #ownerOf} returns null) and callers reject the request rather than
+ * serving it locally.
+ */
+@Service
+public class SessionOwnershipService {
+
+    static final String KEY_PREFIX = "session-owner:";
+    static final String EPOCH_PREFIX = "session-owner-epoch:";
+
+    // Takes the lease if it is free (or already ours) and starts a new term: returns its epoch, 0 if taken
+    private static final RedisScript<Long> CLAIM = new DefaultRedisScript<>(
+            "local owner = redis.call('get', KEYS[1]) "
+                    + "if owner and owner ~= ARGV[1] then return 0 end "
+                    + "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) "
+                    + "local epoch = redis.call('incr', KEYS[2]) "
+                    + "redis.call('pexpire', KEYS[2], ARGV[3]) "
+                    + "return epoch",
+            Long.class);
+    // Extend / delete the lease only while it is still ours
+    private static final RedisScript<Long> RENEW = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redis;
+    private final String nodeId;
+    private final boolean enabled;
+    private final long leaseMs;
+    private final long ownerCacheMs;
+    private final long epochTtlMs;
+    private final ScheduledExecutorService renewer;
+
+    // sessionId -> lease this node holds
+    private final Map<String, Lease> owned = new ConcurrentHashMap<>();
+    // sessionId -> owner seen recently, for sessions owned elsewhere
+    private final Map<String, KnownOwner> knownOwners = new ConcurrentHashMap<>();
+    private volatile ObjLongConsumer<String> onAcquired = (sessionId, epoch) -> { };
+    private volatile Consumer<String> onReleasing = sessionId -> { };
+
+    private record Lease(long epoch, long expiresAt) {
+    }
+
+    private record KnownOwner(String nodeId, long expiresAt) {
+    }
+
+    @Autowired
+    public SessionOwnershipService(StringRedisTemplate redis, NodeIdentity nodeIdentity,
+                                   // No leases on a single loopback node: it owns every session
+                                   @Value("#{'${collab.transport:redis}' != 'loopback' and ${collab.ownership.enabled:true}}") boolean enabled,
+                                   @Value("${collab.ownership.lease-ms:10000}") long leaseMs,
+                                   @Value("${collab.ownership.owner-cache-ms:1000}") long ownerCacheMs) {
+        this.redis = redis;
+        this.nodeId = nodeIdentity.getNodeId();
+        this.enabled = enabled;
+        this.leaseMs = leaseMs;
+        this.ownerCacheMs = ownerCacheMs;
+        // Epochs must outlive any client still holding versions of the previous term
+        this.epochTtlMs = Math.max(leaseMs, TimeUnit.DAYS.toMillis(7));
+        this.renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-lease-renewer");
+            t.setDaemon(true);
+            return t;
+        });
+        if (enabled) {
+            long period = Math.max(1, leaseMs / 3);
+            renewer.scheduleWithFixedDelay(this::renewAll, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Called with the session id and the new term's epoch whenever this node acquires a session's lease. */
+    public void setOnAcquired(ObjLongConsumer<String> onAcquired) {
+        this.onAcquired = onAcquired;
+    }
+
+    /** Called with the session id right before this node gives a lease up, while it still owns it. */
+    public void setOnReleasing(Consumer<String> onReleasing) {
+        this.onReleasing = onReleasing;
+    }
+
+    /**
+     * @return the node that owns {@code sessionId}, claiming the lease for this node if it is free
+     * (always this node when ownership is disabled), or null if the owner cannot be determined
+     */
+    public String ownerOf(String sessionId) {
+        if (!enabled) return nodeId;
+        long now = System.currentTimeMillis();
+        Lease lease = owned.get(sessionId);
+        if (lease != null) {
+            if (lease.expiresAt > now) return nodeId;
+            // No successful renewal for a whole lease: another node may have taken over by now
+            if (owned.remove(sessionId, lease)) {
+                System.out.println("[SessionOwnershipService] ⚠️ Lease for session " + sessionId + " expired without renewal");
+            }
+        }
+        KnownOwner known = knownOwners.get(sessionId);
+        if (known != null && known.expiresAt > now) return known.nodeId;
+
+        String key = KEY_PREFIX + sessionId;
+        try {
+            // Two attempts: the lease can expire between a failed claim and the GET
+            for (int attempt = 0; attempt < 2; attempt++) {
+                long claimedAt = System.currentTimeMillis();
+                Long epoch = redis.execute(CLAIM, List.of(key, EPOCH_PREFIX + sessionId),
+                        nodeId, String.valueOf(leaseMs), String.valueOf(epochTtlMs));
+                if (epoch != null && epoch > 0) {
+                    acquired(sessionId, epoch, claimedAt);
+                    return nodeId;
+                }
+                String current = redis.opsForValue().get(key);
+                if (current != null && !nodeId.equals(current)) {
+                    knownOwners.put(sessionId, new KnownOwner(current, now + ownerCacheMs));
+                    return current;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("[SessionOwnershipService] ❌ Lease lookup failed for session " + sessionId + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /** @return the epoch of the lease this node holds for {@code sessionId}, or 0 if it holds none */
+    public long epochOf(String sessionId) {
+        Lease lease = owned.get(sessionId);
+        return lease == null ? 0 : lease.epoch;
+    }
+
+    public boolean isLocal(String ownerNodeId) {
+        return nodeId.equals(ownerNodeId);
+    }
+
+    /** Gives up the lease of {@code sessionId} if this node holds it (e.g. the session ended). */
+    public void release(String sessionId) {
+        knownOwners.remove(sessionId);
+        if (!owned.containsKey(sessionId)) return;
+        try {
+            onReleasing.accept(sessionId);
+        } catch (Exception e) {
+            System.err.println("[SessionOwnershipService] ❌ Release hook failed for session " + sessionId + ": " + e.getMessage());
+        }
+        owned.remove(sessionId);
+        try {
+            redis.execute(RELEASE, List.of(KEY_PREFIX + sessionId), nodeId);
+        } catch (Exception e) {
+            System.err.println("[SessionOwnershipService] ❌ Failed to release lease for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Extends every lease this node holds; leases found taken over by another node are dropped. A
+     * lease whose renewal fails keeps its old local expiry, so it lapses unless a later renewal succeeds.
+     */
+    public void renewAll() {
+        for (Map.Entry<String, Lease> entry : owned.entrySet()) {
+            String sessionId = entry.getKey();
+            Lease lease = entry.getValue();
+            long renewedAt = System.currentTimeMillis();
+            try {
+                Long renewed = redis.execute(RENEW, List.of(KEY_PREFIX + sessionId), nodeId, String.valueOf(leaseMs));
+                if (renewed == null || renewed == 0) {
+                    owned.remove(sessionId, lease);
+                    System.out.println("[SessionOwnershipService] ⚠️ Lost lease for session " + sessionId);
+                } else {
+                    owned.replace(sessionId, lease, new Lease(lease.epoch, expiryFrom(renewedAt)));
+                }
+            } catch (Exception e) {
+                System.err.println("[SessionOwnershipService] ❌ Failed to renew lease for session " + sessionId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void acquired(String sessionId, long epoch, long claimedAt) {
+        knownOwners.remove(sessionId);
+        owned.put(sessionId, new Lease(epoch, expiryFrom(claimedAt)));
+        System.out.println("[SessionOwnershipService] ✅ Node " + nodeId + " now owns session " + sessionId + " (epoch " + epoch + ")");
+        onAcquired.accept(sessionId, epoch);
+    }
+
+    // Measured from before the Redis call, less a tenth for clock drift, so it never outlasts the Redis key
+    private long expiryFrom(long requestedAt) {
+        return requestedAt + leaseMs - leaseMs / 10;
+    }
+
+    /** Hands the leases over right away on a graceful shutdown instead of waiting for expiry. */
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+        for (String sessionId : owned.keySet()) {
+            release(sessionId);
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package com.collabdebug.collabdebug_backend.service;
 
+import com.collabdebug.collabdebug_backend.document.Document;
+import com.collabdebug.collabdebug_backend.document.OperationHistory;
+import com.collabdebug.collabdebug_backend.document.RgaDocument;
+import com.collabdebug.collabdebug_backend.document.RopeDocument;
+import com.collabdebug.collabdebug_backend.document.TextOperation;
+import com.collabdebug.collabdebug_backend.dto.SessionSnapshot;
+import com.collabdebug.collabdebug_backend.dto.ws.BaseMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.CrdtOp;
 import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
 import com.collabdebug.collabdebug_backend.dto.ws.EditResponse;
+import com.collabdebug.collabdebug_backend.dto.ws.ForwardedRequest;
+import com.collabdebug.collabdebug_backend.dto.ws.SyncResponse;
 import com.collabdebug.collabdebug_backend.model.DebugSession;
+import com.collabdebug.collabdebug_backend.redis.NodeIdentity;
 import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
 import com.collabdebug.collabdebug_backend.repository.DebugSessionRepository;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
@@ -17,6 +32,8 @@ import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 @Service
 public class SessionService {
@@ -26,6 +43,18 @@ public class SessionService {
     public static final String CHAT_REDIS_TOPIC_PREFIX = "chat-updates:";
     public static final String TERMINAL_REDIS_TOPIC_PREFIX = "terminal-updates:";
     private final RedisPublisher redisPublisher;
+    private final DocumentPersistenceService documentPersistence;
+    private final NodeIdentity nodeIdentity;
+    private final EditBroadcaster editBroadcaster;
+    private final SessionSnapshotService snapshotService;
+    private final SessionOwnershipService ownership;
+    private final ChatHistoryService chatHistory;
+    private final TerminalOutputBuffer terminalOutput;
+    // A forwarded request that still has not reached the owner after this many hops is rejected
+    static final int MAX_FORWARD_HOPS = 2;
+    // Versions of an ownership term start at epoch << EPOCH_SHIFT, so a new owner never reuses
+    // the previous owner's version numbers (and stays below 2^53 for JavaScript clients)
+    static final int EPOCH_SHIFT = 32;
     
     @PersistenceContext
     private EntityManager entityManager;
@@ -37,14 +66,52 @@ public class SessionService {
     private final Map<String, Set<String>> sessionToLocalConnectionIds = new ConcurrentHashMap<>();
     // connectionId -> userId mapping for quick lookup on disconnect
     private final Map<String, String> connectionIdToUserId = new ConcurrentHashMap<>();
+    // Told when a session gains its first or loses its last local connection (Redis subscriptions)
+    private volatile Consumer<String> onLocalInterestChanged = sessionId -> { };
 
     // Document state and versioning: sessionId -> code / version
-    private final Map<String, String> documentMaster = new ConcurrentHashMap<>();
+    private final Map<String, Document> documentMaster = new ConcurrentHashMap<>();
     private final Map<String, AtomicLong> serverVersion = new ConcurrentHashMap<>();
+    // Recent ops per session (bounded ring keyed by version), used to transform edits made against
+    // older versions and to catch clients up without resending the whole document
+    private final Map<String, OperationHistory> operationHistory = new ConcurrentHashMap<>();
+    @Value("${collab.oplog.capacity:1000}")
+    private int operationLogCapacity = 1000;
+
+    // "ot" (default): this node orders all edits of its sessions.
+    // "crdt": every node applies local edits immediately and merges the others' via session-updates:*.
+    @Value("${collab.document.mode:ot}")
+    private String documentMode = "ot";
+    static final String CRDT_STATE_REQUEST = "crdt-state-request";
+    static final String CRDT_STATE = "crdt-state";
+    static final String CRDT_ACK = "crdt-ack";
+    // Replicas tell each other what they have integrated at most this often (tombstone collection)
+    static final long CRDT_ACK_INTERVAL_MS = 1000;
+    private final Map<String, Long> crdtAckSentAt = new ConcurrentHashMap<>();
+
+    // Per-session edit sequencing: sessionId -> lock. Edits within one session are applied
+    // strictly in order, while edits for different sessions proceed in parallel. ReentrantLock
+    // rather than a monitor: edits run on virtual threads (ChannelExecutor), which a monitor would
+    // pin to their carrier while they wait for the lock or block on I/O inside it.
+    private final Map<String, ReentrantLock> editLocks = new ConcurrentHashMap<>();
 
     @Autowired
-    public SessionService(DebugSessionRepository sessionRepository, SimpMessagingTemplate msgTemplate, RedisPublisher redisPublisher) {
+    public SessionService(DebugSessionRepository sessionRepository, SimpMessagingTemplate msgTemplate, RedisPublisher redisPublisher,
+                          DocumentPersistenceService documentPersistence, NodeIdentity nodeIdentity,
+                          EditBroadcaster editBroadcaster, SessionSnapshotService snapshotService,
+                          SessionOwnershipService ownership, ChatHistoryService chatHistory,
+                          TerminalOutputBuffer terminalOutput) {
         this.sessionRepository = sessionRepository;
+        this.chatHistory = chatHistory;
+        this.terminalOutput = terminalOutput;
+        this.ownership = ownership;
+        ownership.setOnAcquired(this::onLeaseAcquired);
+        ownership.setOnReleasing(snapshotService::flush);
+        this.editBroadcaster = editBroadcaster;
+        this.snapshotService = snapshotService;
+        snapshotService.setSource(this::captureSnapshot);
+        this.nodeIdentity = nodeIdentity;
+        this.documentPersistence = documentPersistence;
         this.msgTemplate = msgTemplate;
         this.redisPublisher = redisPublisher;
     }
@@ -129,14 +196,8 @@ public class SessionService {
         // Publish a presence "left" event so other instances and clients are notified instantly
         try {
             Map<String, Object> payload = Map.of("type", "left", "userId", username);
-            // Publish to Redis for cross-instance delivery
+            // Delivered to this instance's clients and published to Redis for the other instances
             redisPublisher.publishPresence(sessionId.toString(), payload);
-            // Also send locally to connected WebSocket clients to ensure immediate update
-            try {
-                msgTemplate.convertAndSend("/topic/session/" + sessionId.toString() + "/presence", payload);
-            } catch (Exception e) {
-                System.err.println("Failed to send local websocket presence message: " + e.getMessage());
-            }
             System.out.println("[SessionService] ✅ Published 'left' presence for user: " + username + " session: " + sessionId);
         } catch (Exception e) {
             System.err.println("[SessionService] Failed to publish presence left event: " + e.getMessage());
@@ -144,6 +205,8 @@ public class SessionService {
 
         // stop container if no participants remain
         if (session.getParticipants().isEmpty()) {
+            // Persist any edits still waiting in the write-behind buffer
+            documentPersistence.flush(sessionId.toString());
             System.out.println("[SessionService.leaveSession] ⏹️ No more participants - stopping container");
             // Pass the auth so stopContainer can broadcast who triggered it (if any)
             stopContainer(sessionId, auth);
@@ -153,13 +216,23 @@ public class SessionService {
 
     @Transactional
     public void endSession(UUID sessionId, Authentication auth, boolean saveCode) {
+        // Send edits still in a batching window, then write pending edits so the entity
+        // loaded below carries the latest code
+        editBroadcaster.close(sessionId.toString());
+        documentPersistence.close(sessionId.toString());
         DebugSession session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new RuntimeException("Session not found"));
 
         if (saveCode) {
             // persist final code to DB (already updated in documentMaster)
-            String finalCode = documentMaster.getOrDefault(sessionId.toString(), session.getLatestCode());
-            session.setLatestCode(finalCode);
+            ReentrantLock lock = editLockFor(sessionId.toString());
+            lock.lock();
+            try {
+                Document doc = documentMaster.get(sessionId.toString());
+                session.setLatestCode(doc != null ? doc.getText() : session.getLatestCode());
+            } finally {
+                lock.unlock();
+            }
         }
 
         String containerName = sessionDockerMap.remove(sessionId);
@@ -167,20 +240,29 @@ public class SessionService {
 
         session.setActive(false);
         sessionRepository.save(session);
+        // Tear down under the session's lock so an edit in flight either finishes first or starts from
+        // the stored code. The lock entry itself stays: removing it would let a late edit lock a fresh
+        // lock while another thread still holds the old one.
+        ReentrantLock lock = editLockFor(sessionId.toString());
+        lock.lock();
+        try {
+            documentMaster.remove(sessionId.toString());
+            serverVersion.remove(sessionId.toString());
+            operationHistory.remove(sessionId.toString());
+            crdtAckSentAt.remove(sessionId.toString());
+        } finally {
+            lock.unlock();
+        }
+        snapshotService.delete(sessionId.toString());
+        ownership.release(sessionId.toString());
+        chatHistory.expire(sessionId.toString());
 
         // Broadcast session end to all subscribers so clients can react and leave the session UI
         try {
             String endedBy = (auth != null && auth.getName() != null) ? auth.getName() : "system";
             Map<String, Object> payload = Map.of("type", "ended", "by", endedBy);
-            // Publish to Redis for cross-instance delivery
+            // Delivered to this instance's subscribers and published to Redis for the other instances
             redisPublisher.publishSessionEnded(sessionId.toString(), payload);
-            // Also broadcast locally via SimpMessagingTemplate to ensure subscribers
-            // connected to this instance receive the event immediately.
-            try {
-                msgTemplate.convertAndSend("/topic/session/" + sessionId.toString() + "/end", payload);
-            } catch (Exception e) {
-                System.err.println("Failed to send local session end websocket message: " + e.getMessage());
-            }
         } catch (Exception e) {
             System.err.println("Failed to publish session end event: " + e.getMessage());
         }
@@ -255,7 +337,8 @@ public class SessionService {
     }
 
     private void broadcastTerminalOutput(UUID sessionId, String output) {
-        redisPublisher.publishTerminalOutput(sessionId.toString(), output);
+        // Coalesced and rate limited per session before it reaches the broker and Redis
+        terminalOutput.append(sessionId.toString(), output);
     }
 
     // 🚨 FIX: Combined defensive logic to handle container reuse after restart
@@ -267,7 +350,7 @@ public class SessionService {
         session.setLatestCode(code);
         session.setLanguage(language);
         sessionRepository.save(session);
-        documentMaster.put(sessionId.toString(), code);
+        replaceDocument(sessionId.toString(), code, 0);
 
         String containerName = sessionDockerMap.get(sessionId);
         String requiredName = "session_" + sessionId.toString().replace("-", "");
@@ -365,6 +448,16 @@ public class SessionService {
     // ------------------- WebSocket Collaboration -------------------
     // ... (userJoined, userLeft, applyEdit, replyToUser remain unchanged)
 
+    /** Called with a session id whenever it may have gained its first or lost its last local connection. */
+    public void setOnLocalInterestChanged(Consumer<String> listener) {
+        this.onLocalInterestChanged = listener;
+    }
+
+    public boolean hasLocalConnections(String sessionId) {
+        Set<String> set = sessionToLocalConnectionIds.get(sessionId);
+        return set != null && !set.isEmpty();
+    }
+
     public void userJoined(String sessionId, String connectionId, String userId) {
         Set<String> set = sessionToLocalConnectionIds.computeIfAbsent(sessionId, k -> ConcurrentHashMap.newKeySet());
 
@@ -372,6 +465,7 @@ public class SessionService {
         boolean added = set.add(connectionId);
         // Track connection -> user mapping
         connectionIdToUserId.put(connectionId, userId);
+        if (added && set.size() == 1) onLocalInterestChanged.accept(sessionId);
 
         if (added) {
             // Broadcast presence only on the first association for this connection
@@ -391,7 +485,7 @@ public class SessionService {
 
     public void userLeft(String sessionId, String connectionId, String userId) {
         Set<String> set = sessionToLocalConnectionIds.get(sessionId);
-        if (set != null) set.remove(connectionId);
+        if (set != null && set.remove(connectionId) && set.isEmpty()) onLocalInterestChanged.accept(sessionId);
 
         // Remove the connection->user mapping
         connectionIdToUserId.remove(connectionId);
@@ -450,6 +544,7 @@ public class SessionService {
                 
                 // Remove the connection from the set
                 set.remove(connectionId);
+                if (set.isEmpty()) onLocalInterestChanged.accept(sessionId);
                 // Remove mapping
                 connectionIdToUserId.remove(connectionId);
 
@@ -503,60 +598,579 @@ public class SessionService {
     // ------------------- Document Editing -------------------
 
     /**
-     * Applies the edit message by performing a NAIVE full-text replacement,
-     * matching the data structure sent by the React client.
+     * Entry point for client edits: applied here if this node owns the session (see
+     * {@link SessionOwnershipService}), otherwise forwarded to the owner, whose batch publish brings
+     * the result back to this node's clients and who sends rejections back for
+     * {@code /queue/edits}.
+     *
+     * If the owner cannot be determined, or ownership keeps moving, the edit is rejected rather than
+     * applied here, which could fork the session.
+     *
+     * @param hops how often the edit has already been forwarded
+     * @return the result of applying the edit here, or null if it was forwarded
+     */
+    public EditResponse submitEdit(EditMessage edit, int hops) {
+        String owner = ownerFor(edit.sessionId);
+        if (ownership.isLocal(owner)) return applyEdit(edit);
+        if (owner == null || hops >= MAX_FORWARD_HOPS) {
+            System.err.println("[SessionService] ❌ No reachable owner for session " + edit.sessionId + ", rejecting edit");
+            return unavailable();
+        }
+        forward(owner, forwardedEdit(edit, hops));
+        return null;
+    }
+
+    /**
+     * Catch-up counterpart of {@link #submitEdit}: answered here if this node owns the session,
+     * otherwise forwarded to the owner, which replies to {@code /queue/sync} through this node.
+     *
+     * @return the catch-up reply, or null if the request was forwarded or no owner is reachable
+     */
+    public SyncResponse submitSync(BaseMessage sync, int hops) {
+        String owner = ownerFor(sync.sessionId);
+        if (ownership.isLocal(owner)) return catchUp(sync.sessionId, sync.clientVersion);
+        if (owner == null || hops >= MAX_FORWARD_HOPS) {
+            System.err.println("[SessionService] ❌ No reachable owner for session " + sync.sessionId + ", dropping sync request");
+            return null;
+        }
+        ForwardedRequest request = new ForwardedRequest();
+        request.type = "sync";
+        request.fromNode = nodeIdentity.getNodeId();
+        request.hops = hops + 1;
+        request.sync = sync;
+        forward(owner, request);
+        return null;
+    }
+
+    /** @return the node that handles requests for {@code sid}, or null if it cannot be determined right now */
+    private String ownerFor(String sid) {
+        // CRDT mode is multi-master: every node applies its own clients' edits
+        if (isCrdtMode()) return nodeIdentity.getNodeId();
+        return ownership.ownerOf(sid);
+    }
+
+    private ForwardedRequest forwardedEdit(EditMessage edit, int hops) {
+        ForwardedRequest request = new ForwardedRequest();
+        request.type = "edit";
+        request.fromNode = nodeIdentity.getNodeId();
+        request.hops = hops + 1;
+        request.edit = edit;
+        return request;
+    }
+
+    private void forward(String owner, ForwardedRequest request) {
+        try {
+            redisPublisher.publishToNode(owner, request);
+        } catch (Exception e) {
+            System.err.println("[SessionService] ❌ Failed to forward " + request.type + " to owner node " + owner + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * This node just acquired a session's lease for the ownership term {@code epoch}. If another node
+     * advanced the session while we did not own it, our in-memory copy is stale and is restored from
+     * the snapshot instead. Versions then restart at the term's base, so edits and catch-ups based on
+     * the previous owner's versions fall outside the history and resync, and the full document is
+     * broadcast at the new version so every client resyncs right away.
      */
-    public synchronized EditResponse applyEdit(EditMessage edit) {
+    private void onLeaseAcquired(String sid, long epoch) {
+        if (isCrdtMode()) return;
+        ReentrantLock lock = editLockFor(sid);
+        lock.lock();
+        try {
+            AtomicLong local = serverVersion.get(sid);
+            if (local != null && documentMaster.containsKey(sid)) {
+                SessionSnapshot snapshot = snapshotService.load(sid);
+                if (snapshot != null && snapshot.version > local.get()) {
+                    System.out.println("[SessionService] ♻️ Dropping stale local state of session " + sid
+                            + " (local v" + local.get() + ", snapshot v" + snapshot.version + ")");
+                    documentMaster.remove(sid);
+                    serverVersion.remove(sid);
+                    operationHistory.remove(sid);
+                }
+            }
+            Document doc = documentFor(sid);
+            if (doc == null) return;
+
+            long base = epoch << EPOCH_SHIFT;
+            serverVersion.put(sid, new AtomicLong(base));
+            operationHistory.put(sid, new OperationHistory(operationLogCapacity, base));
+            markChanged(sid, doc, base);
+
+            EditMessage resync = new EditMessage();
+            resync.type = "edit";
+            resync.sessionId = sid;
+            resync.op = new EditOperation();
+            resync.op.text = doc.getText();
+            resync.baseVersion = base;
+            resync.serverVersion = base;
+            editBroadcaster.enqueue(resync, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Applies an edit to the session's master document.
+     * <p>
+     * Ranged ops ({@code rangeStart}/{@code rangeEnd}/{@code isInsert}) are positional inserts,
+     * deletes or replacements. If the client's {@code clientVersion} is behind the server, the op
+     * is transformed against every op applied since then; if that history is no longer retained
+     * the edit is rejected so the caller can resync the client with the full document.
+     * Ops without a range carry the full document (the original client format). They are only
+     * accepted from a client at the current version, and are reduced to a single-range delta
+     * against the document, so only the delta is broadcast; a stale one is rejected like an edit
+     * outside the history.
+     * <p>
+     * Edits are serialized per session, so different sessions never contend for the same lock.
+     */
+    public EditResponse applyEdit(EditMessage edit) {
+        ReentrantLock lock = editLockFor(edit.sessionId);
+        lock.lock();
+        try {
+            return applyEditLocked(edit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the whole master document outside the edit protocol (e.g. code submitted for a run).
+     * The change is recorded and broadcast as a delta like any other edit; in CRDT mode it is also
+     * replicated to the other nodes. Also applies the code another node forwarded to this owner.
+     *
+     * @param hops how often the code has already been forwarded
+     */
+    public void replaceDocument(String sid, String code, int hops) {
+        String owner = ownerFor(sid);
+        if (owner == null || (!ownership.isLocal(owner) && hops >= MAX_FORWARD_HOPS)) {
+            System.err.println("WARN: Could not store submitted code of session " + sid + ": no reachable owner");
+            return;
+        }
+        if (!ownership.isLocal(owner)) {
+            // Another node sequences this session: send it the code as a "replace" request, which
+            // it applies whatever version it is at (unlike a client's full-text edit)
+            EditMessage edit = new EditMessage();
+            edit.type = "edit";
+            edit.sessionId = sid;
+            edit.op = new EditOperation();
+            edit.op.text = code;
+            ForwardedRequest request = forwardedEdit(edit, hops);
+            request.type = "replace";
+            forward(owner, request);
+            return;
+        }
+        ReentrantLock lock = editLockFor(sid);
+        lock.lock();
+        try {
+            Document doc = documentFor(sid);
+            if (doc == null) {
+                System.err.println("WARN: Could not store submitted code of session " + sid + ": document unavailable");
+                return;
+            }
+            if (doc.length() == code.length() && doc.getText().equals(code)) return;
+            AtomicLong version = serverVersion.computeIfAbsent(sid, k -> new AtomicLong(0));
+            OperationHistory history = historyFor(sid, version.get());
+
+            TextOperation op = TextOperation.diff(doc, code);
+            op.applyTo(doc);
+            history.record(op);
+            long baseVersion = version.get();
+            long newVersion = version.incrementAndGet();
+            markChanged(sid, doc, newVersion);
+
+            EditMessage edit = new EditMessage();
+            edit.type = "edit";
+            edit.sessionId = sid;
+            edit.op = op.toEditOperation();
+            edit.baseVersion = baseVersion;
+            edit.serverVersion = newVersion;
+            if (doc instanceof RgaDocument rga) {
+                edit.originNode = nodeIdentity.getNodeId();
+                edit.crdt = rga.drainLocalOps();
+            }
+            editBroadcaster.enqueue(edit, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Merges an edit produced on another node (CRDT mode): integrates its CRDT ops into the local
+     * replica and broadcasts the resulting changes to this node's clients as ordinary deltas,
+     * versioned by this node. Also answers replica state requests from nodes that join late.
+     */
+    public void applyRemoteEdit(EditMessage remote) {
+        String sid = remote.sessionId;
+        ReentrantLock lock = editLockFor(sid);
+        lock.lock();
+        try {
+            if (CRDT_STATE_REQUEST.equals(remote.type)) {
+                if (documentMaster.get(sid) instanceof RgaDocument rga) {
+                    rga.notePeer(remote.originNode);
+                    EditMessage state = new EditMessage();
+                    state.type = CRDT_STATE;
+                    state.sessionId = sid;
+                    state.originNode = nodeIdentity.getNodeId();
+                    state.crdt = rga.exportState();
+                    redisPublisher.publishEdit(state);
+                }
+                return;
+            }
+            if (CRDT_ACK.equals(remote.type)) {
+                if (documentMaster.get(sid) instanceof RgaDocument rga) rga.applyAck(remote.originNode, remote.crdt);
+                return;
+            }
+            if (remote.crdt == null || remote.crdt.isEmpty()) return;
+            Document doc = documentFor(sid);
+            if (doc == null) {
+                System.err.println("WARN: Dropping CRDT ops for session " + sid + ": replica could not be loaded");
+                return;
+            }
+            if (!(doc instanceof RgaDocument rga)) {
+                System.err.println("WARN: Received CRDT ops for session " + sid + " but this node is not in CRDT mode");
+                return;
+            }
+            rga.notePeer(remote.originNode);
+
+            AtomicLong version = serverVersion.computeIfAbsent(sid, k -> new AtomicLong(0));
+            OperationHistory history = historyFor(sid, version.get());
+            for (TextOperation effect : rga.applyRemote(remote.crdt)) {
+                history.record(effect);
+                EditMessage local = new EditMessage();
+                local.type = "edit";
+                local.sessionId = sid;
+                local.userId = remote.userId;
+                local.op = effect.toEditOperation();
+                local.baseVersion = version.get();
+                local.serverVersion = version.incrementAndGet();
+                editBroadcaster.enqueue(local, false);
+            }
+            markChanged(sid, rga, version.get());
+            if (rga.pollStateLost()) requestReplicaState(sid);
+            acknowledge(sid, rga);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Asks the other nodes for their replica state of {@code sid} (merged idempotently on arrival). */
+    private void requestReplicaState(String sid) {
+        EditMessage request = new EditMessage();
+        request.type = CRDT_STATE_REQUEST;
+        request.sessionId = sid;
+        request.originNode = nodeIdentity.getNodeId();
+        redisPublisher.publishEdit(request);
+    }
+
+    /**
+     * Tells the other replicas what this one has integrated, at most every {@link #CRDT_ACK_INTERVAL_MS},
+     * so they can collect tombstones.
+     */
+    private void acknowledge(String sid, RgaDocument rga) {
+        long now = System.currentTimeMillis();
+        Long last = crdtAckSentAt.get(sid);
+        if (last != null && now - last < CRDT_ACK_INTERVAL_MS) return;
+        List<CrdtOp> ack = rga.exportAck();
+        if (ack == null) return;
+        crdtAckSentAt.put(sid, now);
+        EditMessage message = new EditMessage();
+        message.type = CRDT_ACK;
+        message.sessionId = sid;
+        message.originNode = nodeIdentity.getNodeId();
+        message.crdt = ack;
+        redisPublisher.publishEdit(message);
+    }
+
+    private boolean isCrdtMode() {
+        return "crdt".equalsIgnoreCase(documentMode);
+    }
+
+    /**
+     * Returns the session's master document. A session this node has not loaded yet is restored
+     * from its Redis snapshot (or from the stored latest code); in CRDT mode the replica is seeded
+     * (see {@link #seedReplica}) and the peers are asked for their replica state.
+     * Callers hold the session's edit lock.
+     *
+     * @return the document, or null if a CRDT replica cannot be seeded right now (callers reject the request)
+     */
+    private Document documentFor(String sid) {
+        Document doc = documentMaster.get(sid);
+        if (doc != null) return doc;
+        if (!isCrdtMode()) {
+            doc = restoreDocument(sid);
+            documentMaster.put(sid, doc);
+            return doc;
+        }
+        doc = seedReplica(sid);
+        if (doc == null) return null;
+        documentMaster.put(sid, doc);
+        requestReplicaState(sid);
+        return doc;
+    }
+
+    /**
+     * Builds this node's replica of a CRDT session from the stored replica state, or, if there is
+     * none yet, from the seed stored by the first node to load the session: the persisted code as
+     * elements with fixed ids, so every replica starts from the same elements and local edits never
+     * land on an empty replica that the peers' state is later merged into.
+     *
+     * @return the replica, or null if Redis or the database cannot be read
+     */
+    private RgaDocument seedReplica(String sid) {
+        SessionSnapshot stored;
+        try {
+            stored = snapshotService.loadOrInit(sid, () -> {
+                SessionSnapshot seed = new SessionSnapshot();
+                seed.sessionId = sid;
+                seed.text = sessionRepository.findById(UUID.fromString(sid)).map(DebugSession::getLatestCode).orElse("");
+                seed.tail = List.of();
+                seed.timestamp = System.currentTimeMillis();
+                return seed;
+            });
+        } catch (Exception e) {
+            System.err.println("[SessionService] ❌ Cannot seed CRDT replica of session " + sid + ": " + e.getMessage());
+            return null;
+        }
+        if (stored.crdt == null) return new RgaDocument(nodeIdentity.getNodeId(), stored.text);
+        RgaDocument replica = new RgaDocument(nodeIdentity.getNodeId());
+        replica.applyRemote(stored.crdt);
+        return replica;
+    }
+
+    /** Rebuilds document, version and op-log tail from the session's snapshot with one Redis read. */
+    private Document restoreDocument(String sid) {
+        SessionSnapshot snapshot = snapshotService.load(sid);
+        if (snapshot != null && snapshot.text != null) {
+            OperationHistory history = new OperationHistory(operationLogCapacity, snapshot.tailBaseVersion);
+            try {
+                if (snapshot.tail != null) {
+                    for (EditOperation op : snapshot.tail) history.record(TextOperation.fromEdit(op));
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("WARN: Discarding malformed op-log tail in snapshot of session " + sid + ": " + e.getMessage());
+            }
+            if (history.getLatestVersion() != snapshot.version) history.reset(snapshot.version);
+            serverVersion.put(sid, new AtomicLong(snapshot.version));
+            operationHistory.put(sid, history);
+            System.out.println("[SessionService] ♻️ Restored session " + sid + " from snapshot at version " + snapshot.version
+                    + " (" + (snapshot.version - history.getBaseVersion()) + " ops of history)");
+            return new RopeDocument(snapshot.text);
+        }
+
+        String latestCode = null;
+        try {
+            latestCode = sessionRepository.findById(UUID.fromString(sid)).map(DebugSession::getLatestCode).orElse(null);
+        } catch (Exception e) {
+            System.err.println("WARN: Could not load latest code for session " + sid + ": " + e.getMessage());
+        }
+        return new RopeDocument(latestCode != null ? latestCode : "");
+    }
+
+    /** Consistent view of a session for {@link SessionSnapshotService}; the text is materialized outside the lock. */
+    private SessionSnapshot captureSnapshot(String sid, int maxTailOps) {
+        ReentrantLock lock = editLocks.get(sid);
+        if (lock == null) return null;
+        Document doc;
+        long version;
+        long tailBase;
+        List<TextOperation> tail;
+        List<CrdtOp> crdt = null;
+        lock.lock();
+        try {
+            Document master = documentMaster.get(sid);
+            OperationHistory history = operationHistory.get(sid);
+            AtomicLong current = serverVersion.get(sid);
+            if (master == null || history == null || current == null) return null;
+            doc = master.snapshot();
+            version = current.get();
+            if (master instanceof RgaDocument rga) {
+                // Versions are per node in CRDT mode: the replica state is what another node restores
+                crdt = rga.exportState();
+                tailBase = version;
+                tail = List.of();
+            } else {
+                tailBase = Math.max(history.getBaseVersion(), version - maxTailOps);
+                tail = history.since(tailBase);
+                if (tail == null) {
+                    tailBase = version;
+                    tail = List.of();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        SessionSnapshot snapshot = new SessionSnapshot();
+        snapshot.sessionId = sid;
+        snapshot.version = version;
+        snapshot.text = doc.getText();
+        snapshot.tailBaseVersion = tailBase;
+        snapshot.tail = new ArrayList<>(tail.size());
+        for (TextOperation op : tail) snapshot.tail.add(op.toEditOperation());
+        snapshot.crdt = crdt;
+        snapshot.timestamp = System.currentTimeMillis();
+        return snapshot;
+    }
+
+    /** Queues a new document version for write-behind persistence and the next Redis snapshot. */
+    private void markChanged(String sid, Document doc, long version) {
+        documentPersistence.markDirty(sid, doc.snapshot(), version);
+        snapshotService.markDirty(sid);
+    }
+
+    private OperationHistory historyFor(String sid, long currentVersion) {
+        return operationHistory.computeIfAbsent(sid, k -> new OperationHistory(operationLogCapacity, currentVersion));
+    }
+
+    private ReentrantLock editLockFor(String sessionId) {
+        return editLocks.computeIfAbsent(sessionId, k -> new ReentrantLock());
+    }
+
+    private EditResponse applyEditLocked(EditMessage edit) {
         String sid = edit.sessionId;
-        documentMaster.putIfAbsent(sid, "");
+        Document doc = documentFor(sid);
+        if (doc == null) return unavailable();
         serverVersion.putIfAbsent(sid, new AtomicLong(0));
 
-        // 🚨 FIX 1: Handle potential null op or null text defensively
-        if (edit.op == null || edit.op.text == null) {
-            System.err.println("WARN: Received edit with null op or null text for session " + sid);
+        // 🚨 FIX 1: Handle potential null op defensively
+        if (edit.op == null) {
+            System.err.println("WARN: Received edit with null op for session " + sid);
             // Rejects the edit but returns current state
-            return new EditResponse(false, documentMaster.get(sid), serverVersion.get(sid).get());
+            return new EditResponse(false, doc.getText(), serverVersion.get(sid).get());
         }
 
         long currentVersion = serverVersion.get(sid).get();
+        OperationHistory history = historyFor(sid, currentVersion);
 
-        // NOTE: Client version is currently ignored in this naive replacement logic
-        // if (edit.clientVersion != currentVersion) {
-        //     return new EditResponse(false, documentMaster.get(sid), currentVersion);
-        // }
+        TextOperation op;
+        if (edit.op.rangeStart == null) {
+            if (edit.op.text == null) {
+                System.err.println("WARN: Received edit with null op text for session " + sid);
+                return new EditResponse(false, doc.getText(), currentVersion);
+            }
+            if (edit.clientVersion != currentVersion) {
+                // The text was written against an older document: diffing it against the current one
+                // would revert every edit sequenced since, so the client resyncs instead
+                System.out.println("[SessionService] Full-text edit at version " + edit.clientVersion
+                        + " is stale (server at " + currentVersion + "), resyncing client");
+                return new EditResponse(false, doc.getText(), currentVersion);
+            }
+            // Full-text edit of the current document: reduce it to the delta so only the changed
+            // range is broadcast (and recorded for OT/catch-up) instead of the whole file.
+            op = TextOperation.diff(doc, edit.op.text);
+        } else {
+            try {
+                op = TextOperation.fromEdit(edit.op);
+            } catch (IllegalArgumentException e) {
+                System.err.println("WARN: Rejecting malformed edit for session " + sid + ": " + e.getMessage());
+                return new EditResponse(false, doc.getText(), currentVersion);
+            }
 
-        // 🚨 FIX 2: Use the full text from the op payload as the updated document.
-        String updatedDoc = edit.op.text;
+            // Transform the op against everything the client had not seen yet
+            List<TextOperation> concurrent = history.since(edit.clientVersion);
+            if (concurrent == null) {
+                System.out.println("[SessionService] Edit at version " + edit.clientVersion
+                        + " is outside the retained history (server at " + currentVersion + "), resyncing client");
+                return new EditResponse(false, doc.getText(), currentVersion);
+            }
+            for (TextOperation applied : concurrent) {
+                op = op.transformAgainst(applied);
+            }
+            if (op.getEnd() > doc.length()) {
+                System.err.println("WARN: Rejecting out-of-range edit for session " + sid + ": " + op);
+                return new EditResponse(false, doc.getText(), currentVersion);
+            }
+        }
 
-        documentMaster.put(sid, updatedDoc);
-        serverVersion.get(sid).incrementAndGet();
+        op.applyTo(doc);
+        history.record(op);
+        long newVersion = serverVersion.get(sid).incrementAndGet();
+        // Broadcast the (transformed) delta with its base and target versions; a client whose
+        // version differs from baseVersion must resync via /app/session/{id}/sync.
+        op.copyTo(edit.op);
+        edit.baseVersion = currentVersion;
+        if (doc instanceof RgaDocument rga) {
+            // CRDT mode: ship the replica ops; the broadcaster's Redis publish carries them to the other nodes
+            edit.crdt = rga.drainLocalOps();
+            edit.originNode = nodeIdentity.getNodeId();
+        }
 
-        // persist updated code to DB
-        UUID sessionUUID = UUID.fromString(sid);
-        sessionRepository.findById(sessionUUID).ifPresent(session -> {
-            session.setLatestCode(updatedDoc);
-            sessionRepository.save(session);
-        });
+        // Queue the new version for write-behind persistence and the next Redis snapshot
+        // (coalesced, not one write per edit)
+        markChanged(sid, doc, newVersion);
 
         // broadcast to WebSocket clients
-        edit.serverVersion = serverVersion.get(sid).get();
-        // 🚨 CRITICAL: Re-add the edit.op.text, as the backend only sends the op object
-        // and the frontend needs the code to update the editor.
-        // We set the code field in the response for the naive client to use.
-        EditResponse response = new EditResponse(true, updatedDoc, edit.serverVersion);
+        edit.serverVersion = newVersion;
+        // Accepted edits are never sent back to the author, so the full text is not materialized here;
+        // only rejections carry the document for a resync.
+        EditResponse response = new EditResponse(true, null, edit.serverVersion);
 
         // 🚨 FIX 3: Broadcast the original edit message so other clients can update.
         // The original EditMessage contains the client userId which is needed for the
-        // other clients to ignore their own edits.
-        msgTemplate.convertAndSend("/topic/session/" + sid + "/edits", edit);
+        // other clients to ignore their own edits. It goes out in the session's next
+        // micro-batch, together with the Redis publish for the other nodes.
+        editBroadcaster.enqueue(edit, true);
 
         // Return the response object (not the broadcast message)
         return response;
     }
 
 
+    /**
+     * Rejection of an edit the session cannot take right now. It carries no document: the client
+     * asks for a full snapshot again shortly, instead of being reset to an empty one.
+     */
+    private static EditResponse unavailable() {
+        return new EditResponse(false, null, -1);
+    }
+
+    /**
+     * Brings a client that last saw {@code clientVersion} up to date: returns only the ops it
+     * missed while they are still in the session's op log, and the full document otherwise.
+     */
+    public SyncResponse catchUp(String sid, long clientVersion) {
+        ReentrantLock lock = editLockFor(sid);
+        lock.lock();
+        try {
+            Document doc = documentFor(sid);
+            if (doc == null) return null;
+            long currentVersion = serverVersion.computeIfAbsent(sid, k -> new AtomicLong(0)).get();
+
+            List<TextOperation> missed = historyFor(sid, currentVersion).since(clientVersion);
+            if (missed == null) {
+                return SyncResponse.snapshot(sid, currentVersion, doc.getText());
+            }
+            List<EditOperation> ops = new ArrayList<>(missed.size());
+            for (TextOperation op : missed) {
+                ops.add(op.toEditOperation());
+            }
+            return SyncResponse.ops(sid, clientVersion, currentVersion, ops);
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void replyToUser(String userId, String destination, Object payload) {
         // Sends message to the user-specific queue
         msgTemplate.convertAndSendToUser(userId, destination, payload);
     }
+
+    /**
+     * Sends the full document of {@code sid} to one WebSocket connection whose stale edit frames were
+     * dropped (SessionSendQueues). The client treats it like any full-snapshot sync reply. When another
+     * node owns the session, the owner answers through our inbox, to all of the user's connections.
+     */
+    public void resyncConnection(String sid, String userId, String webSocketSessionId) {
+        BaseMessage sync = new BaseMessage();
+        sync.sessionId = sid;
+        sync.setUserId(userId);
+        sync.clientVersion = -1; // older than any op log window: always a full snapshot
+        SyncResponse res = submitSync(sync, 0);
+        if (res == null) return;
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(webSocketSessionId); // resolves /user/queue/sync to this connection only
+        headers.setLeaveMutable(true);
+        msgTemplate.convertAndSendToUser(userId, "/queue/sync", res, headers.getMessageHeaders());
+    }
 }
\ No newline at end of file
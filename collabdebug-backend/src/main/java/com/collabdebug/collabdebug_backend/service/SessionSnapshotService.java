@@ -0,0 +1,140 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.SessionSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Periodic snapshots of live session state for fast warm-up.
+ * <p>
+ * Edits only mark a session dirty. Every snapshot interval, each dirty session is captured as
+ * {document, serverVersion, last {@code tail-ops} ops of the op log} and written as a single blob to
+ * the {@link SnapshotStore}, replacing the previous one, so the stored op log never grows past
+ * the tail (older ops are compacted into the document). A node that restarts or picks a session up
+ * restores it with one read instead of starting from {@code latest_code} at version 0. In CRDT mode
+ * the blob holds the replica state, and the first node to load a session stores the seed every
+ * replica starts from ({@link #loadOrInit}).
+ */
+@Service
+public class SessionSnapshotService {
+
+    /** Captures a consistent snapshot of a session, or null if the session is gone. */
+    @FunctionalInterface
+    public interface SnapshotSource {
+        SessionSnapshot capture(String sessionId, int maxTailOps);
+    }
+
+    private final SnapshotStore store;
+    private final int tailOps;
+    private final ScheduledExecutorService snapshotter;
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private volatile SnapshotSource source;
+
+    @Autowired
+    public SessionSnapshotService(SnapshotStore store,
+                                  @Value("${collab.snapshot.interval-ms:5000}") long intervalMs,
+                                  @Value("${collab.snapshot.tail-ops:200}") int tailOps) {
+        this.store = store;
+        this.tailOps = tailOps;
+        this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-snapshotter");
+            t.setDaemon(true);
+            return t;
+        });
+        snapshotter.scheduleWithFixedDelay(this::snapshotDirty, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Registers where snapshots are captured from (the session service owning the documents). */
+    public void setSource(SnapshotSource source) {
+        this.source = source;
+    }
+
+    /** Records that {@code sessionId} changed since its last snapshot. */
+    public void markDirty(String sessionId) {
+        dirty.add(sessionId);
+    }
+
+    /** Writes a fresh snapshot for every session that changed since the last run. */
+    public void snapshotDirty() {
+        SnapshotSource src = source;
+        if (src == null) return;
+        for (String sessionId : dirty) {
+            dirty.remove(sessionId);
+            write(src, sessionId);
+        }
+    }
+
+    /** Writes the snapshot of {@code sessionId} right away, e.g. before its lease is handed to another node. */
+    public void flush(String sessionId) {
+        SnapshotSource src = source;
+        if (src == null) return;
+        dirty.remove(sessionId);
+        write(src, sessionId);
+    }
+
+    private void write(SnapshotSource src, String sessionId) {
+        try {
+            SessionSnapshot snapshot = src.capture(sessionId, tailOps);
+            if (snapshot != null) {
+                store.put(sessionId, snapshot);
+            }
+        } catch (Exception e) {
+            System.err.println("[SessionSnapshotService] ❌ Failed to snapshot session " + sessionId + ": " + e.getMessage());
+            dirty.add(sessionId);
+        }
+    }
+
+    /** @return the last snapshot of {@code sessionId}, or null if there is none (or the store is unavailable) */
+    public SessionSnapshot load(String sessionId) {
+        try {
+            return store.get(sessionId);
+        } catch (Exception e) {
+            System.err.println("[SessionSnapshotService] ❌ Failed to load snapshot for session " + sessionId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the snapshot of {@code sessionId}, storing {@code initial} first if there is none
+     * (put-if-absent), so nodes that load the session at the same time all start from the same state.
+     * Unlike {@link #load}, store errors are thrown: the caller cannot tell "no snapshot" apart.
+     */
+    public SessionSnapshot loadOrInit(String sessionId, Supplier<SessionSnapshot> initial) {
+        SessionSnapshot snapshot = store.get(sessionId);
+        if (snapshot != null) return snapshot;
+        SessionSnapshot created = initial.get();
+        SessionSnapshot existing = store.putIfAbsent(sessionId, created);
+        return existing != null ? existing : created;
+    }
+
+    /** Drops the snapshot of a session that is over. */
+    public void delete(String sessionId) {
+        dirty.remove(sessionId);
+        try {
+            store.delete(sessionId);
+        } catch (Exception e) {
+            System.err.println("[SessionSnapshotService] ❌ Failed to delete snapshot for session " + sessionId + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("[SessionSnapshotService] Snapshotting " + dirty.size() + " dirty session(s) on shutdown");
+        snapshotDirty();
+    }
+}
@@ -0,0 +1,23 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.SessionSnapshot;
+
+/**
+ * Where {@link SessionSnapshotService} keeps its snapshots, selected by {@code collab.transport}:
+ * {@link RedisSnapshotStore} ({@code redis}, default) lets any node restore a session,
+ * {@link InMemorySnapshotStore} ({@code loopback}) keeps them in this JVM. Stored snapshots expire
+ * after {@code collab.snapshot.ttl-seconds}.
+ */
+public interface SnapshotStore {
+
+    /** @return the stored snapshot of {@code sessionId}, or null if there is none */
+    SessionSnapshot get(String sessionId);
+
+    /** Stores {@code snapshot}, replacing the previous one. */
+    void put(String sessionId, SessionSnapshot snapshot);
+
+    /** Stores {@code snapshot} unless one exists; @return the existing snapshot, or null if {@code snapshot} was stored */
+    SessionSnapshot putIfAbsent(String sessionId, SessionSnapshot snapshot);
+
+    void delete(String sessionId);
+}
@@ -0,0 +1,164 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-session buffer between program output and {@code /topic/session/{id}/terminal}.
+ * <p>
+ * Output is appended to the session's buffer and sent every {@code collab.terminal.flush-interval-ms}
+ * as one frame (one local broadcast and one Redis publish), however many chunks arrived in between.
+ * Each session may send at most {@code max-bytes-per-sec} (a token bucket with one second of burst);
+ * the rest waits in its buffer. When a session's buffer is full ({@code buffer-bytes}) further output
+ * is dropped and replaced by a "… N bytes dropped" line, so a program printing in a tight loop costs
+ * a bounded amount of memory and broker traffic and doesn't slow down other sessions.
+ * <p>
+ * Sizes are counted in characters, i.e. bytes for the usual ASCII output.
+ */
+@Service
+public class TerminalOutputBuffer {
+
+    private final RedisPublisher redisPublisher;
+    private final CollabMetrics metrics;
+    private final int bufferBytes;
+    private final double bytesPerSec;
+    private final LongSupplier nanoClock;
+    private final ScheduledExecutorService flusher;
+
+    // sessionId -> output waiting for the next flush
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    private static final class Buffer {
+        final ReentrantLock lock = new ReentrantLock();
+        final StringBuilder pending = new StringBuilder();
+        long dropped;
+        int chunks;
+        double tokens;
+        long refilledAt;
+        boolean closed;
+    }
+
+    @Autowired
+    public TerminalOutputBuffer(RedisPublisher redisPublisher, CollabMetrics metrics,
+                                @Value("${collab.terminal.flush-interval-ms:50}") long flushIntervalMs,
+                                @Value("${collab.terminal.max-bytes-per-sec:65536}") int maxBytesPerSec,
+                                @Value("${collab.terminal.buffer-bytes:262144}") int bufferBytes) {
+        this(redisPublisher, metrics, flushIntervalMs, maxBytesPerSec, bufferBytes, System::nanoTime);
+    }
+
+    TerminalOutputBuffer(RedisPublisher redisPublisher, CollabMetrics metrics, long flushIntervalMs,
+                         int maxBytesPerSec, int bufferBytes, LongSupplier nanoClock) {
+        this.redisPublisher = redisPublisher;
+        this.metrics = metrics;
+        this.bufferBytes = Math.max(1, bufferBytes);
+        this.bytesPerSec = Math.max(1, maxBytesPerSec);
+        this.nanoClock = nanoClock;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "terminal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        metrics.gauge("terminal.buffered-sessions", buffers::size);
+        flusher.scheduleAtFixedRate(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Queues terminal output of {@code sessionId} for the next frame. */
+    public void append(String sessionId, String output) {
+        if (output == null || output.isEmpty()) return;
+        while (true) {
+            Buffer buffer = buffers.computeIfAbsent(sessionId, k -> {
+                Buffer b = new Buffer();
+                b.tokens = bytesPerSec;
+                b.refilledAt = nanoClock.getAsLong();
+                return b;
+            });
+            buffer.lock.lock();
+            try {
+                if (buffer.closed) continue; // removed by the flusher meanwhile
+                int room = bufferBytes - buffer.pending.length();
+                if (buffer.dropped > 0 && room > 0) {
+                    buffer.pending.append(droppedMarker(buffer.dropped));
+                    buffer.dropped = 0;
+                    room = bufferBytes - buffer.pending.length();
+                }
+                int kept = Math.max(0, Math.min(room, output.length()));
+                buffer.pending.append(output, 0, kept);
+                buffer.chunks++;
+                if (kept < output.length()) {
+                    buffer.dropped += output.length() - kept;
+                    metrics.add("terminal.dropped-bytes", output.length() - kept);
+                }
+                return;
+            } finally {
+                buffer.lock.unlock();
+            }
+        }
+    }
+
+    /** Sends what each session may send right now. */
+    void flushAll() {
+        for (Map.Entry<String, Buffer> entry : buffers.entrySet()) {
+            try {
+                flush(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                System.err.println("[TerminalOutputBuffer] ❌ Failed to send terminal output of session " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void flush(String sessionId, Buffer buffer) {
+        String frame;
+        buffer.lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            buffer.tokens = Math.min(bytesPerSec, buffer.tokens + (now - buffer.refilledAt) / 1e9 * bytesPerSec);
+            buffer.refilledAt = now;
+            if (buffer.pending.isEmpty() && buffer.dropped == 0) {
+                // Idle with a full bucket: forget the session until it prints again
+                if (buffer.tokens >= bytesPerSec) {
+                    buffer.closed = true;
+                    buffers.remove(sessionId, buffer);
+                }
+                return;
+            }
+            int size = (int) Math.min(buffer.pending.length(), buffer.tokens);
+            if (size == 0 && !buffer.pending.isEmpty()) return;
+            StringBuilder out = new StringBuilder(size + 32).append(buffer.pending, 0, size);
+            buffer.pending.delete(0, size);
+            buffer.tokens -= size;
+            if (buffer.pending.isEmpty() && buffer.dropped > 0) {
+                out.append(droppedMarker(buffer.dropped));
+                buffer.dropped = 0;
+            }
+            if (buffer.chunks > 1) metrics.add("terminal.coalesced-chunks", buffer.chunks - 1);
+            buffer.chunks = 0;
+            frame = out.toString();
+        } finally {
+            buffer.lock.unlock();
+        }
+        metrics.increment("terminal.frames");
+        metrics.add("terminal.bytes", frame.length());
+        redisPublisher.publishTerminalOutput(sessionId, frame);
+    }
+
+    private static String droppedMarker(long dropped) {
+        return "\n… " + dropped + " bytes dropped\n";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushAll();
+    }
+}
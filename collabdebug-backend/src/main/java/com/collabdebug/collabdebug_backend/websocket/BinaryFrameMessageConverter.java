@@ -0,0 +1,41 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Set;
+
+/**
+ * Serializes edit and sync payloads to JSON bytes marked {@code application/octet-stream}, ahead of
+ * Spring's default converters (WebSocketConfig). Spring's STOMP handler sends octet-stream bodies to
+ * native WebSocket sessions as binary frames and to SockJS sessions as text frames, so call sites keep
+ * sending objects and clients keep parsing the body as JSON.
+ * <p>
+ * Outbound only: inbound {@code @Payload} arguments are still converted by the default JSON converter.
+ */
+public class BinaryFrameMessageConverter extends MappingJackson2MessageConverter {
+
+    private final Set<Class<?>> binaryTypes;
+
+    public BinaryFrameMessageConverter(Set<Class<?>> binaryTypes) {
+        super(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        this.binaryTypes = binaryTypes;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return binaryTypes.contains(clazz);
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, MessageHeaders headers) {
+        return supports(payload.getClass()) && super.canConvertTo(payload, headers);
+    }
+
+    @Override
+    protected boolean canConvertFrom(Message<?> message, Class<?> targetClass) {
+        return false;
+    }
+}
@@ -0,0 +1,89 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor of a STOMP client channel (WebSocketConfig), instrumented for {@code GET /api/metrics}.
+ * <p>
+ * "virtual" starts a virtual thread per message, so a handler blocked on JPA or Redis holds no
+ * platform thread and other sessions keep moving. "platform" is a fixed pool of {@code poolSize}
+ * threads (0 = two per CPU, Spring's default) with an unbounded queue. Both report
+ * {@code stomp.<channel>.queued} (submitted, not started), {@code stomp.<channel>.active} (running),
+ * the {@code stomp.<channel>.tasks} counter and the {@code stomp.<channel>.queue-wait} timer.
+ */
+public class ChannelExecutor implements Executor {
+
+    private final String channel;
+    private final ExecutorService delegate;
+    private final CollabMetrics metrics;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+
+    public ChannelExecutor(String channel, String mode, int poolSize, CollabMetrics metrics) {
+        this.channel = channel;
+        this.metrics = metrics;
+        String threadPrefix = "stomp-" + channel + "-";
+        if ("platform".equalsIgnoreCase(mode)) {
+            int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2;
+            AtomicInteger index = new AtomicInteger();
+            this.delegate = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, threadPrefix + index.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadPrefix, 0).factory());
+        }
+        metrics.gauge("stomp." + channel + ".queued", queued::get);
+        metrics.gauge("stomp." + channel + ".active", active::get);
+        System.out.println("[ChannelExecutor] ✅ STOMP " + channel + " channel on "
+                + ("platform".equalsIgnoreCase(mode) ? "a platform thread pool" : "virtual threads"));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        queued.incrementAndGet();
+        metrics.increment("stomp." + channel + ".tasks");
+        try {
+            delegate.execute(() -> {
+                queued.decrementAndGet();
+                active.incrementAndGet();
+                metrics.recordNanos("stomp." + channel + ".queue-wait", System.nanoTime() - submitted);
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            throw e;
+        }
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    int active() {
+        return active.get();
+    }
+
+    /**
+     * Spring registers the executor given to ChannelRegistration as the
+     * {@code clientInbound/OutboundChannelExecutor} bean and calls this as its inferred destroy method
+     * when the context closes.
+     */
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
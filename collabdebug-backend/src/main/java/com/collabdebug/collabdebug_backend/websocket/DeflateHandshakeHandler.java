@@ -0,0 +1,41 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
+
+/**
+ * Handshake handler of the native WebSocket endpoint: accepts the client's permessage-deflate offer
+ * (supported by the servlet container) unless {@code collab.ws.native.deflate=false}, which trades
+ * bandwidth for CPU. Handshakes and negotiated deflate are counted as {@code ws.native.handshakes}
+ * and {@code ws.native.deflate}.
+ */
+public class DeflateHandshakeHandler extends DefaultHandshakeHandler {
+
+    static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+
+    private final boolean deflate;
+    private final CollabMetrics metrics;
+
+    public DeflateHandshakeHandler(boolean deflate, CollabMetrics metrics) {
+        this.deflate = deflate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                                                                 List<WebSocketExtension> requested,
+                                                                 List<WebSocketExtension> supported) {
+        List<WebSocketExtension> accepted = super.filterRequestedExtensions(request, requested, supported).stream()
+                .filter(extension -> deflate || !PERMESSAGE_DEFLATE.equals(extension.getName()))
+                .toList();
+        metrics.increment("ws.native.handshakes");
+        if (accepted.stream().anyMatch(extension -> PERMESSAGE_DEFLATE.equals(extension.getName()))) {
+            metrics.increment("ws.native.deflate");
+        }
+        return accepted;
+    }
+}
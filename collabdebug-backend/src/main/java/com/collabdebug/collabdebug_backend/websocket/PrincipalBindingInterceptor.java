@@ -0,0 +1,60 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+import java.security.Principal;
+import java.util.Map;
+
+/**
+ * Binds the principal stored by JwtHandshakeInterceptor to the STOMP session, once, at CONNECT.
+ * <p>
+ * Setting the user on the CONNECT message's own (still mutable) accessor makes Spring's STOMP
+ * handler remember it for the WebSocket session and put it on every later frame of that session,
+ * so SUBSCRIBE and SEND frames arrive with their user already set. Those frames only take the
+ * fast path: two header lookups, no accessor wrapping and no allocation. A frame that still has
+ * no user (the handshake didn't authenticate) is logged like before.
+ */
+public class PrincipalBindingInterceptor implements ChannelInterceptor {
+
+    static final String PRINCIPAL_ATTRIBUTE = "principal";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+
+        // 🟢 Fast path: edits, chat, subscriptions of an authenticated session
+        if (type != SimpMessageType.CONNECT) {
+            if (SimpMessageHeaderAccessor.getUser(headers) == null
+                    && (type == SimpMessageType.MESSAGE || type == SimpMessageType.SUBSCRIBE)) {
+                String dest = SimpMessageHeaderAccessor.getDestination(headers);
+                Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+                System.err.println("❌ STOMP " + type + ": No principal bound for destination: " + (dest != null ? dest : "unknown"));
+                System.err.println("   Available session attributes: " + (attributes != null ? attributes.keySet() : "none"));
+            }
+            return message;
+        }
+
+        // 🔴 ON CONNECT: Extract principal from session attributes (set by JwtHandshakeInterceptor)
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        Principal principal = attributes != null ? (Principal) attributes.get(PRINCIPAL_ATTRIBUTE) : null;
+        if (principal != null && accessor != null && accessor.isMutable()) {
+            accessor.setUser(principal);
+            System.out.println("🟢 STOMP CONNECT authenticated for user: " + principal.getName());
+        } else if (principal == null) {
+            System.err.println("❌ STOMP CONNECT: Principal not found in session attributes");
+            System.err.println("   Available session attributes: " + (attributes != null ? attributes.keySet() : "none"));
+        } else {
+            System.err.println("❌ STOMP CONNECT: message headers are immutable, principal not bound");
+        }
+        return message;
+    }
+}
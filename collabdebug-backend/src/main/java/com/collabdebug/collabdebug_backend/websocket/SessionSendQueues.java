@@ -0,0 +1,317 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded send queue per WebSocket connection, so one stalled browser tab can't build an unbounded
+ * backlog on the outbound channel.
+ * <p>
+ * Installed as a handler decorator (WebSocketConfig), each connection's frames are queued here and
+ * written by a virtual thread of their own, so Spring's outbound channel never waits on a slow
+ * socket. When a connection's queue passes {@code send-buffer-size-limit}, its queued edit frames
+ * are dropped (counted as {@code ws.send.coalesced-frames}) and replaced by one full-snapshot sync
+ * reply ({@code ws.send.resyncs}), which the client applies like any other. If the queue is still
+ * over the limit, or one write has been stuck for longer than {@code send-time-limit-ms}, the
+ * connection is closed as not reliable ({@code ws.send.overflow-disconnects}); its remaining frames
+ * are counted as {@code ws.send.dropped-frames}. The frame being written is not part of the queue:
+ * a single frame larger than the limit (a big snapshot) still goes out on an idle connection, and
+ * only the frames waiting behind it count. Queue sizes are exposed as
+ * {@code ws.send.queued-bytes} (total) and {@code ws.send.queued-bytes.max} (deepest connection).
+ */
+@Component
+public class SessionSendQueues implements WebSocketHandlerDecoratorFactory {
+
+    private static final String EDITS_PREFIX = "/topic/session/";
+    private static final String EDITS_SUFFIX = "/edits";
+    private static final String SYNC_DESTINATION = "/user/queue/sync";
+    private static final int MAX_HEADER_SCAN = 512;
+
+    private final CollabMetrics metrics;
+    private final ObjectProvider<SessionService> sessionService;
+    private final int sendBufferSizeLimit;
+    private final long sendTimeLimitMs;
+    private final int messageSizeLimit;
+    private final Map<String, SendQueue> queues = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog;
+
+    @Autowired
+    public SessionSendQueues(CollabMetrics metrics,
+                             ObjectProvider<SessionService> sessionService,
+                             @Value("${collab.ws.send-buffer-size-limit:524288}") int sendBufferSizeLimit,
+                             @Value("${collab.ws.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                             @Value("${collab.ws.message-size-limit:524288}") int messageSizeLimit) {
+        this.metrics = metrics;
+        this.sessionService = sessionService;
+        this.sendBufferSizeLimit = sendBufferSizeLimit;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.messageSizeLimit = messageSizeLimit;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ws-send-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(10, sendTimeLimitMs / 4);
+        watchdog.scheduleAtFixedRate(this::checkStalledWrites, period, period, TimeUnit.MILLISECONDS);
+        metrics.gauge("ws.send.sessions", queues::size);
+        metrics.gauge("ws.send.queued-bytes", () -> queues.values().stream().mapToLong(q -> q.queuedBytes).sum());
+        metrics.gauge("ws.send.queued-bytes.max", () -> queues.values().stream().mapToLong(q -> q.queuedBytes).max().orElse(0));
+        System.out.println("[SessionSendQueues] ✅ Send queues capped at " + sendBufferSizeLimit + " bytes, writes at " + sendTimeLimitMs + " ms");
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                // Inbound frames up to the configured size (large pastes) instead of the container's default
+                session.setTextMessageSizeLimit(messageSizeLimit);
+                session.setBinaryMessageSizeLimit(messageSizeLimit);
+                SendQueue queue = new SendQueue(session);
+                queues.put(session.getId(), queue);
+                super.afterConnectionEstablished(queue);
+            }
+
+            @Override
+            public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+                super.handleMessage(queueOf(session), message);
+            }
+
+            @Override
+            public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+                super.handleTransportError(queueOf(session), exception);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                SendQueue queue = queues.remove(session.getId());
+                if (queue != null) queue.discard();
+                super.afterConnectionClosed(queue != null ? queue : session, closeStatus);
+            }
+        };
+    }
+
+    private WebSocketSession queueOf(WebSocketSession session) {
+        SendQueue queue = queues.get(session.getId());
+        return queue != null ? queue : session;
+    }
+
+    private void checkStalledWrites() {
+        long now = System.nanoTime();
+        for (SendQueue queue : queues.values()) {
+            long started = queue.writeStartedNanos;
+            if (started != 0 && now - started > TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs)) {
+                queue.closeUnreliable("write blocked for more than " + sendTimeLimitMs + " ms");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+    }
+
+    /** STOMP destination of an outgoing MESSAGE frame, or null for other frames. */
+    static String destinationOf(WebSocketMessage<?> message) {
+        String head;
+        if (message instanceof TextMessage text) {
+            String payload = text.getPayload();
+            head = payload.substring(0, Math.min(payload.length(), MAX_HEADER_SCAN));
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            byte[] bytes = new byte[Math.min(payload.remaining(), MAX_HEADER_SCAN)];
+            payload.get(bytes);
+            head = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            return null;
+        }
+        if (!head.startsWith("MESSAGE\n")) return null;
+        int headersEnd = head.indexOf("\n\n");
+        int start = head.indexOf("\ndestination:");
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) return null;
+        start += "\ndestination:".length();
+        int end = head.indexOf('\n', start);
+        return end < 0 ? null : head.substring(start, end);
+    }
+
+    private static String editsSessionOf(String destination) {
+        if (destination == null || !destination.startsWith(EDITS_PREFIX) || !destination.endsWith(EDITS_SUFFIX)) return null;
+        return destination.substring(EDITS_PREFIX.length(), destination.length() - EDITS_SUFFIX.length());
+    }
+
+    private final class SendQueue extends WebSocketSessionDecorator {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<WebSocketMessage<?>> frames = new ArrayDeque<>();
+        private final Set<String> resyncing = new HashSet<>(); // resync requested, snapshot not queued yet
+        private volatile long queuedBytes;
+        private volatile long writeStartedNanos; // 0 while no write is in progress
+        private boolean draining;
+        private boolean closed;
+
+        SendQueue(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) {
+            Set<String> resync = Set.of();
+            boolean overflow = false;
+            lock.lock();
+            try {
+                if (closed) {
+                    metrics.increment("ws.send.dropped-frames");
+                    return;
+                }
+                // Snapshot queued: edits dropped after this point need a new one
+                if (!resyncing.isEmpty() && SYNC_DESTINATION.equals(destinationOf(message))) resyncing.clear();
+                if (!draining) {
+                    // Nothing queued or in flight: the frame is written right away and never counts
+                    draining = true;
+                    Thread.ofVirtual().name("ws-send-" + getId()).start(() -> drain(message));
+                    return;
+                }
+                frames.addLast(message);
+                queuedBytes += message.getPayloadLength();
+                if (queuedBytes > sendBufferSizeLimit) {
+                    resync = coalesceEdits();
+                    overflow = queuedBytes > sendBufferSizeLimit;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (overflow) {
+                closeUnreliable("send buffer over " + sendBufferSizeLimit + " bytes");
+                return;
+            }
+            for (String sid : resync) requestResync(sid);
+        }
+
+        // Drops queued edit frames; returns the collab sessions that now need a snapshot
+        private Set<String> coalesceEdits() {
+            Set<String> sids = new LinkedHashSet<>();
+            int removed = 0;
+            for (Iterator<WebSocketMessage<?>> it = frames.iterator(); it.hasNext(); ) {
+                WebSocketMessage<?> frame = it.next();
+                String sid = editsSessionOf(destinationOf(frame));
+                if (sid == null) continue;
+                it.remove();
+                queuedBytes -= frame.getPayloadLength();
+                removed++;
+                if (resyncing.add(sid)) sids.add(sid);
+            }
+            if (removed > 0) metrics.add("ws.send.coalesced-frames", removed);
+            return sids;
+        }
+
+        private void requestResync(String sid) {
+            // The user bound at STOMP CONNECT, which is who /user destinations resolve against
+            Principal principal = (Principal) getAttributes().get(PrincipalBindingInterceptor.PRINCIPAL_ATTRIBUTE);
+            if (principal == null) principal = getPrincipal();
+            if (principal == null) {
+                closeUnreliable("edits dropped and no user to resync");
+                return;
+            }
+            String userId = principal.getName();
+            metrics.increment("ws.send.resyncs");
+            System.out.println("[SessionSendQueues] ⚠️ Slow consumer " + getId() + ": stale edits of session " + sid + " replaced by a snapshot");
+            // Off the outbound channel thread: the snapshot goes back through the broker to this queue
+            Thread.ofVirtual().name("ws-resync-" + getId()).start(() -> {
+                try {
+                    sessionService.getObject().resyncConnection(sid, userId, getId());
+                } catch (Exception e) {
+                    System.err.println("[SessionSendQueues] ❌ Resync of " + getId() + " for session " + sid + " failed: " + e.getMessage());
+                    lock.lock();
+                    try {
+                        resyncing.remove(sid);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+        }
+
+        // Writes frames until the queue is empty; a frame leaves the queue (and its byte count) before it is written
+        private void drain(WebSocketMessage<?> first) {
+            WebSocketMessage<?> next = first;
+            while (true) {
+                writeStartedNanos = System.nanoTime();
+                try {
+                    getDelegate().sendMessage(next);
+                } catch (IOException | RuntimeException e) {
+                    writeStartedNanos = 0;
+                    closeUnreliable("send failed: " + e.getMessage());
+                    return;
+                }
+                writeStartedNanos = 0;
+                lock.lock();
+                try {
+                    next = closed ? null : frames.pollFirst();
+                    if (next == null) {
+                        draining = false;
+                        return;
+                    }
+                    queuedBytes -= next.getPayloadLength();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        void closeUnreliable(String reason) {
+            if (!discard()) return;
+            metrics.increment("ws.send.overflow-disconnects");
+            System.err.println("[SessionSendQueues] ❌ Closing slow consumer " + getId() + ": " + reason);
+            try {
+                getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+
+        /** Drops what is still queued; false if the queue was already closed. */
+        boolean discard() {
+            lock.lock();
+            try {
+                if (closed) return false;
+                closed = true;
+                if (!frames.isEmpty()) metrics.add("ws.send.dropped-frames", frames.size());
+                frames.clear();
+                queuedBytes = 0;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
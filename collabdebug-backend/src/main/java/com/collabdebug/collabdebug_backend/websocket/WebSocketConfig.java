@@ -1,20 +1,27 @@
 package com.collabdebug.collabdebug_backend.websocket;
 
+import com.collabdebug.collabdebug_backend.dto.ws.CrdtOp;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditResponse;
+import com.collabdebug.collabdebug_backend.dto.ws.SyncResponse;
 import com.collabdebug.collabdebug_backend.security.JwtHandshakeInterceptor;
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.messaging.Message;
-import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
 import org.springframework.messaging.simp.config.ChannelRegistration; // <-- Needed import
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.messaging.simp.stomp.StompCommand;         // <-- Needed import
-import org.springframework.messaging.simp.stomp.StompHeaderAccessor;   // <-- Needed import
-import org.springframework.messaging.support.ChannelInterceptor;       // <-- Needed import
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.util.StringUtils;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
-import java.security.Principal; // <-- Needed import
+import java.util.List;
+import java.util.Set;
 
 @Configuration
 @EnableWebSocketMessageBroker
@@ -23,65 +30,119 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Autowired
     private JwtHandshakeInterceptor jwtHandshakeInterceptor;
 
+    @Autowired
+    private CollabMetrics metrics;
+
+    @Autowired
+    private SessionSendQueues sendQueues;
+
+    // "simple": in-memory broker per node, events reach other nodes through Redis.
+    // "relay": all nodes share an external STOMP broker (subscriptions live there), see configureMessageBroker.
+    @Value("${collab.stomp.broker:simple}")
+    private String brokerMode = "simple";
+    @Value("${collab.stomp.relay.host:localhost}")
+    private String relayHost = "localhost";
+    @Value("${collab.stomp.relay.port:61613}")
+    private int relayPort = 61613;
+    @Value("${collab.stomp.relay.login:guest}")
+    private String relayLogin = "guest";
+    @Value("${collab.stomp.relay.passcode:guest}")
+    private String relayPasscode = "guest";
+    @Value("${collab.stomp.relay.virtual-host:}")
+    private String relayVirtualHost = "";
+
+    // Client channel executors, see ChannelExecutor: "virtual" or "platform" (pool-size 0 = two threads per CPU)
+    @Value("${collab.stomp.inbound.executor:virtual}")
+    private String inboundExecutor = "virtual";
+    @Value("${collab.stomp.inbound.pool-size:0}")
+    private int inboundPoolSize = 0;
+    @Value("${collab.stomp.outbound.executor:virtual}")
+    private String outboundExecutor = "virtual";
+    @Value("${collab.stomp.outbound.pool-size:0}")
+    private int outboundPoolSize = 0;
+
+    // Native (non-SockJS) endpoint: permessage-deflate, and edit/sync payloads as binary frames
+    @Value("${collab.ws.native.deflate:true}")
+    private boolean nativeDeflate = true;
+    @Value("${collab.ws.binary-frames:true}")
+    private boolean binaryFrames = true;
+
+    // Transport limits; SessionSendQueues applies the same values to its per-connection queues
+    @Value("${collab.ws.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs = 10_000;
+    @Value("${collab.ws.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit = 512 * 1024;
+    @Value("${collab.ws.message-size-limit:524288}")
+    private int messageSizeLimit = 512 * 1024;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.setApplicationDestinationPrefixes("/app");
-        config.enableSimpleBroker("/topic", "/queue");
+        // Frames to one WebSocket session leave in publish order even though the outbound
+        // channel hands messages to many threads
+        config.setPreservePublishOrder(true);
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // /topic and /queue frames go to the external broker, which delivers them to the
+            // subscribers of every node; session events are then no longer relayed through Redis
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode);
+            if (StringUtils.hasText(relayVirtualHost)) relay.setVirtualHost(relayVirtualHost);
+            System.out.println("[WebSocketConfig] ✅ STOMP broker relay to " + relayHost + ":" + relayPort);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        // Plain WebSocket for browsers that have it: no SockJS framing, compressed, binary edit frames
+        registry.addEndpoint("/ws/session-native")
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setHandshakeHandler(new DeflateHandshakeHandler(nativeDeflate, metrics))
+                .setAllowedOriginPatterns("*");
+        // SockJS fallback
         registry.addEndpoint("/ws/session")
                 .addInterceptors(jwtHandshakeInterceptor) // This runs for HTTP Handshake
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // A session's frames are handled one after another (edits stay in order), while a handler
+        // blocked on the database only holds up its own session
+        registry.setPreserveReceiveOrder(true);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit) // inbound STOMP frames, e.g. a large paste
+                // Slow consumers: bounded queue per connection, stale edits replaced by a snapshot
+                .addDecoratorFactory(sendQueues);
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        if (binaryFrames) {
+            // Large, frequent payloads (edit batches, snapshots and resyncs) as binary frames on the native endpoint
+            messageConverters.add(new BinaryFrameMessageConverter(Set.of(
+                    EditBatch.class, EditMessage.class, CrdtOp.class, EditResponse.class, SyncResponse.class)));
+        }
+        return true; // keep Spring's default converters after ours
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(new ChannelExecutor("outbound", outboundExecutor, outboundPoolSize, metrics));
     }
 
-    // 🚨 CRITICAL FIX: Use principal from HTTP handshake (JwtHandshakeInterceptor)
+    // 🚨 CRITICAL FIX: Use principal from HTTP handshake (JwtHandshakeInterceptor), bound once at CONNECT
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new ChannelInterceptor() {
-            @Override
-            public Message<?> preSend(Message<?> message, MessageChannel channel) {
-                StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
-                StompCommand command = accessor.getCommand();
-
-                // 🔴 ON CONNECT: Extract principal from session attributes (set by JwtHandshakeInterceptor)
-                if (StompCommand.CONNECT.equals(command)) {
-                    // The principal was set by JwtHandshakeInterceptor in HTTP handshake attributes
-                    Principal principal = (Principal) accessor.getSessionAttributes().get("principal");
-                    
-                    if (principal != null) {
-                        // Store principal on the message so EventListener can access it
-                        accessor.setUser(principal);
-                        System.out.println("🟢 STOMP CONNECT authenticated for user: " + principal.getName());
-                    } else {
-                        // Debug: print all session attributes
-                        System.err.println("❌ STOMP CONNECT: Principal not found in session attributes");
-                        System.err.println("   Available session attributes: " + accessor.getSessionAttributes().keySet());
-                    }
-                }
-                // 🟢 ON SUBSCRIBE/SEND: Principal should already be in session attributes from HTTP handshake
-                else if (StompCommand.SUBSCRIBE.equals(command) || StompCommand.SEND.equals(command)) {
-                    Principal principal = (Principal) accessor.getSessionAttributes().get("principal");
-                    
-                    if (principal != null) {
-                        accessor.setUser(principal);
-                        
-                        if (StompCommand.SUBSCRIBE.equals(command)) {
-                            String dest = accessor.getDestination();
-                            System.out.println("🟢 STOMP SUBSCRIBE authenticated for user: " + principal.getName() + " to: " + dest);
-                        }
-                    } else {
-                        String dest = accessor.getDestination() != null ? accessor.getDestination() : "unknown";
-                        System.err.println("❌ STOMP " + command + ": No principal in session attributes for destination: " + dest);
-                        System.err.println("   Available session attributes: " + accessor.getSessionAttributes().keySet());
-                    }
-                }
-                
-                return message;
-            }
-        });
+        registration.executor(new ChannelExecutor("inbound", inboundExecutor, inboundPoolSize, metrics));
+        registration.interceptors(new PrincipalBindingInterceptor());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,175 @@
+package com.collabdebug.collabdebug_backend.document;
+
+import com.collabdebug.collabdebug_backend.dto.ws.CrdtOp;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RgaDocumentTest {
+
+    @Test
+    void concurrentInsertsAtSamePositionConverge() {
+        RgaDocument a = new RgaDocument("node-a");
+        RgaDocument b = new RgaDocument("node-b");
+        a.replace(0, 0, "hello");
+        b.applyRemote(a.drainLocalOps());
+
+        a.replace(5, 5, " alice");
+        b.replace(5, 5, " bob");
+        List<CrdtOp> fromA = a.drainLocalOps();
+        List<CrdtOp> fromB = b.drainLocalOps();
+        a.applyRemote(fromB);
+        b.applyRemote(fromA);
+
+        assertEquals(a.getText(), b.getText());
+    }
+
+    @Test
+    void randomConcurrentEditsConvergeAndEffectsTrackText() {
+        Random random = new Random(1234);
+        List<RgaDocument> replicas = List.of(new RgaDocument("a"), new RgaDocument("b"), new RgaDocument("c"));
+        List<StringBuilder> clientViews = List.of(new StringBuilder(), new StringBuilder(), new StringBuilder());
+
+        for (int round = 0; round < 200; round++) {
+            // Each replica edits locally without seeing the others' edits of this round
+            List<List<CrdtOp>> produced = new ArrayList<>();
+            for (int r = 0; r < replicas.size(); r++) {
+                RgaDocument doc = replicas.get(r);
+                int start = random.nextInt(doc.length() + 1);
+                int end = Math.min(doc.length(), start + random.nextInt(4));
+                String text = random.nextBoolean() ? "" : "xyz".substring(random.nextInt(3));
+                doc.replace(start, end, text);
+                clientViews.get(r).replace(start, end, text);
+                produced.add(doc.drainLocalOps());
+            }
+            // Deliver the others' ops in a random order; effects must keep the client view in sync
+            for (int r = 0; r < replicas.size(); r++) {
+                List<Integer> order = new ArrayList<>(List.of(0, 1, 2));
+                Collections.shuffle(order, random);
+                for (int from : order) {
+                    if (from == r) continue;
+                    for (TextOperation effect : replicas.get(r).applyRemote(produced.get(from))) {
+                        clientViews.get(r).replace(effect.getStart(), effect.getEnd(), effect.getText());
+                    }
+                }
+                assertEquals(replicas.get(r).getText(), clientViews.get(r).toString());
+            }
+            assertEquals(replicas.get(0).getText(), replicas.get(1).getText());
+            assertEquals(replicas.get(1).getText(), replicas.get(2).getText());
+        }
+    }
+
+    @Test
+    void lateReplicaCatchesUpFromExportedState() {
+        RgaDocument a = new RgaDocument("a");
+        a.replace(0, 0, "public class Main {}");
+        a.replace(7, 13, "");
+        a.replace(0, 0, "// x\n");
+        a.drainLocalOps();
+
+        RgaDocument late = new RgaDocument("late");
+        late.applyRemote(a.exportState());
+        assertEquals(a.getText(), late.getText());
+
+        // Both keep editing and still converge; re-applying the state is a no-op
+        a.replace(a.length(), a.length(), "\n");
+        late.replace(0, 0, "package demo;\n");
+        late.applyRemote(a.drainLocalOps());
+        a.applyRemote(late.drainLocalOps());
+        late.applyRemote(a.exportState());
+        assertEquals(a.getText(), late.getText());
+    }
+
+    @Test
+    void replicasSeededFromTheSameTextMergeEachOthersEdits() {
+        RgaDocument a = new RgaDocument("a", "int x = 1;");
+        RgaDocument b = new RgaDocument("b", "int x = 1;");
+        a.replace(8, 9, "2");
+        b.replace(0, 0, "final ");
+        b.applyRemote(a.drainLocalOps());
+        a.applyRemote(b.drainLocalOps());
+
+        assertEquals("final int x = 2;", a.getText());
+        assertEquals(a.getText(), b.getText());
+    }
+
+    @Test
+    void pendingBufferIsCappedAndReportsLostState() {
+        RgaDocument doc = new RgaDocument("a");
+        List<CrdtOp> orphans = new ArrayList<>();
+        for (int i = 0; i <= RgaDocument.MAX_PENDING; i++) {
+            CrdtOp op = new CrdtOp();
+            op.counter = 1_000 + i;
+            op.site = "b";
+            op.originCounter = 1;   // never arrives
+            op.originSite = "c";
+            op.text = "x";
+            orphans.add(op);
+        }
+        doc.applyRemote(orphans);
+
+        assertTrue(doc.pollStateLost());
+        assertFalse(doc.pollStateLost());
+        assertNull(doc.exportAck(), "nothing is acknowledged while ops are buffered");
+    }
+
+    @Test
+    void tombstonesAreCollectedOnceEveryPeerAcknowledged() {
+        RgaDocument a = new RgaDocument("a");
+        RgaDocument b = new RgaDocument("b");
+        a.tombstoneMinAgeMs = 0;
+        a.replace(0, 0, "hello world");
+        b.applyRemote(a.drainLocalOps());
+        a.notePeer("b");
+        a.notePeer("c");
+
+        a.replace(0, 6, "");
+        assertEquals(0, a.applyAck("b", b.exportAck()), "b has not seen the delete yet");
+        b.applyRemote(a.drainLocalOps());
+        assertEquals(0, a.applyAck("b", b.exportAck()), "c has not acknowledged it");
+
+        a.peerTimeoutMs = -1; // c went away
+        assertEquals(6, a.applyAck("b", b.exportAck()));
+        assertEquals(5, a.elementCount());
+
+        // Both keep editing around the collected elements and still converge
+        b.replace(0, 0, ">");
+        a.replace(5, 5, "!");
+        a.applyRemote(b.drainLocalOps());
+        b.applyRemote(a.drainLocalOps());
+        assertEquals(">world!", a.getText());
+        assertEquals(a.getText(), b.getText());
+    }
+
+    @Test
+    void randomEditsOnLargeSeededDocumentMatchStringBuilder() {
+        Random random = new Random(99);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) text.append((char) ('a' + random.nextInt(26)));
+        RgaDocument a = new RgaDocument("a", text.toString());
+        RgaDocument b = new RgaDocument("b", text.toString());
+        a.tombstoneMinAgeMs = 0;
+        a.notePeer("b");
+
+        for (int i = 0; i < 5_000; i++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(5));
+            String insert = random.nextBoolean() ? "" : "xyz".substring(random.nextInt(3));
+            a.replace(start, end, insert);
+            text.replace(start, end, insert);
+            b.applyRemote(a.drainLocalOps());
+            if (i % 100 == 0) a.applyAck("b", b.exportAck());
+        }
+        assertEquals(text.toString(), a.getText());
+        assertEquals(text.toString(), b.getText());
+        assertTrue(a.elementCount() < b.elementCount(), "a collected the tombstones b acknowledged");
+    }
+}
@@ -0,0 +1,77 @@
+package com.collabdebug.collabdebug_backend.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RopeDocumentTest {
+
+    @Test
+    void randomEditsMatchStringBuilder() {
+        Random random = new Random(42);
+        RopeDocument rope = new RopeDocument(randomText(random, 5_000));
+        StringBuilder expected = new StringBuilder(rope.getText());
+
+        for (int i = 0; i < 5_000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + random.nextInt(20));
+            String text = random.nextInt(3) == 0 ? "" : randomText(random, random.nextInt(RopeDocument.MAX_LEAF * 3));
+            rope.replace(start, end, text);
+            expected.replace(start, end, text);
+            assertEquals(expected.length(), rope.length());
+        }
+        assertEquals(expected.toString(), rope.getText());
+    }
+
+    @Test
+    void commonPrefixAndSuffixSpanLeaves() {
+        Random random = new Random(7);
+        String text = randomText(random, RopeDocument.MAX_LEAF * 6);
+        RopeDocument rope = new RopeDocument(text);
+        String edited = text.substring(0, 1500) + "XYZ" + text.substring(1600);
+
+        assertEquals(1500, rope.commonPrefixLength(edited));
+        assertEquals(text.length() - 1600, rope.commonSuffixLength(edited, text.length()));
+        assertEquals(10, rope.commonSuffixLength(edited, 10));
+        assertEquals(text.length(), rope.commonPrefixLength(text + "tail"));
+    }
+
+    @Test
+    void snapshotIsUnaffectedByLaterEdits() {
+        RopeDocument rope = new RopeDocument("hello world");
+        Document snapshot = rope.snapshot();
+        rope.replace(0, 5, "goodbye");
+        assertEquals("hello world", snapshot.getText());
+        assertEquals("goodbye world", rope.getText());
+    }
+
+    /** Single-character inserts at random positions of 10 KB, 100 KB and 1 MB documents. */
+    @Test
+    void insertsIntoLargeDocumentsMatchString() {
+        int edits = 2_000;
+
+        for (int size : new int[]{10 * 1024, 100 * 1024, 1024 * 1024}) {
+            Random random = new Random(size);
+            String base = randomText(random, size);
+            String string = base;
+            RopeDocument rope = new RopeDocument(base);
+            for (int i = 0; i < edits; i++) {
+                int pos = random.nextInt(size);
+                string = string.substring(0, pos) + "x" + string.substring(pos);
+                rope.replace(pos, pos, "x");
+            }
+            assertEquals(string.length(), rope.length());
+            assertEquals(string, rope.getText());
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(random.nextInt(20) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,154 @@
+package com.collabdebug.collabdebug_backend.document;
+
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TextOperationTest {
+
+    /** Applies a, then b transformed against a, and checks the result. */
+    private static void assertConverges(String base, TextOperation a, TextOperation b, String expected) {
+        Document doc = new RopeDocument(base);
+        a.applyTo(doc);
+        b.transformAgainst(a).applyTo(doc);
+        assertEquals(expected, doc.getText());
+    }
+
+    @Test
+    void insertBeforeShiftsLaterInsert() {
+        TextOperation a = new TextOperation(0, 0, "XX");
+        TextOperation b = new TextOperation(3, 3, "!");
+        assertConverges("hello", a, b, "XXhel!lo");
+    }
+
+    @Test
+    void concurrentInsertsAtSameOffsetKeepServerOrder() {
+        TextOperation a = new TextOperation(2, 2, "A");
+        TextOperation b = new TextOperation(2, 2, "B");
+        assertConverges("hello", a, b, "heABllo");
+    }
+
+    @Test
+    void deleteOverlappingEarlierDeleteOnlyRemovesWhatIsLeft() {
+        TextOperation a = new TextOperation(1, 4, "");   // "hello" -> "ho"
+        TextOperation b = new TextOperation(2, 5, "");   // would remove "llo"
+        assertConverges("hello", a, b, "h");
+    }
+
+    @Test
+    void deleteEndingInsideEarlierReplacementKeepsInsertedText() {
+        TextOperation a = new TextOperation(1, 3, "ZZ"); // "hello" -> "hZZlo"
+        TextOperation b = new TextOperation(0, 2, "");   // would remove "he"
+        assertConverges("hello", a, b, "ZZlo");
+    }
+
+    @Test
+    void enclosingDeleteRemovesEarlierReplacement() {
+        TextOperation a = new TextOperation(1, 3, "ZZ"); // "hello" -> "hZZlo"
+        TextOperation b = new TextOperation(0, 4, "");   // removes "hell"
+        assertConverges("hello", a, b, "o");
+    }
+
+    @Test
+    void insertInsideDeletedRangeLandsAfterReplacement() {
+        TextOperation a = new TextOperation(1, 4, "-");  // "hello" -> "h-o"
+        TextOperation b = new TextOperation(2, 2, "+");
+        assertConverges("hello", a, b, "h-+o");
+    }
+
+    @Test
+    void diffProducesMinimalSingleRangeDelta() {
+        Document doc = new RopeDocument("int a = 1;\nint b = 2;\n");
+        TextOperation op = TextOperation.diff(doc, "int a = 1;\nint bc = 2;\n");
+        assertEquals(16, op.getStart());
+        assertEquals(16, op.getEnd());
+        assertEquals("c", op.getText());
+
+        op = TextOperation.diff(doc, "aaaa");
+        op.applyTo(doc);
+        assertEquals("aaaa", doc.getText());
+
+        // Repeated characters: prefix and suffix must not overlap
+        doc = new RopeDocument("aaa");
+        op = TextOperation.diff(doc, "aaaa");
+        assertEquals("a", op.getText());
+        op.applyTo(doc);
+        assertEquals("aaaa", doc.getText());
+    }
+
+    @Test
+    void composeMergesTypingAndDeletingRuns() {
+        String base = "hello world";
+        TextOperation[][] runs = {
+                {new TextOperation(5, 5, ","), new TextOperation(6, 6, "!")},        // typing
+                {new TextOperation(4, 5, ""), new TextOperation(3, 4, "")},          // backspace
+                {new TextOperation(5, 6, ""), new TextOperation(5, 6, "")},          // forward delete
+                {new TextOperation(0, 5, "hi"), new TextOperation(1, 2, "ey there")}, // retype inside a replacement
+        };
+        for (TextOperation[] run : runs) {
+            Document sequential = new RopeDocument(base);
+            run[0].applyTo(sequential);
+            run[1].applyTo(sequential);
+            Document composed = new RopeDocument(base);
+            run[0].composeWith(run[1]).applyTo(composed);
+            assertEquals(sequential.getText(), composed.getText());
+        }
+
+        // Ops that do not touch cannot be composed into one range
+        assertNull(new TextOperation(0, 0, "a").composeWith(new TextOperation(5, 5, "b")));
+    }
+
+    /** One keystroke in a 5,000-line file is broadcast as a one-character delta, not the whole file. */
+    @Test
+    void fullTextEditIsBroadcastAsDelta() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) sb.append("    System.out.println(\"line ").append(i).append("\");\n");
+        String before = sb.toString();
+        String after = before.substring(0, 1000) + "x" + before.substring(1000);
+
+        EditMessage full = new EditMessage();
+        full.sessionId = "6a1f463f-ef51-416c-944f-f80000000000";
+        full.userId = "alice";
+        full.op = new EditOperation();
+        full.op.text = after;
+
+        EditMessage delta = mapper.readValue(mapper.writeValueAsBytes(full), EditMessage.class);
+        TextOperation.diff(new RopeDocument(before), after).copyTo(delta.op);
+
+        assertEquals("1000", delta.op.rangeStart);
+        assertEquals("1000", delta.op.rangeEnd);
+        assertEquals("x", delta.op.text);
+        Document applied = new RopeDocument(before);
+        TextOperation.fromEdit(delta.op).applyTo(applied);
+        assertEquals(after, applied.getText());
+    }
+
+    @Test
+    void historyReturnsOpsSinceVersionUntilTheyAreEvicted() {
+        OperationHistory history = new OperationHistory(2, 10);
+        TextOperation op1 = new TextOperation(0, 0, "a");
+        TextOperation op2 = new TextOperation(1, 1, "b");
+        TextOperation op3 = new TextOperation(2, 2, "c");
+        history.record(op1);
+        history.record(op2);
+        assertEquals(List.of(op1, op2), history.since(10));
+        assertEquals(List.of(op2), history.since(11));
+        assertEquals(List.of(), history.since(12));
+        assertNull(history.since(13));
+
+        history.record(op3);
+        assertNull(history.since(10));
+        assertEquals(List.of(op2, op3), history.since(11));
+
+        history.reset(20);
+        assertNull(history.since(12));
+        assertEquals(List.of(), history.since(20));
+    }
+}
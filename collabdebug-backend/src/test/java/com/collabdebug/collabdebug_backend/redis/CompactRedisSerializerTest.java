@@ -0,0 +1,138 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.SessionSnapshot;
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.CrdtOp;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactRedisSerializerTest {
+
+    private static final String SESSION = "6a1f463f-ef51-416c-944f-f80000000000";
+
+    private final CompactRedisSerializer compact = new CompactRedisSerializer();
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+
+    @Test
+    void roundTripsEveryPayloadType() {
+        EditMessage edit = edit(7, "x");
+        edit.originNode = "node-a";
+        CrdtOp op = new CrdtOp();
+        op.counter = 42;
+        op.site = "node-a";
+        op.originCounter = -1;
+        op.text = "é漢😀";
+        edit.crdt = List.of(op);
+
+        EditMessage decoded = (EditMessage) compact.deserialize(compact.serialize(edit));
+        assertEquals(SESSION, decoded.sessionId);
+        assertEquals(7, decoded.serverVersion);
+        assertEquals(6, decoded.baseVersion);
+        assertEquals("node-a", decoded.originNode);
+        assertEquals("3", decoded.op.rangeStart);
+        assertTrue(decoded.op.isInsert);
+        assertEquals(42, decoded.crdt.get(0).counter);
+        assertEquals(-1, decoded.crdt.get(0).originCounter);
+        assertEquals("é漢😀", decoded.crdt.get(0).text);
+        assertNull(decoded.crdt.get(0).originSite);
+
+        EditBatch batch = batch(3);
+        EditBatch decodedBatch = (EditBatch) compact.deserialize(compact.serialize(batch));
+        assertEquals(3, decodedBatch.edits.size());
+        assertEquals("edit-batch", decodedBatch.type);
+        assertNull(decodedBatch.edits.get(2).crdt);
+
+        ChatMessage chat = new ChatMessage();
+        chat.type = "chat";
+        chat.sessionId = SESSION;
+        chat.text = "does the loop terminate?";
+        assertEquals(chat.text, ((ChatMessage) compact.deserialize(compact.serialize(chat))).text);
+
+        assertEquals("$ ./run\n", compact.deserialize(compact.serialize("$ ./run\n")));
+
+        Map<String, Object> presence = new LinkedHashMap<>();
+        presence.put("type", "joined");
+        presence.put("userId", "alice");
+        presence.put("timestamp", 1_700_000_000_000L);
+        presence.put("count", 3);
+        presence.put("active", true);
+        presence.put("note", null);
+        assertEquals(presence, compact.deserialize(compact.serialize(presence)));
+
+        // Anything else is carried as embedded JSON
+        SessionSnapshot snapshot = new SessionSnapshot();
+        snapshot.sessionId = SESSION;
+        snapshot.version = 12;
+        snapshot.text = "int main() {}";
+        SessionSnapshot decodedSnapshot = (SessionSnapshot) compact.deserialize(compact.serialize(snapshot));
+        assertEquals(12, decodedSnapshot.version);
+        assertEquals("int main() {}", decodedSnapshot.text);
+    }
+
+    @Test
+    void readsJsonAndRejectsUnknownSchemaVersions() {
+        ChatMessage chat = new ChatMessage();
+        chat.text = "written by a JSON node";
+        assertEquals(chat.text, ((ChatMessage) compact.deserialize(json.serialize(chat))).text);
+        assertEquals("plain", compact.deserialize(json.serialize("plain")));
+
+        byte[] future = compact.serialize("x");
+        future[0] = CompactRedisSerializer.SCHEMA_VERSION + 1;
+        assertThrows(SerializationException.class, () -> compact.deserialize(future));
+    }
+
+    /** Payload size for a typical edit micro-batch and a presence event, binary vs. the JSON codec. */
+    @Test
+    void smallerThanJson() {
+        Map<String, Object> presence = new LinkedHashMap<>(Map.of("type", "joined", "userId", "alice", "timestamp", 1_700_000_000_000L));
+        for (Object payload : new Object[] { batch(8), edit(1, "a"), presence }) {
+            assertTrue(compact.serialize(payload).length < json.serialize(payload).length,
+                    payload.getClass().getSimpleName() + " should be smaller than JSON");
+        }
+        // Edits dominate the traffic and carry the most per-field overhead in JSON
+        assertTrue(compact.serialize(batch(8)).length * 3 < json.serialize(batch(8)).length);
+    }
+
+    private static EditBatch batch(int size) {
+        EditBatch batch = new EditBatch();
+        batch.type = "edit-batch";
+        batch.sessionId = SESSION;
+        batch.edits = new ArrayList<>();
+        for (int i = 0; i < size; i++) batch.edits.add(edit(100 + i, "k"));
+        batch.serverVersion = 100 + size - 1;
+        return batch;
+    }
+
+    private static EditMessage edit(long version, String text) {
+        EditOperation op = new EditOperation();
+        op.opId = "0b4f0a5e-1c33-4f7e-9d55-9a3a7c2e8f10";
+        op.rangeStart = "3";
+        op.rangeEnd = "3";
+        op.text = text;
+        op.isInsert = true;
+        EditMessage edit = new EditMessage();
+        edit.type = "edit";
+        edit.sessionId = SESSION;
+        edit.userId = "alice";
+        edit.clientVersion = version - 1;
+        edit.baseVersion = version - 1;
+        edit.serverVersion = version;
+        edit.timestamp = 1_700_000_000_000L;
+        edit.op = op;
+        return edit;
+    }
+}
@@ -0,0 +1,178 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EditStreamTransportTest {
+
+    private static final String SESSION = "6a1f463f-ef51-416c-944f-f80000000000";
+
+    private final FakeStream stream = new FakeStream();
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer();
+    private final List<Long> relayed = new CopyOnWriteArrayList<>();
+    private final RedisConnection connection = mock(RedisConnection.class);
+
+    @Test
+    void resumesAfterDisconnectWithoutLosingEdits() throws Exception {
+        EditStreamTransport transport = newTransport();
+        transport.start((sid, body) -> relayed.add(((EditMessage) serializer.deserialize(body)).serverVersion));
+        awaitGroup();
+
+        for (long v = 1; v <= 3; v++) transport.append(connection, SESSION, serializer.serialize(edit(v)));
+        await(() -> relayed.size() == 3);
+
+        // The node loses Redis while other nodes keep appending
+        stream.down = true;
+        for (long v = 4; v <= 600; v++) transport.append(connection, SESSION, serializer.serialize(edit(v)));
+        Thread.sleep(100);
+        stream.down = false;
+
+        await(() -> relayed.size() == 600);
+        for (int i = 0; i < 600; i++) assertEquals(i + 1, relayed.get(i), "edits relayed once, in order");
+        assertTrue(stream.largestRead > 1, "entries are read in batches");
+        assertTrue(stream.pending.isEmpty());
+        transport.shutdown();
+    }
+
+    @Test
+    void redeliversEntriesThatWereNotAcknowledged() throws Exception {
+        EditStreamTransport transport = newTransport();
+        transport.start((sid, body) -> relayed.add(((EditMessage) serializer.deserialize(body)).serverVersion));
+        awaitGroup();
+
+        // The connection drops after the batch was relayed but before XACK reached Redis
+        stream.failNextAck = true;
+        for (long v = 1; v <= 5; v++) transport.append(connection, SESSION, serializer.serialize(edit(v)));
+        await(() -> stream.pending.isEmpty() && !stream.failNextAck && relayed.size() >= 5);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), relayed.stream().distinct().toList());
+        transport.shutdown();
+    }
+
+    private EditStreamTransport newTransport() {
+        RedisStreamCommands commands = mock(RedisStreamCommands.class, inv -> stream.handle(inv.getMethod().getName(), inv.getArguments()));
+        when(connection.streamCommands()).thenReturn(commands);
+        RedisConnectionFactory factory = mock(RedisConnectionFactory.class);
+        when(factory.getConnection()).thenReturn(connection);
+
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(serializer);
+        template.afterPropertiesSet();
+        return new EditStreamTransport(template, new NodeIdentity("stream-test"), "", "stream", 10_000, 256, 20);
+    }
+
+    private void awaitGroup() throws InterruptedException {
+        await(() -> stream.groupCreated);
+    }
+
+    private static void await(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static EditMessage edit(long version) {
+        EditMessage edit = new EditMessage();
+        edit.type = "edit";
+        edit.sessionId = SESSION;
+        edit.serverVersion = version;
+        return edit;
+    }
+
+    /** One stream with a single consumer group: XADD, XREADGROUP (pending "0" and ">"), XACK. */
+    private static class FakeStream {
+        final List<ByteRecord> entries = new ArrayList<>();
+        final Map<RecordId, ByteRecord> pending = new LinkedHashMap<>();
+        volatile boolean down;
+        volatile boolean failNextAck;
+        volatile boolean groupCreated;
+        volatile int largestRead;
+        private int delivered;
+
+        synchronized Object handle(String method, Object[] args) throws InterruptedException {
+            switch (method) {
+                case "xAdd" -> {
+                    MapRecord<?, ?, ?> record = (MapRecord<?, ?, ?>) args[0];
+                    Map<byte[], byte[]> fields = new LinkedHashMap<>();
+                    record.getValue().forEach((field, value) -> fields.put((byte[]) field, (byte[]) value));
+                    RecordId id = RecordId.of((entries.size() + 1) + "-0");
+                    entries.add(StreamRecords.rawBytes(fields).withStreamKey((byte[]) record.getStream()).withId(id));
+                    notifyAll();
+                    return id;
+                }
+                case "xGroupCreate" -> {
+                    if (groupCreated) {
+                        throw new RedisSystemException("Error in execution", new IllegalStateException("BUSYGROUP Consumer Group name already exists"));
+                    }
+                    groupCreated = true;
+                    delivered = entries.size();
+                    return "OK";
+                }
+                case "xReadGroup" -> {
+                    if (down) throw new RedisConnectionFailureException("connection lost");
+                    StreamReadOptions options = (StreamReadOptions) args[1];
+                    StreamOffset<?> offset = args[2] instanceof StreamOffset<?>[] offsets ? offsets[0] : (StreamOffset<?>) args[2];
+                    int count = options.getCount().intValue();
+                    List<ByteRecord> batch = new ArrayList<>();
+                    if ("0".equals(offset.getOffset().getOffset())) {
+                        for (ByteRecord record : pending.values()) {
+                            if (batch.size() == count) break;
+                            batch.add(record);
+                        }
+                        return batch;
+                    }
+                    if (delivered == entries.size() && options.getBlock() != null) wait(options.getBlock());
+                    while (delivered < entries.size() && batch.size() < count) {
+                        ByteRecord record = entries.get(delivered++);
+                        pending.put(record.getId(), record);
+                        batch.add(record);
+                    }
+                    largestRead = Math.max(largestRead, batch.size());
+                    return batch;
+                }
+                case "xAck" -> {
+                    if (failNextAck) {
+                        failNextAck = false;
+                        throw new RedisConnectionFailureException("connection lost");
+                    }
+                    List<Object> ids = new ArrayList<>(Arrays.asList(args).subList(2, args.length));
+                    if (ids.size() == 1 && ids.get(0) instanceof RecordId[] array) ids = Arrays.asList((Object[]) array);
+                    ids.forEach(pending::remove);
+                    return (long) ids.size();
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+import com.collabdebug.collabdebug_backend.dto.ws.ForwardedReply;
+import com.collabdebug.collabdebug_backend.repository.DebugSessionRepository;
+import com.collabdebug.collabdebug_backend.service.ChatHistoryService;
+import com.collabdebug.collabdebug_backend.service.InMemoryChatHistoryService;
+import com.collabdebug.collabdebug_backend.service.InMemorySnapshotStore;
+import com.collabdebug.collabdebug_backend.service.DocumentPersistenceService;
+import com.collabdebug.collabdebug_backend.service.EditBroadcaster;
+import com.collabdebug.collabdebug_backend.service.SessionOwnershipService;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import com.collabdebug.collabdebug_backend.service.SessionSnapshotService;
+import com.collabdebug.collabdebug_backend.service.TerminalOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** The real-time pipeline on one node with the loopback transport: no Redis involved. */
+class LoopbackSessionTransportTest {
+
+    private static final String SESSION = "s1";
+
+    private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+    private final ChatHistoryService chatHistory = new InMemoryChatHistoryService(500, 60, 200);
+    private final NodeInboxListener inbox = mock(NodeInboxListener.class);
+    private final NodeIdentity node = new NodeIdentity("loopback-test");
+    private final RedisPublisher publisher = newPublisher();
+
+    @Test
+    void editsAndEventsReachLocalSubscribers() {
+        SessionService sessions = newSessionService();
+        sessions.userJoined(SESSION, "conn-1", "alice");
+
+        EditMessage edit = new EditMessage();
+        edit.sessionId = SESSION;
+        edit.userId = "alice";
+        edit.op = new EditOperation();
+        edit.op.text = "int main() {}";
+        assertTrue(sessions.applyEdit(edit).applied);
+        verify(template).convertAndSend(eq("/topic/session/" + SESSION + "/edits"),
+                argThat((Object p) -> p instanceof EditBatch b && "int main() {}".equals(b.edits.get(0).op.text)));
+
+        ChatMessage chat = new ChatMessage();
+        chat.sessionId = SESSION;
+        chat.userId = "alice";
+        chat.text = "hi";
+        assertTrue(publisher.publishChat(chat).isDone());
+        verify(template).convertAndSend("/topic/session/" + SESSION + "/chat", (Object) chat);
+
+        assertTrue(publisher.publishTerminalOutput(SESSION, "$ ").isDone());
+        verify(template).convertAndSend("/topic/session/" + SESSION + "/terminal", (Object) "$ ");
+
+        assertEquals(List.of("hi"), chatHistory.page(SESSION, null, 10).messages.stream().map(m -> m.text).toList());
+    }
+
+    @Test
+    void inboxMessagesStayInProcess() {
+        ForwardedReply reply = new ForwardedReply();
+        assertTrue(publisher.publishToNode("loopback-test", reply).isDone());
+        verify(inbox).handle(reply);
+
+        CompletableFuture<Void> elsewhere = publisher.publishToNode("other-node", reply);
+        assertTrue(elsewhere.isCompletedExceptionally());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisPublisher newPublisher() {
+        ObjectProvider<NodeInboxListener> inboxProvider = mock(ObjectProvider.class);
+        when(inboxProvider.getObject()).thenReturn(inbox);
+        LoopbackSessionTransport transport = new LoopbackSessionTransport(chatHistory, node, inboxProvider);
+
+        RedisPublisher publisher = new RedisPublisher();
+        ReflectionTestUtils.setField(publisher, "transport", transport);
+        ReflectionTestUtils.setField(publisher, "messagingTemplate", template);
+        return publisher;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SessionService newSessionService() {
+        return new SessionService(mock(DebugSessionRepository.class), template, publisher,
+                mock(DocumentPersistenceService.class), node,
+                new EditBroadcaster(template, publisher, 0, 1),
+                new SessionSnapshotService(new InMemorySnapshotStore(86_400), 60_000, 10),
+                new SessionOwnershipService(mock(StringRedisTemplate.class), node, false, 10_000, 1_000), chatHistory,
+                mock(TerminalOutputBuffer.class));
+    }
+}
@@ -0,0 +1,112 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RedisCommandPipelineTest {
+
+    private static final int PUBLISHES = 500;
+    private static final long ROUND_TRIP_MS = 1;
+    private static final int MAX_BATCH = 256;
+
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+    private volatile CountDownLatch redisBlocked = new CountDownLatch(0);
+
+    /** Synchronous mode pays one round trip per publish; async mode pipelines whatever queued up meanwhile. */
+    @Test
+    void asyncModeBatchesRoundTripsAndKeepsOrder() throws Exception {
+        RedisCommandPipeline sync = newPipeline("sync", new CollabMetrics(), 10_000);
+        for (int i = 0; i < PUBLISHES; i++) sync.submit(publishCommand(i));
+        assertEquals(PUBLISHES, roundTrips.getAndSet(0));
+        published.clear();
+
+        CollabMetrics metrics = new CollabMetrics();
+        RedisCommandPipeline async = newPipeline("async", metrics, 10_000);
+        // Redis stalls on the first round trip while the rest queue up behind it
+        redisBlocked = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < PUBLISHES; i++) futures.add(async.submit(publishCommand(i)));
+        redisBlocked.countDown();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertTrue(roundTrips.get() <= 1 + (PUBLISHES + MAX_BATCH - 1) / MAX_BATCH, "queued commands share round trips");
+        for (int i = 0; i < PUBLISHES; i++) assertEquals("ch-" + i, published.get(i), "FIFO order is preserved");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> latency = (Map<String, Object>) metrics.snapshot().get("redis.publish.latency");
+        assertEquals((long) PUBLISHES, latency.get("count"));
+        assertEquals((long) PUBLISHES, metrics.count("redis.publish.commands"));
+        async.shutdown();
+        sync.shutdown();
+    }
+
+    @Test
+    void rejectsWhenQueueStaysFull() throws Exception {
+        CollabMetrics metrics = new CollabMetrics();
+        RedisCommandPipeline pipeline = newPipeline("async", metrics, 1);
+        redisBlocked = new CountDownLatch(1);
+
+        CompletableFuture<Void> inFlight = pipeline.submit(publishCommand(0));
+        Thread.sleep(200); // drained and stuck in Redis
+        CompletableFuture<Void> queued = pipeline.submit(publishCommand(1));
+        CompletableFuture<Void> rejected = pipeline.submit(publishCommand(2));
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(1, metrics.count("redis.publish.rejected"));
+        redisBlocked.countDown();
+        inFlight.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("ch-0", "ch-1"), published);
+        pipeline.shutdown();
+    }
+
+    private static RedisCommandPipeline.Command publishCommand(int i) {
+        byte[] channel = ("ch-" + i).getBytes(StandardCharsets.UTF_8);
+        return connection -> connection.publish(channel, new byte[] {1});
+    }
+
+    private RedisCommandPipeline newPipeline(String mode, CollabMetrics metrics, int capacity) {
+        RedisConnection connection = mock(RedisConnection.class);
+        when(connection.publish(any(byte[].class), any(byte[].class))).thenAnswer(inv -> {
+            published.add(new String(inv.<byte[]>getArgument(0), StandardCharsets.UTF_8));
+            return 1L;
+        });
+        doAnswer(inv -> {
+            redisBlocked.await();
+            Thread.sleep(ROUND_TRIP_MS);
+            roundTrips.incrementAndGet();
+            return List.of();
+        }).when(connection).closePipeline();
+        RedisConnectionFactory factory = mock(RedisConnectionFactory.class);
+        when(factory.getConnection()).thenReturn(connection);
+
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(new CompactRedisSerializer());
+        template.afterPropertiesSet();
+        return new RedisCommandPipeline(template, metrics, mode, capacity, MAX_BATCH, 100);
+    }
+}
@@ -0,0 +1,116 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class RedisRelayDispatcherTest {
+
+    private static final String SESSION = "6a1f463f-ef51-416c-944f-f80000000000";
+
+    private final GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+    private final CollabMetrics metrics = new CollabMetrics();
+
+    @Test
+    void routesEachChannelPrefixToItsTopic() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        RedisRelayDispatcher dispatcher = newDispatcher(template);
+        String topic = "/topic/session/" + SESSION;
+
+        dispatcher.onMessage(message("session-presence:", Map.of("type", "joined", "userId", "alice")), null);
+        verify(template).convertAndSend(topic + "/presence", (Object) Map.of("type", "joined", "userId", "alice"));
+
+        dispatcher.onMessage(message("session-terminal:", "hello\n"), null);
+        verify(template).convertAndSend(topic + "/terminal", (Object) "hello\n");
+
+        dispatcher.onMessage(message("session-chat:", chat()), null);
+        verify(template).convertAndSend(eq(topic + "/chat"),
+                ArgumentMatchers.<Object>argThat(p -> p instanceof ChatMessage c && "does the loop terminate?".equals(c.text)));
+
+        dispatcher.onMessage(new DefaultMessage("other:1".getBytes(StandardCharsets.UTF_8), new byte[0]), null);
+        verifyNoMoreInteractions(template);
+    }
+
+    @Test
+    void decodesBinaryCodecPayloads() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        CompactRedisSerializer compact = new CompactRedisSerializer();
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setValueSerializer(compact);
+        RedisRelayDispatcher dispatcher = new RedisRelayDispatcher(template, redisTemplate, mock(SessionService.class), new NodeIdentity("relay-test"), metrics);
+        String topic = "/topic/session/" + SESSION;
+
+        dispatcher.onMessage(new DefaultMessage(("session-meta:" + SESSION).getBytes(StandardCharsets.UTF_8),
+                compact.serialize(new HashMap<>(Map.of("type", "language", "language", "cpp")))), null);
+        verify(template).convertAndSend(topic + "/meta", (Object) Map.of("type", "language", "language", "cpp"));
+
+        dispatcher.onMessage(new DefaultMessage(("session-chat:" + SESSION).getBytes(StandardCharsets.UTF_8),
+                compact.serialize(chat())), null);
+        verify(template).convertAndSend(eq(topic + "/chat"),
+                ArgumentMatchers.<Object>argThat(p -> p instanceof ChatMessage c && "does the loop terminate?".equals(c.text)));
+
+        // Tagged by another node: decoded in place behind the origin tag
+        dispatcher.onMessage(new DefaultMessage(("session-terminal:" + SESSION).getBytes(StandardCharsets.UTF_8),
+                RelayEnvelope.wrap(bytes("other-node"), 7, compact.serialize("ls\n"))), null);
+        verify(template).convertAndSend(topic + "/terminal", (Object) "ls\n");
+        verifyNoMoreInteractions(template);
+    }
+
+    @Test
+    void skipsMessagesPublishedByThisNode() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        RedisRelayDispatcher dispatcher = newDispatcher(template);
+        byte[] body = serializer.serialize("hello\n");
+        byte[] channel = ("session-terminal:" + SESSION).getBytes(StandardCharsets.UTF_8);
+
+        dispatcher.onMessage(new DefaultMessage(channel, RelayEnvelope.wrap(bytes("relay-test"), 1, body)), null);
+        dispatcher.relayEdits(SESSION, RelayEnvelope.wrap(bytes("relay-test"), 2, serializer.serialize(new EditBatch())));
+        verifyNoMoreInteractions(template);
+        assertEquals(2, metrics.count("redis.relay.suppressed"));
+
+        dispatcher.onMessage(new DefaultMessage(channel, RelayEnvelope.wrap(bytes("other-node"), 1, body)), null);
+        verify(template).convertAndSend("/topic/session/" + SESSION + "/terminal", (Object) "hello\n");
+    }
+
+    private RedisRelayDispatcher newDispatcher(SimpMessagingTemplate template) {
+        RedisTemplate<String, Object> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setValueSerializer(serializer);
+        return new RedisRelayDispatcher(template, redisTemplate, mock(SessionService.class), new NodeIdentity("relay-test"), metrics);
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Message message(String prefix, Object payload) {
+        return new DefaultMessage((prefix + SESSION).getBytes(StandardCharsets.UTF_8), serializer.serialize(payload));
+    }
+
+    private static ChatMessage chat() {
+        ChatMessage chat = new ChatMessage();
+        chat.type = "chat";
+        chat.sessionId = SESSION;
+        chat.userId = "alice";
+        chat.text = "does the loop terminate?";
+        chat.timestamp = 1_700_000_000_000L;
+        return chat;
+    }
+}
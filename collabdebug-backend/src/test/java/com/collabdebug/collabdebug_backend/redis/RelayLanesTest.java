@@ -0,0 +1,113 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelayLanesTest {
+
+    private static final int SESSIONS = 8;
+    private static final int MESSAGES_PER_SESSION = 100;
+
+    /** Every session sees its messages in publish order, whichever lane it landed on. */
+    @Test
+    void lanesKeepPerSessionOrder() throws Exception {
+        RelayLanes lanes = new RelayLanes(new CollabMetrics(), 4, 10_000, 1000);
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(SESSIONS * MESSAGES_PER_SESSION);
+        MessageListener relay = lanes.listener((message, pattern) -> {
+            String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+            int seq = message.getBody()[0] << 8 | (message.getBody()[1] & 0xFF);
+            received.computeIfAbsent(channel, c -> new ArrayList<>()).add(seq);
+            done.countDown();
+        });
+
+        for (int i = 0; i < MESSAGES_PER_SESSION; i++) {
+            for (int s = 0; s < SESSIONS; s++) {
+                relay.onMessage(new DefaultMessage(bytes("session-updates:s" + s), new byte[] {(byte) (i >> 8), (byte) i}), null);
+            }
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        assertEquals(SESSIONS, received.size());
+        for (List<Integer> seqs : received.values()) {
+            for (int i = 0; i < MESSAGES_PER_SESSION; i++) assertEquals(i, seqs.get(i), "per-session order is preserved");
+        }
+        lanes.shutdown();
+    }
+
+    /** A session stuck on one lane does not hold up a session on another. */
+    @Test
+    void slowSessionDoesNotBlockOtherLanes() throws Exception {
+        RelayLanes lanes = new RelayLanes(new CollabMetrics(), 4, 10_000, 1000);
+        String slow = "s0";
+        String other = null;
+        for (int s = 1; other == null; s++) {
+            if (lanes.laneOf(bytes("session-updates:s" + s)) != lanes.laneOf(bytes("session-updates:" + slow))) other = "s" + s;
+        }
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch otherRelayed = new CountDownLatch(1);
+
+        lanes.execute(slow, () -> await(blocked));
+        lanes.execute(other, otherRelayed::countDown);
+
+        assertTrue(otherRelayed.await(5, TimeUnit.SECONDS), "relayed while the slow session's lane is stuck");
+        blocked.countDown();
+        lanes.shutdown();
+    }
+
+    @Test
+    void sameSessionAlwaysMapsToSameLane() {
+        RelayLanes lanes = new RelayLanes(new CollabMetrics(), 8, 10, 10);
+        int lane = lanes.laneOf(bytes("session-chat:abc"));
+        assertEquals(lane, lanes.laneOf(bytes("session-updates:abc")));
+        assertEquals(lane, lanes.laneOf(bytes("session-end:abc")));
+        lanes.shutdown();
+    }
+
+    @Test
+    void dropsWhenLaneStaysFull() throws Exception {
+        CollabMetrics metrics = new CollabMetrics();
+        RelayLanes lanes = new RelayLanes(metrics, 1, 1, 50);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch ran = new CountDownLatch(2);
+
+        lanes.execute("s", () -> {
+            await(blocked);
+            ran.countDown();
+        });
+        Thread.sleep(100); // running and stuck
+        lanes.execute("s", ran::countDown);
+        lanes.execute("s", ran::countDown);
+
+        assertEquals(1, metrics.count("redis.relay.rejected"));
+        assertEquals(1, metrics.snapshot().get("redis.relay.lane-depth"));
+        blocked.countDown();
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        lanes.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
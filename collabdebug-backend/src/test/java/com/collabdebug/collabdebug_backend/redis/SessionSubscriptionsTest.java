@@ -0,0 +1,97 @@
+package com.collabdebug.collabdebug_backend.redis;
+
+import com.collabdebug.collabdebug_backend.repository.DebugSessionRepository;
+import com.collabdebug.collabdebug_backend.service.ChatHistoryService;
+import com.collabdebug.collabdebug_backend.service.InMemorySnapshotStore;
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import com.collabdebug.collabdebug_backend.service.DocumentPersistenceService;
+import com.collabdebug.collabdebug_backend.service.EditBroadcaster;
+import com.collabdebug.collabdebug_backend.service.SessionOwnershipService;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import com.collabdebug.collabdebug_backend.service.SessionSnapshotService;
+import com.collabdebug.collabdebug_backend.service.TerminalOutputBuffer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionSubscriptionsTest {
+
+    private final RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+    private final RedisRelayDispatcher dispatcher = mock(RedisRelayDispatcher.class);
+    private final EditStreamTransport editStream = mock(EditStreamTransport.class);
+    private final RelayLanes lanes = new RelayLanes(new CollabMetrics(), 1, 100, 100);
+
+    SessionSubscriptionsTest() {
+        when(dispatcher.channelPrefixes()).thenReturn(List.of("session-updates:", "session-chat:", "session-terminal:",
+                "session-presence:", "session-meta:", "session-end:"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void subscribesWhileSessionHasLocalConnections() {
+        SessionService sessions = newSessionService();
+        new SessionSubscriptions(container, dispatcher, lanes, sessions, editStream, new CollabMetrics(), "interest", "ot", "simple");
+        verify(container, never()).addMessageListener(any(MessageListener.class), any(Collection.class));
+
+        sessions.userJoined("s1", "conn-1", "alice");
+        sessions.userJoined("s1", "conn-2", "bob");
+        ArgumentCaptor<Collection<Topic>> added = ArgumentCaptor.forClass(Collection.class);
+        verify(container, timeout(2000)).addMessageListener(any(MessageListener.class), added.capture());
+        assertEquals(Set.of("session-updates:s1", "session-chat:s1", "session-terminal:s1",
+                "session-presence:s1", "session-meta:s1", "session-end:s1"), names(added.getValue()));
+
+        sessions.connectionClosed("conn-1");
+        sessions.connectionClosed("conn-2");
+        ArgumentCaptor<Collection<Topic>> removed = ArgumentCaptor.forClass(Collection.class);
+        verify(container, timeout(2000)).removeMessageListener(any(MessageListener.class), removed.capture());
+        assertEquals(names(added.getValue()), names(removed.getValue()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void crdtModeKeepsEditsGlobal() {
+        SessionService sessions = newSessionService();
+        new SessionSubscriptions(container, dispatcher, lanes, sessions, editStream, new CollabMetrics(), "interest", "crdt", "simple");
+        ArgumentCaptor<Collection<Topic>> patterns = ArgumentCaptor.forClass(Collection.class);
+        verify(container).addMessageListener(any(MessageListener.class), patterns.capture());
+        assertEquals(Set.of("session-updates:*"), names(patterns.getValue()));
+
+        sessions.userJoined("s1", "conn-1", "alice");
+        ArgumentCaptor<Collection<Topic>> added = ArgumentCaptor.forClass(Collection.class);
+        verify(container, timeout(2000).times(2)).addMessageListener(any(MessageListener.class), added.capture());
+        assertEquals(5, added.getValue().size());
+    }
+
+    private static Set<String> names(Collection<Topic> topics) {
+        return topics.stream().map(Topic::getTopic).collect(Collectors.toSet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static SessionService newSessionService() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        RedisPublisher publisher = mock(RedisPublisher.class);
+        return new SessionService(mock(DebugSessionRepository.class), template, publisher,
+                mock(DocumentPersistenceService.class), new NodeIdentity("subscriptions-test"),
+                new EditBroadcaster(template, publisher, 0, 1),
+                new SessionSnapshotService(new InMemorySnapshotStore(86_400), 60_000, 10),
+                new SessionOwnershipService(mock(StringRedisTemplate.class), new NodeIdentity("subscriptions-test"), false, 10_000, 1_000), mock(ChatHistoryService.class),
+                mock(TerminalOutputBuffer.class));
+    }
+}
@@ -0,0 +1,157 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.dto.ChatHistoryPage;
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.redis.CompactRedisSerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/** The same scenarios against the Redis store (scripts run by a stand-in) and the in-memory one. */
+class ChatHistoryServiceTest {
+
+    private static final String SESSION = "s1";
+
+    // Stand-in for the two Redis keys, driven by the same rules as the Lua scripts
+    private final List<byte[]> list = new ArrayList<>();
+    private long seq;
+
+    // The connection's deprecated script methods are defaults that delegate to scriptingCommands()
+    private final RedisConnection connection = mock(RedisConnection.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+    private final RedisScriptingCommands scripting = mock(RedisScriptingCommands.class);
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer();
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @ParameterizedTest
+    @ValueSource(strings = {"redis", "memory"})
+    void keepsOnlyTheNewestMessages(String store) {
+        ChatHistoryService history = newService(store, 5);
+        for (int i = 0; i < 12; i++) history.append(chat(i)).join();
+
+        ChatHistoryPage page = history.page(SESSION, null, 50);
+        assertEquals(List.of("m7", "m8", "m9", "m10", "m11"), texts(page));
+        assertEquals(7, page.firstSeq);
+        assertNull(page.nextBefore, "older messages were trimmed");
+    }
+
+    @Test
+    void redisStoreIsTrimmedAndScriptsRunBySha() {
+        ChatHistoryService history = newService("redis", 5);
+        for (int i = 0; i < 12; i++) history.append(chat(i)).join();
+        history.page(SESSION, null, 50);
+
+        assertEquals(5, list.size());
+        verify(scripting, never()).eval(any(byte[].class), any(ReturnType.class), anyInt(), any(byte[][].class));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"redis", "memory"})
+    void pagesBackwardsWithStableCursor(String store) {
+        ChatHistoryService history = newService(store, 100);
+        for (int i = 0; i < 10; i++) history.append(chat(i)).join();
+
+        ChatHistoryPage latest = history.page(SESSION, null, 4);
+        assertEquals(List.of("m6", "m7", "m8", "m9"), texts(latest));
+        assertEquals(6L, latest.nextBefore);
+
+        // New messages don't shift the cursor
+        history.append(chat(10)).join();
+        ChatHistoryPage older = history.page(SESSION, latest.nextBefore, 4);
+        assertEquals(List.of("m2", "m3", "m4", "m5"), texts(older));
+
+        ChatHistoryPage oldest = history.page(SESSION, older.nextBefore, 4);
+        assertEquals(List.of("m0", "m1"), texts(oldest));
+        assertNull(oldest.nextBefore);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"redis", "memory"})
+    void clampsPageSize(String store) {
+        ChatHistoryService history = newService(store, 100);
+        for (int i = 0; i < 30; i++) history.append(chat(i)).join();
+        assertEquals(20, history.page(SESSION, null, 1000).messages.size());
+        assertEquals(1, history.page(SESSION, null, 0).messages.size());
+    }
+
+    @Test
+    void inMemoryHistoryOfEndedSessionExpires() {
+        ChatHistoryService history = newService("memory", 100);
+        history.append(chat(0)).join();
+        history.expire(SESSION);
+
+        clock.addAndGet(59_000);
+        assertEquals(List.of("m0"), texts(history.page(SESSION, null, 10)));
+        clock.addAndGet(1_000);
+        assertEquals(List.of(), texts(history.page(SESSION, null, 10)));
+    }
+
+    private ChatHistoryService newService(String store, int maxMessages) {
+        if (store.equals("memory")) return new InMemoryChatHistoryService(maxMessages, 60, 20, clock::get);
+        // Scripts are sent by SHA (EVALSHA), never as text
+        when(connection.scriptingCommands()).thenReturn(scripting);
+        when(scripting.evalSha(anyString(), any(ReturnType.class), anyInt(), any(byte[][].class))).thenAnswer(inv -> {
+            String sha = inv.getArgument(0);
+            Object[] args = inv.getArguments();
+            if (sha.equals(RedisChatHistoryService.APPEND.getSha1())) {
+                seq++;
+                list.add((byte[]) args[5]);
+                int max = Integer.parseInt(new String((byte[]) args[6], StandardCharsets.UTF_8));
+                while (list.size() > max) list.remove(0);
+                return 1L;
+            }
+            long before = Long.parseLong(new String((byte[]) args[5], StandardCharsets.UTF_8));
+            long limit = Long.parseLong(new String((byte[]) args[6], StandardCharsets.UTF_8));
+            long oldest = seq - list.size();
+            if (before < 0 || before > seq) before = seq;
+            long first = Math.max(oldest, before - limit);
+            List<byte[]> window = before <= first ? List.of()
+                    : new ArrayList<>(list.subList((int) (first - oldest), (int) (before - oldest)));
+            return List.of(first, oldest, window);
+        });
+        RedisConnectionFactory factory = mock(RedisConnectionFactory.class);
+        when(factory.getConnection()).thenReturn(connection);
+
+        RedisTemplate<String, Object> template = new RedisTemplate<>();
+        template.setConnectionFactory(factory);
+        template.setKeySerializer(new StringRedisSerializer());
+        template.setValueSerializer(serializer);
+        template.afterPropertiesSet();
+        return new RedisChatHistoryService(template, maxMessages, 60, 20);
+    }
+
+    private static List<String> texts(ChatHistoryPage page) {
+        return page.messages.stream().map(m -> m.text).toList();
+    }
+
+    private static ChatMessage chat(int i) {
+        ChatMessage chat = new ChatMessage();
+        chat.type = "chat";
+        chat.sessionId = SESSION;
+        chat.userId = "alice";
+        chat.text = "m" + i;
+        return chat;
+    }
+}
@@ -0,0 +1,105 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.document.RopeDocument;
+import com.collabdebug.collabdebug_backend.repository.DebugSessionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Write-behind against a mocked repository; the interval flush is an hour away, so only explicit flushes write. */
+class DocumentPersistenceServiceTest {
+
+    private static final long INTERVAL_MS = 3_600_000;
+
+    private final DebugSessionRepository repository = mock(DebugSessionRepository.class);
+    private final UUID id = UUID.randomUUID();
+    private final String sid = id.toString();
+    private DocumentPersistenceService persistence = new DocumentPersistenceService(repository, INTERVAL_MS, 1000);
+
+    @AfterEach
+    void tearDown() {
+        persistence.shutdown();
+    }
+
+    @Test
+    void repeatedEditsCoalesceIntoOneWrite() {
+        for (int v = 1; v <= 50; v++) persistence.markDirty(sid, new RopeDocument("v" + v), v);
+        verify(repository, never()).updateLatestCode(any(), anyString());
+
+        persistence.flushAll();
+        verify(repository, times(1)).updateLatestCode(any(), anyString());
+        verify(repository).updateLatestCode(id, "v50");
+    }
+
+    @Test
+    void reachingTheVersionThresholdFlushesWithoutWaitingForTheInterval() {
+        persistence.shutdown();
+        persistence = new DocumentPersistenceService(repository, INTERVAL_MS, 10);
+
+        for (int v = 1; v < 10; v++) persistence.markDirty(sid, new RopeDocument("v" + v), v);
+        verify(repository, never()).updateLatestCode(any(), anyString());
+
+        persistence.markDirty(sid, new RopeDocument("v10"), 10);
+        verify(repository, timeout(5000)).updateLatestCode(id, "v10");
+    }
+
+    @Test
+    void olderVersionNeverOverwritesNewerOne() {
+        // Out of order before a flush: the newer pending snapshot is kept
+        persistence.markDirty(sid, new RopeDocument("v5"), 5);
+        persistence.markDirty(sid, new RopeDocument("v3"), 3);
+        persistence.flush(sid);
+        verify(repository).updateLatestCode(id, "v5");
+
+        // Older than what is already in the DB: never written
+        persistence.markDirty(sid, new RopeDocument("v4"), 4);
+        persistence.flush(sid);
+        verify(repository, never()).updateLatestCode(id, "v4");
+        verify(repository, never()).updateLatestCode(id, "v3");
+    }
+
+    @Test
+    void failedWriteIsRetriedOnTheNextFlush() {
+        when(repository.updateLatestCode(eq(id), anyString()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(1);
+
+        persistence.markDirty(sid, new RopeDocument("v1"), 1);
+        persistence.flush(sid);
+        persistence.flush(sid);
+        verify(repository, times(2)).updateLatestCode(id, "v1");
+
+        // Written now: nothing left to retry
+        persistence.flush(sid);
+        verify(repository, times(2)).updateLatestCode(eq(id), anyString());
+    }
+
+    @Test
+    void closeFlushesThePendingSnapshot() {
+        persistence.markDirty(sid, new RopeDocument("final"), 7);
+        persistence.close(sid);
+        verify(repository).updateLatestCode(id, "final");
+    }
+
+    @Test
+    void shutdownFlushesEveryDirtySession() {
+        UUID other = UUID.randomUUID();
+        persistence.markDirty(sid, new RopeDocument("a"), 1);
+        persistence.markDirty(other.toString(), new RopeDocument("b"), 2);
+
+        persistence.shutdown();
+        verify(repository).updateLatestCode(id, "a");
+        verify(repository).updateLatestCode(other, "b");
+    }
+}
@@ -0,0 +1,103 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.document.TextOperation;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class EditBroadcasterTest {
+
+    private static final int KEYSTROKES = 200;
+
+    /** A typing burst of 200 keystrokes reaches the broker and Redis as one frame per 64 edits. */
+    @Test
+    void typingBurstIsSentAsFewComposedFrames() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        RedisPublisher publisher = mock(RedisPublisher.class);
+        EditBroadcaster broadcaster = new EditBroadcaster(template, publisher, 60_000, 64);
+
+        for (int v = 0; v < KEYSTROKES; v++) {
+            broadcaster.enqueue(edit("s1", "alice", v, new TextOperation(v, v, "x")), true);
+        }
+        broadcaster.flush("s1");
+
+        List<EditBatch> frames = mockingDetails(template).getInvocations().stream()
+                .map(inv -> (EditBatch) inv.getArgument(1))
+                .toList();
+        assertEquals(4, frames.size());
+        verify(publisher, times(4)).publishEdits(any());
+
+        // Frames cover every version exactly once, in order, each composed into a single insert
+        long version = 0;
+        for (EditBatch frame : frames) {
+            assertEquals(1, frame.edits.size());
+            EditMessage composed = frame.edits.get(0);
+            assertEquals(version, composed.baseVersion);
+            assertEquals(composed.serverVersion - composed.baseVersion, composed.op.text.length());
+            version = composed.serverVersion;
+        }
+        assertEquals(KEYSTROKES, version);
+    }
+
+    @Test
+    void editsFromDifferentUsersStaySeparateForEchoSuppression() {
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        EditBroadcaster broadcaster = new EditBroadcaster(template, mock(RedisPublisher.class), 1000, 64);
+
+        broadcaster.enqueue(edit("s1", "alice", 0, new TextOperation(0, 0, "a")), true);
+        broadcaster.enqueue(edit("s1", "bob", 1, new TextOperation(1, 1, "b")), true);
+        broadcaster.enqueue(edit("s1", "bob", 2, new TextOperation(2, 2, "c")), true);
+        broadcaster.flush("s1");
+
+        EditBatch frame = (EditBatch) mockingDetails(template).getInvocations().iterator().next().getArgument(1);
+        assertEquals(2, frame.edits.size());
+        assertEquals("alice", frame.edits.get(0).userId);
+        assertEquals("bob", frame.edits.get(1).userId);
+        assertEquals("bc", frame.edits.get(1).op.text);
+        assertEquals(3, frame.serverVersion);
+        verify(template).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void sessionEntryIsDroppedOnceItsBatchIsSent() throws Exception {
+        EditBroadcaster broadcaster = new EditBroadcaster(mock(SimpMessagingTemplate.class), mock(RedisPublisher.class), 5, 64);
+        for (int s = 0; s < 100; s++) {
+            broadcaster.enqueue(edit("s" + s, "alice", 0, new TextOperation(0, 0, "x")), true);
+        }
+        broadcaster.flush("s0");
+        assertTrue(broadcaster.batchedSessions() < 100);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (broadcaster.batchedSessions() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(0, broadcaster.batchedSessions());
+
+        // A session that becomes active again gets a fresh batch
+        broadcaster.enqueue(edit("s0", "alice", 1, new TextOperation(1, 1, "y")), true);
+        assertEquals(1, broadcaster.batchedSessions());
+        broadcaster.close("s0");
+        assertEquals(0, broadcaster.batchedSessions());
+    }
+
+    private static EditMessage edit(String sessionId, String userId, long baseVersion, TextOperation op) {
+        EditMessage edit = new EditMessage();
+        edit.sessionId = sessionId;
+        edit.userId = userId;
+        edit.op = op.toEditOperation();
+        edit.baseVersion = baseVersion;
+        edit.serverVersion = baseVersion + 1;
+        return edit;
+    }
+}
@@ -0,0 +1,107 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.redis.NodeIdentity;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SessionOwnershipServiceTest {
+
+    /** Redis stand-in shared by both nodes; a removed key is an expired lease. */
+    private final Map<String, String> leases = new ConcurrentHashMap<>();
+    private final Map<String, Long> epochs = new ConcurrentHashMap<>();
+    private volatile boolean redisDown;
+
+    @Test
+    void leaseHasOneOwnerAndFailsOverWhenItExpires() {
+        StringRedisTemplate redis = fakeRedis();
+        List<String> acquiredByB = new ArrayList<>();
+        SessionOwnershipService nodeA = new SessionOwnershipService(redis, new NodeIdentity("node-a"), true, 10_000, 0);
+        SessionOwnershipService nodeB = new SessionOwnershipService(redis, new NodeIdentity("node-b"), true, 10_000, 0);
+        nodeB.setOnAcquired((sessionId, epoch) -> acquiredByB.add(sessionId + "@" + epoch));
+
+        assertEquals("node-a", nodeA.ownerOf("s1"));
+        assertEquals("node-a", nodeB.ownerOf("s1"));
+        assertEquals("node-b", nodeB.ownerOf("s2"), "sessions spread over the nodes that touch them first");
+
+        // node-a dies: its lease expires and the next node to touch the session takes over
+        leases.remove(SessionOwnershipService.KEY_PREFIX + "s1");
+        assertEquals("node-b", nodeB.ownerOf("s1"));
+        assertEquals(List.of("s2@1", "s1@2"), acquiredByB, "every takeover starts a new epoch");
+        assertEquals(2, nodeB.epochOf("s1"));
+
+        // If node-a was only paused, its renewal notices the takeover and it forwards from then on
+        nodeA.renewAll();
+        assertEquals("node-b", nodeA.ownerOf("s1"));
+
+        nodeB.release("s1");
+        assertFalse(leases.containsKey(SessionOwnershipService.KEY_PREFIX + "s1"));
+        nodeA.release("s1");
+        assertEquals("node-a", nodeA.ownerOf("s1"));
+        assertEquals(3, nodeA.epochOf("s1"));
+    }
+
+    @Test
+    void leaseLapsesLocallyWhenRenewalsFailAndUnknownOwnerIsNotLocal() throws InterruptedException {
+        SessionOwnershipService node = new SessionOwnershipService(fakeRedis(), new NodeIdentity("node-a"), true, 50, 0);
+        List<String> released = new ArrayList<>();
+        node.setOnReleasing(released::add);
+        assertEquals("node-a", node.ownerOf("s1"));
+
+        // Partitioned from Redis: renewals fail, and once the lease would have expired the node
+        // no longer acts as owner (another node may hold it by now) nor falls back to serving locally
+        redisDown = true;
+        node.renewAll();
+        Thread.sleep(60);
+        assertNull(node.ownerOf("s1"));
+        assertEquals(0, node.epochOf("s1"));
+
+        redisDown = false;
+        assertEquals("node-a", node.ownerOf("s1"));
+        assertEquals(2, node.epochOf("s1"), "claiming the lease again starts a new term");
+
+        node.release("s1");
+        assertEquals(List.of("s1"), released, "the owner is told before it gives the lease up");
+    }
+
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate fakeRedis() {
+        StringRedisTemplate redis = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(inv -> {
+            if (redisDown) throw new IllegalStateException("connection refused");
+            return leases.get(inv.<String>getArgument(0));
+        });
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(inv -> {
+            if (redisDown) throw new IllegalStateException("connection refused");
+            RedisScript<?> script = inv.getArgument(0);
+            List<String> keys = inv.getArgument(1);
+            String key = keys.get(0);
+            String node = inv.getArgument(2);
+            if (script.getScriptAsString().contains("'incr'")) {
+                if (!node.equals(leases.computeIfAbsent(key, k -> node))) return 0L;
+                return epochs.merge(keys.get(1), 1L, Long::sum);
+            }
+            if (!node.equals(leases.get(key))) return 0L;
+            if (script.getScriptAsString().contains("'del'")) leases.remove(key);
+            return 1L;
+        });
+        return redis;
+    }
+}
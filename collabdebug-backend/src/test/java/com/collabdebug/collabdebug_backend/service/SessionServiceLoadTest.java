@@ -0,0 +1,154 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.document.TextOperation;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+import com.collabdebug.collabdebug_backend.dto.ws.EditResponse;
+import com.collabdebug.collabdebug_backend.dto.ws.SyncResponse;
+import com.collabdebug.collabdebug_backend.model.DebugSession;
+import com.collabdebug.collabdebug_backend.redis.NodeIdentity;
+import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
+import com.collabdebug.collabdebug_backend.repository.DebugSessionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Concurrency of SessionService.applyEdit: edits are sequenced per session, so a session stuck in
+ * its critical section (simulated by a blocked broker send) never holds up the others, and session
+ * teardown does not race with edits.
+ */
+class SessionServiceLoadTest {
+
+    private static final int EDITS_PER_SESSION = 200;
+
+    private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+    private final DebugSessionRepository repository = mock(DebugSessionRepository.class);
+    private final SessionService service = newService();
+
+    @Test
+    void blockedSessionDoesNotHoldUpOtherSessions() throws Exception {
+        String blocked = UUID.randomUUID().toString();
+        String other = UUID.randomUUID().toString();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(template).convertAndSend(startsWith("/topic/session/" + blocked), any(Object.class));
+
+        CompletableFuture<?> stuck = CompletableFuture.runAsync(() -> service.applyEdit(edit(blocked, 0, "a")));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        try {
+            long version = 0;
+            for (int i = 0; i < EDITS_PER_SESSION; i++) {
+                EditResponse res = service.applyEdit(edit(other, version, "text " + i));
+                assertTrue(res.isSuccess());
+                version = res.getServerVersion();
+            }
+            assertFalse(stuck.isDone());
+        } finally {
+            release.countDown();
+        }
+        stuck.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void concurrentEditsToOneSessionAreAllSequenced() throws Exception {
+        String sid = UUID.randomUUID().toString();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            int writer = t;
+            pool.submit(() -> {
+                long version = 0;
+                for (int i = 0; i < EDITS_PER_SESSION; i++) {
+                    // Typing at the top of the file from the last version this writer saw; resynced when rejected
+                    EditResponse res;
+                    while (!(res = service.applyEdit(insert(sid, version, "w" + writer))).isSuccess()) version = res.getServerVersion();
+                    version = res.getServerVersion();
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(60, TimeUnit.SECONDS));
+
+        assertEquals(8 * EDITS_PER_SESSION, service.catchUp(sid, 0).serverVersion);
+    }
+
+    @Test
+    void endedSessionStartsOverFromStoredCode() {
+        UUID id = UUID.randomUUID();
+        String sid = id.toString();
+        DebugSession stored = new DebugSession();
+        stored.setLatestCode("saved");
+        when(repository.findById(id)).thenReturn(Optional.of(stored));
+        service.applyEdit(edit(sid, 0, "edited"));
+
+        service.endSession(id, null, false);
+
+        SyncResponse sync = service.catchUp(sid, -1);
+        assertEquals(0, sync.serverVersion);
+        assertTrue(sync.fullSnapshot);
+        assertEquals("saved", sync.snapshot);
+    }
+
+    @Test
+    void staleFullTextEditIsRejectedInsteadOfRevertingNewerEdits() {
+        String sid = UUID.randomUUID().toString();
+        assertTrue(service.applyEdit(edit(sid, 0, "hello")).isSuccess());
+        assertTrue(service.applyEdit(edit(sid, 1, "hello world")).isSuccess());
+
+        // Written on top of version 1: diffing it against "hello world" would delete " world"
+        EditResponse stale = service.applyEdit(edit(sid, 1, "hello!"));
+        assertFalse(stale.isSuccess());
+        assertEquals(2, stale.getServerVersion());
+        assertEquals("hello world", stale.getUpdatedText());
+        assertEquals("hello world", service.catchUp(sid, -1).snapshot);
+    }
+
+    private SessionService newService() {
+        // Batching disabled: every edit is broadcast inside the session's critical section
+        RedisPublisher publisher = mock(RedisPublisher.class);
+        return new SessionService(repository, template, publisher,
+                mock(DocumentPersistenceService.class), new NodeIdentity("load-test"),
+                new EditBroadcaster(template, publisher, 0, 1), mock(SessionSnapshotService.class),
+                new SessionOwnershipService(mock(StringRedisTemplate.class), new NodeIdentity("load-test"), false, 10_000, 1_000), mock(ChatHistoryService.class),
+                mock(TerminalOutputBuffer.class));
+    }
+
+    /** Full-text edit written against {@code clientVersion}. */
+    private static EditMessage edit(String sessionId, long clientVersion, String text) {
+        EditMessage edit = new EditMessage();
+        edit.sessionId = sessionId;
+        edit.userId = "load-test";
+        edit.clientVersion = clientVersion;
+        edit.op = new EditOperation();
+        edit.op.text = text;
+        return edit;
+    }
+
+    private static EditMessage insert(String sessionId, long clientVersion, String text) {
+        EditMessage edit = edit(sessionId, clientVersion, text);
+        new TextOperation(0, 0, text).copyTo(edit.op);
+        return edit;
+    }
+}
@@ -0,0 +1,208 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.document.TextOperation;
+import com.collabdebug.collabdebug_backend.dto.SessionSnapshot;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditResponse;
+import com.collabdebug.collabdebug_backend.dto.ws.SyncResponse;
+import com.collabdebug.collabdebug_backend.model.DebugSession;
+import com.collabdebug.collabdebug_backend.redis.NodeIdentity;
+import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
+import com.collabdebug.collabdebug_backend.repository.DebugSessionRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionSnapshotServiceTest {
+
+    private static final long TTL_SECONDS = 3600;
+
+    /** Redis stand-in: a map behind opsForValue().set/get. */
+    private final Map<String, Object> redis = new HashMap<>();
+
+    @Test
+    void restartedNodeWarmsUpFromSnapshot() {
+        RedisTemplate<String, Object> redisTemplate = redisStandIn();
+
+        String sid = UUID.randomUUID().toString();
+        SessionSnapshotService snapshots = new SessionSnapshotService(new RedisSnapshotStore(redisTemplate, TTL_SECONDS), 60_000, 3);
+        SessionService before = newService(snapshots);
+        String text = "";
+        for (int v = 0; v < 5; v++) {
+            before.applyEdit(edit(sid, v, new TextOperation(text.length(), text.length(), "ab")));
+            text += "ab";
+        }
+        snapshots.snapshotDirty();
+
+        SessionSnapshot stored = (SessionSnapshot) redis.get(RedisSnapshotStore.KEY_PREFIX + sid);
+        assertEquals(5, stored.version);
+        assertEquals(text, stored.text);
+        assertEquals(3, stored.tail.size(), "op log is compacted to the configured tail");
+
+        // A fresh node restores document, version and tail with one read
+        SessionService after = newService(new SessionSnapshotService(new RedisSnapshotStore(redisTemplate, TTL_SECONDS), 60_000, 3));
+        SyncResponse missed = after.catchUp(sid, 3);
+        assertFalse(missed.fullSnapshot);
+        assertEquals(2, missed.ops.size());
+        assertEquals(5, missed.serverVersion);
+
+        // Versions older than the tail get the document instead
+        SyncResponse full = after.catchUp(sid, 1);
+        assertTrue(full.fullSnapshot);
+        assertEquals(text, full.snapshot);
+
+        // And a slightly stale edit is still transformed instead of rejected
+        assertTrue(after.applyEdit(edit(sid, 4, new TextOperation(0, 0, ">"))).applied);
+        assertEquals(">" + text, after.catchUp(sid, -1).snapshot);
+    }
+
+    /** A node taking a session over numbers its versions from the new epoch and resyncs every client. */
+    @Test
+    @SuppressWarnings("unchecked")
+    void takeoverStartsANewVersionTermAndResyncsClients() {
+        RedisTemplate<String, Object> redisTemplate = redisStandIn();
+        String sid = UUID.randomUUID().toString();
+        SessionSnapshotService snapshots = new SessionSnapshotService(new RedisSnapshotStore(redisTemplate, TTL_SECONDS), 60_000, 3);
+        SessionService before = newService(snapshots);
+        for (int v = 0; v < 5; v++) before.applyEdit(edit(sid, v, new TextOperation(v, v, "a")));
+        snapshots.flush(sid);
+
+        SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+        SessionOwnershipService ownership = mock(SessionOwnershipService.class);
+        when(ownership.isLocal("node-b")).thenReturn(true);
+        when(ownership.ownerOf(sid)).thenReturn("node-b");
+        SessionService after = newService(mock(DebugSessionRepository.class),
+                new SessionSnapshotService(new RedisSnapshotStore(redisTemplate, TTL_SECONDS), 60_000, 3), template, ownership, "node-b");
+        ArgumentCaptor<ObjLongConsumer<String>> onAcquired = ArgumentCaptor.forClass(ObjLongConsumer.class);
+        verify(ownership).setOnAcquired(onAcquired.capture());
+        onAcquired.getValue().accept(sid, 2);
+
+        long base = 2L << SessionService.EPOCH_SHIFT;
+        ArgumentCaptor<EditBatch> broadcast = ArgumentCaptor.forClass(EditBatch.class);
+        verify(template).convertAndSend(eq("/topic/session/" + sid + "/edits"), broadcast.capture());
+        EditMessage resync = broadcast.getValue().edits.get(0);
+        assertEquals(base, resync.serverVersion);
+        assertNull(resync.op.rangeStart, "full-text frame: clients replace their copy");
+        assertEquals("aaaaa", resync.op.text);
+
+        // Requests based on the previous owner's versions fall outside the new term
+        assertTrue(after.catchUp(sid, 5).fullSnapshot);
+        EditResponse stale = after.submitEdit(edit(sid, 5, new TextOperation(0, 0, ">")), 0);
+        assertFalse(stale.applied);
+        assertEquals("aaaaa", stale.getUpdatedText());
+        assertTrue(after.submitEdit(edit(sid, base, new TextOperation(0, 0, ">")), 0).applied);
+
+        // Owner unknown (Redis unreachable): rejected rather than applied here
+        when(ownership.ownerOf(sid)).thenReturn(null);
+        EditResponse unknown = after.submitEdit(edit(sid, base + 1, new TextOperation(0, 0, ">")), 0);
+        assertFalse(unknown.applied);
+        assertNull(unknown.getUpdatedText());
+    }
+
+    /** CRDT replicas on two nodes start from the same stored seed, so ops against the persisted code merge. */
+    @Test
+    void crdtReplicasSeedFromTheSameStoredText() {
+        String sid = UUID.randomUUID().toString();
+        DebugSessionRepository repository = mock(DebugSessionRepository.class);
+        DebugSession stored = new DebugSession();
+        stored.setLatestCode("hello");
+        when(repository.findById(UUID.fromString(sid))).thenReturn(Optional.of(stored));
+        RedisTemplate<String, Object> redisTemplate = redisStandIn();
+
+        SessionService nodeA = crdtService(repository, new SessionSnapshotService(new RedisSnapshotStore(redisTemplate, TTL_SECONDS), 60_000, 3), "node-a");
+        EditMessage edit = edit(sid, 0, new TextOperation(5, 5, " world"));
+        assertTrue(nodeA.applyEdit(edit).applied);
+
+        // The code changed in the database since; node B still seeds from the stored seed
+        stored.setLatestCode("something else");
+        SessionService nodeB = crdtService(repository, new SessionSnapshotService(new RedisSnapshotStore(redisTemplate, TTL_SECONDS), 60_000, 3), "node-b");
+        assertEquals("hello", nodeB.catchUp(sid, -1).snapshot);
+        nodeB.applyRemoteEdit(edit);
+        assertEquals("hello world", nodeB.catchUp(sid, -1).snapshot);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void crdtEditsAreRejectedWhileTheReplicaCannotBeSeeded() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        when(redisTemplate.opsForValue()).thenThrow(new IllegalStateException("Redis down"));
+        SessionService node = crdtService(mock(DebugSessionRepository.class), new SessionSnapshotService(new RedisSnapshotStore(redisTemplate, TTL_SECONDS), 60_000, 3), "node-a");
+
+        EditResponse res = node.applyEdit(edit(UUID.randomUUID().toString(), 0, new TextOperation(0, 0, "x")));
+        assertFalse(res.applied);
+        assertNull(res.getUpdatedText());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RedisTemplate<String, Object> redisStandIn() {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, Object> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        doAnswer(inv -> {
+            assertEquals(Duration.ofSeconds(TTL_SECONDS), inv.getArgument(2), "every write refreshes the expiry");
+            return redis.put(inv.getArgument(0), inv.getArgument(1));
+        }).when(values).set(anyString(), any(), any(Duration.class));
+        when(values.setIfAbsent(anyString(), any(), any(Duration.class)))
+                .thenAnswer(inv -> redis.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        when(values.get(anyString())).thenAnswer(inv -> redis.get(inv.<String>getArgument(0)));
+        return redisTemplate;
+    }
+
+    private static SessionService crdtService(DebugSessionRepository repository, SessionSnapshotService snapshots, String nodeId) {
+        SessionService service = newService(repository, snapshots, nodeId);
+        ReflectionTestUtils.setField(service, "documentMode", "crdt");
+        return service;
+    }
+
+    private static SessionService newService(SessionSnapshotService snapshots) {
+        return newService(mock(DebugSessionRepository.class), snapshots, "snapshot-test");
+    }
+
+    private static SessionService newService(DebugSessionRepository repository, SessionSnapshotService snapshots, String nodeId) {
+        return newService(repository, snapshots, mock(SimpMessagingTemplate.class),
+                new SessionOwnershipService(mock(StringRedisTemplate.class), new NodeIdentity(nodeId), false, 10_000, 1_000), nodeId);
+    }
+
+    private static SessionService newService(DebugSessionRepository repository, SessionSnapshotService snapshots,
+                                             SimpMessagingTemplate template, SessionOwnershipService ownership, String nodeId) {
+        RedisPublisher publisher = mock(RedisPublisher.class);
+        return new SessionService(repository, template, publisher,
+                mock(DocumentPersistenceService.class), new NodeIdentity(nodeId),
+                new EditBroadcaster(template, publisher, 0, 1), snapshots,
+                ownership, mock(ChatHistoryService.class),
+                mock(TerminalOutputBuffer.class));
+    }
+
+    private static EditMessage edit(String sessionId, long clientVersion, TextOperation op) {
+        EditMessage edit = new EditMessage();
+        edit.sessionId = sessionId;
+        edit.userId = "alice";
+        edit.clientVersion = clientVersion;
+        edit.op = op.toEditOperation();
+        return edit;
+    }
+}
@@ -0,0 +1,93 @@
+package com.collabdebug.collabdebug_backend.service;
+
+import com.collabdebug.collabdebug_backend.redis.RedisPublisher;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class TerminalOutputBufferTest {
+
+    // Flushes are driven by the tests
+    private static final long NO_TIMER = 3_600_000;
+
+    private final RedisPublisher publisher = mock(RedisPublisher.class);
+    private final CollabMetrics metrics = new CollabMetrics();
+    // Token buckets refill on this clock only
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    void chunksBetweenFlushesBecomeOneFrame() {
+        TerminalOutputBuffer terminal = newBuffer(65_536, 262_144);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            terminal.append("s1", "line " + i + "\n");
+            expected.append("line ").append(i).append('\n');
+        }
+        terminal.flushAll();
+
+        verify(publisher).publishTerminalOutput("s1", expected.toString());
+        assertEquals(1, metrics.count("terminal.frames"));
+        assertEquals(999, metrics.count("terminal.coalesced-chunks"));
+        terminal.shutdown();
+    }
+
+    @Test
+    void overflowIsReplacedByDroppedMarker() {
+        TerminalOutputBuffer terminal = newBuffer(65_536, 1000);
+        terminal.append("s1", "x".repeat(5000));
+        terminal.flushAll();
+
+        verify(publisher).publishTerminalOutput("s1", "x".repeat(1000) + "\n… 4000 bytes dropped\n");
+        assertEquals(4000, metrics.count("terminal.dropped-bytes"));
+        terminal.shutdown();
+    }
+
+    /** A session flooding its terminal is held to its rate while another session's output goes out as usual. */
+    @Test
+    void noisySessionIsRateLimitedAlone() {
+        TerminalOutputBuffer terminal = newBuffer(2000, 10_000);
+        for (int i = 0; i < 1000; i++) terminal.append("noisy", "y".repeat(100));
+        terminal.append("quiet", "done\n");
+        terminal.flushAll();
+        terminal.flushAll();
+
+        assertEquals(List.of(2000), noisyFrameSizes(), "one second of burst, nothing more until the bucket refills");
+        assertEquals(90_000, metrics.count("terminal.dropped-bytes"));
+        verify(publisher).publishTerminalOutput("quiet", "done\n");
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        terminal.flushAll();
+        assertEquals(List.of(2000, 1000), noisyFrameSizes());
+        terminal.shutdown();
+    }
+
+    private TerminalOutputBuffer newBuffer(int maxBytesPerSec, int bufferBytes) {
+        return new TerminalOutputBuffer(publisher, metrics, NO_TIMER, maxBytesPerSec, bufferBytes, nanos::get);
+    }
+
+    private List<Integer> noisyFrameSizes() {
+        return mockingDetails(publisher).getInvocations().stream()
+                .filter(inv -> "noisy".equals(inv.getArgument(0)))
+                .map(inv -> ((String) inv.getArgument(1)).length())
+                .toList();
+    }
+
+    @Test
+    void idleSessionsSendNothing() {
+        TerminalOutputBuffer terminal = newBuffer(65_536, 1000);
+        terminal.append("s1", "");
+        terminal.flushAll();
+        verify(publisher, never()).publishTerminalOutput(eq("s1"), anyString());
+        terminal.shutdown();
+    }
+}
@@ -0,0 +1,76 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChannelExecutorTest {
+
+    // More than there are carrier threads
+    private static final int BLOCKED_HANDLERS = Runtime.getRuntime().availableProcessors() * 4 + 64;
+
+    private final CollabMetrics metrics = new CollabMetrics();
+
+    @Test
+    void reportsQueuedAndActiveTasks() throws Exception {
+        ChannelExecutor executor = new ChannelExecutor("inbound", "platform", 1, metrics);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        executor.execute(() -> { });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertEquals(1, metrics.snapshot().get("stomp.inbound.active"));
+        assertEquals(1, metrics.snapshot().get("stomp.inbound.queued"));
+        release.countDown();
+        awaitTrue(() -> executor.active() == 0 && executor.queued() == 0);
+        assertEquals(2, metrics.count("stomp.inbound.tasks"));
+        executor.shutdown();
+    }
+
+    /** Handlers blocked on I/O (JPA in receiveMeta) must not delay a message of an unrelated session. */
+    @Test
+    void blockedHandlersDoNotStarveOtherSessions() throws Exception {
+        ChannelExecutor executor = new ChannelExecutor("inbound", "virtual", 0, metrics);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(BLOCKED_HANDLERS);
+        for (int i = 0; i < BLOCKED_HANDLERS; i++) {
+            executor.execute(() -> {
+                blocked.countDown();
+                await(release);
+            });
+        }
+        assertTrue(blocked.await(5, TimeUnit.SECONDS), "every handler runs at once");
+
+        CountDownLatch handled = new CountDownLatch(1);
+        executor.execute(handled::countDown);
+        assertTrue(handled.await(5, TimeUnit.SECONDS), "runs while all the others are still blocked");
+        assertEquals(BLOCKED_HANDLERS, executor.active());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitTrue(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
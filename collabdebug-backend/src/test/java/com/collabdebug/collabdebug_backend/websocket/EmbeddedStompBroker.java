@@ -0,0 +1,157 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompDecoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process STOMP 1.2 broker standing in for RabbitMQ/ActiveMQ in relay tests: CONNECT,
+ * SUBSCRIBE, UNSUBSCRIBE, SEND (fanned out as MESSAGE to every subscription of the destination)
+ * and DISCONNECT, no acks, no heart-beats. Each connection is read on its own virtual thread.
+ * Test-only: production relays use a real broker.
+ */
+class EmbeddedStompBroker implements AutoCloseable {
+
+    private record Subscription(Connection connection, String id) {
+    }
+
+    private final ServerSocket server;
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicLong messageIds = new AtomicLong();
+    private volatile boolean running = true;
+
+    EmbeddedStompBroker() throws IOException {
+        server = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread.ofVirtual().name("embedded-stomp-accept").start(this::accept);
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    int subscriptionCount() {
+        return subscriptions.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Connection connection = new Connection(server.accept());
+                connections.add(connection);
+                Thread.ofVirtual().name("embedded-stomp-conn").start(connection::read);
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        for (Connection connection : connections) connection.close();
+    }
+
+    private final class Connection {
+
+        private final Socket socket;
+        private final OutputStream out;
+        private final Map<String, String> destinationsById = new ConcurrentHashMap<>();
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.socket.setTcpNoDelay(true);
+            this.out = socket.getOutputStream();
+        }
+
+        void read() {
+            StompDecoder decoder = new StompDecoder();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024); // frames in these tests are small
+            byte[] chunk = new byte[8192];
+            try (InputStream in = socket.getInputStream()) {
+                int n;
+                while ((n = in.read(chunk)) != -1) {
+                    buffer.put(chunk, 0, n);
+                    buffer.flip();
+                    for (Message<byte[]> message : decoder.decode(buffer)) handle(message);
+                    buffer.compact();
+                }
+            } catch (IOException e) {
+                // connection closed
+            } finally {
+                close();
+            }
+        }
+
+        private void handle(Message<byte[]> message) throws IOException {
+            StompHeaderAccessor headers = StompHeaderAccessor.wrap(message);
+            StompCommand command = headers.getCommand();
+            if (command == null) return; // heart-beat
+            switch (command) {
+                case CONNECT, STOMP -> write("CONNECTED\nversion:1.2\nheart-beat:0,0\n\n".getBytes(StandardCharsets.UTF_8), null);
+                case SUBSCRIBE -> {
+                    destinationsById.put(headers.getSubscriptionId(), headers.getDestination());
+                    subscriptions.computeIfAbsent(headers.getDestination(), d -> ConcurrentHashMap.newKeySet())
+                            .add(new Subscription(this, headers.getSubscriptionId()));
+                }
+                case UNSUBSCRIBE -> {
+                    String destination = destinationsById.remove(headers.getSubscriptionId());
+                    if (destination != null) {
+                        subscriptions.getOrDefault(destination, Set.of()).remove(new Subscription(this, headers.getSubscriptionId()));
+                    }
+                }
+                case SEND -> {
+                    String contentType = headers.getFirstNativeHeader("content-type");
+                    for (Subscription sub : subscriptions.getOrDefault(headers.getDestination(), Set.of())) {
+                        String frame = "MESSAGE\nsubscription:" + sub.id + "\nmessage-id:" + messageIds.incrementAndGet()
+                                + "\ndestination:" + headers.getDestination()
+                                + (contentType != null ? "\ncontent-type:" + contentType : "")
+                                + "\ncontent-length:" + message.getPayload().length + "\n\n";
+                        sub.connection.write(frame.getBytes(StandardCharsets.UTF_8), message.getPayload());
+                    }
+                }
+                case DISCONNECT -> close();
+                default -> { }
+            }
+        }
+
+        private void write(byte[] head, byte[] body) {
+            try {
+                synchronized (out) {
+                    out.write(head);
+                    if (body != null) out.write(body);
+                    out.write(0);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            destinationsById.forEach((id, destination) ->
+                    subscriptions.getOrDefault(destination, Set.of()).remove(new Subscription(this, id)));
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+    }
+}
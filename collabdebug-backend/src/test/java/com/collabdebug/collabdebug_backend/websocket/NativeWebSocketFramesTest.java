@@ -0,0 +1,134 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import com.collabdebug.collabdebug_backend.dto.ws.ChatMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditBatch;
+import com.collabdebug.collabdebug_backend.dto.ws.EditMessage;
+import com.collabdebug.collabdebug_backend.dto.ws.EditOperation;
+import com.collabdebug.collabdebug_backend.dto.ws.SyncResponse;
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Edit/sync payloads as binary frames on native sessions, text on SockJS, and the deflate switch. */
+class NativeWebSocketFramesTest {
+
+    private final CompositeMessageConverter converter = new CompositeMessageConverter(List.of(
+            new BinaryFrameMessageConverter(Set.of(EditBatch.class, SyncResponse.class)),
+            new StringMessageConverter(), new ByteArrayMessageConverter(), new MappingJackson2MessageConverter()));
+    private final AtomicReference<Message<?>> sent = new AtomicReference<>();
+    private final SimpMessagingTemplate template = newTemplate();
+
+    @Test
+    void editAndSyncPayloadsAreOctetStreamJson() {
+        template.convertAndSend("/topic/session/s1/edits", editBatch("hello"));
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, contentType(sent.get()));
+        assertTrue(new String((byte[]) sent.get().getPayload(), StandardCharsets.UTF_8).contains("\"text\":\"hello\""));
+
+        ChatMessage chat = new ChatMessage();
+        chat.text = "hi";
+        template.convertAndSend("/topic/session/s1/chat", chat);
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, contentType(sent.get()));
+    }
+
+    @Test
+    void nativeSessionsGetBinaryFramesAndSockJsSessionsText() throws Exception {
+        template.convertAndSend("/topic/session/s1/edits", editBatch("hello"));
+        byte[] json = (byte[]) sent.get().getPayload();
+
+        WebSocketMessage<?> nativeFrame = deliver(mock(WebSocketSession.class));
+        WebSocketMessage<?> sockJsFrame = deliver(mock(SockJsSession.class));
+
+        assertInstanceOf(BinaryMessage.class, nativeFrame);
+        assertInstanceOf(TextMessage.class, sockJsFrame);
+        assertTrue(((TextMessage) sockJsFrame).getPayload().endsWith(new String(json, StandardCharsets.UTF_8) + "\0"));
+    }
+
+    @Test
+    void deflateCanBeTurnedOff() {
+        List<WebSocketExtension> offered = List.of(new WebSocketExtension(DeflateHandshakeHandler.PERMESSAGE_DEFLATE));
+        ServerHttpRequest request = mock(ServerHttpRequest.class);
+        when(request.getHeaders()).thenReturn(new HttpHeaders());
+        CollabMetrics metrics = new CollabMetrics();
+
+        assertEquals(offered, new DeflateHandshakeHandler(true, metrics).filterRequestedExtensions(request, offered, offered));
+        assertEquals(List.of(), new DeflateHandshakeHandler(false, metrics).filterRequestedExtensions(request, offered, offered));
+        assertEquals(2, metrics.count("ws.native.handshakes"));
+        assertEquals(1, metrics.count("ws.native.deflate"));
+    }
+
+    private WebSocketMessage<?> deliver(WebSocketSession session) throws Exception {
+        when(session.getId()).thenReturn("ws-1");
+        when(session.isOpen()).thenReturn(true);
+        AtomicReference<WebSocketMessage<?>> frame = new AtomicReference<>();
+        doAnswer(inv -> {
+            frame.set(inv.getArgument(0));
+            return null;
+        }).when(session).sendMessage(any());
+
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.copyHeaders(sent.get().getHeaders());
+        headers.setSessionId("ws-1");
+        headers.setSubscriptionId("sub-0");
+        new StompSubProtocolHandler().handleMessageToClient(session,
+                MessageBuilder.createMessage(sent.get().getPayload(), headers.getMessageHeaders()));
+        return frame.get();
+    }
+
+    private static EditBatch editBatch(String text) {
+        EditMessage edit = new EditMessage();
+        edit.sessionId = "s1";
+        edit.userId = "alice";
+        edit.op = new EditOperation();
+        edit.op.text = text;
+        EditBatch batch = new EditBatch();
+        batch.sessionId = "s1";
+        batch.edits = List.of(edit);
+        return batch;
+    }
+
+    private static MimeType contentType(Message<?> message) {
+        return (MimeType) message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+    }
+
+    private SimpMessagingTemplate newTemplate() {
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel();
+        channel.subscribe(sent::set);
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(converter);
+        return template;
+    }
+}
@@ -0,0 +1,77 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import com.collabdebug.collabdebug_backend.security.StompPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PrincipalBindingInterceptorTest {
+
+    private final Principal alice = new StompPrincipal("alice");
+    private final Map<String, Object> sessionAttributes = new HashMap<>(Map.of("principal", alice));
+    private final PrincipalBindingInterceptor interceptor = new PrincipalBindingInterceptor();
+
+    @Test
+    void connectBindsPrincipalToTheSession() {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+        headers.setSessionId("ws-1");
+        headers.setSessionAttributes(sessionAttributes);
+        // Spring's STOMP handler remembers the user set here for the rest of the session
+        AtomicReference<Principal> sessionUser = new AtomicReference<>();
+        headers.setUserChangeCallback(sessionUser::set);
+        headers.setLeaveMutable(true);
+        Message<byte[]> connect = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+
+        Message<?> result = interceptor.preSend(connect, null);
+
+        assertSame(connect, result);
+        assertSame(alice, sessionUser.get());
+        assertSame(alice, StompHeaderAccessor.wrap(result).getUser());
+    }
+
+    @Test
+    void sendFramesPassThroughUntouched() {
+        Message<byte[]> edit = editFrame();
+        assertSame(edit, interceptor.preSend(edit, null));
+        assertEquals(alice, StompHeaderAccessor.wrap(edit).getUser());
+    }
+
+    @Test
+    void connectWithoutHandshakePrincipalBindsNoUser() {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+        headers.setSessionId("ws-2");
+        headers.setSessionAttributes(new HashMap<>());
+        AtomicReference<Principal> sessionUser = new AtomicReference<>();
+        headers.setUserChangeCallback(sessionUser::set);
+        headers.setLeaveMutable(true);
+        Message<byte[]> connect = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+
+        assertSame(connect, interceptor.preSend(connect, null));
+        assertNull(sessionUser.get());
+        assertNull(StompHeaderAccessor.wrap(connect).getUser());
+    }
+
+    // An edit SEND as it leaves Spring's STOMP handler: user already stamped from the session
+    private Message<byte[]> editFrame() {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SEND);
+        headers.setSessionId("ws-1");
+        headers.setSessionAttributes(sessionAttributes);
+        headers.setDestination("/app/session/s1/edit");
+        headers.setUser(alice);
+        headers.setLeaveMutable(true);
+        byte[] payload = "{\"op\":{\"type\":\"insert\",\"position\":42,\"text\":\"x\"},\"baseVersion\":7}".getBytes(StandardCharsets.UTF_8);
+        return MessageBuilder.createMessage(payload, headers.getMessageHeaders());
+    }
+}
@@ -0,0 +1,184 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import com.collabdebug.collabdebug_backend.security.StompPrincipal;
+import com.collabdebug.collabdebug_backend.service.CollabMetrics;
+import com.collabdebug.collabdebug_backend.service.SessionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionSendQueuesTest {
+
+    private static final int BUFFER_LIMIT = 16 * 1024;
+
+    private final CollabMetrics metrics = new CollabMetrics();
+    private final SessionService sessionService = mock(SessionService.class);
+    private final CountDownLatch stall = new CountDownLatch(1);
+    private final List<WebSocketMessage<?>> written = new CopyOnWriteArrayList<>();
+    private SessionSendQueues queues;
+
+    @AfterEach
+    void tearDown() {
+        stall.countDown();
+        if (queues != null) queues.shutdown();
+    }
+
+    @Test
+    void framesAreWrittenInOrder() throws Exception {
+        WebSocketSession client = connect(newQueues(60_000), rawSession(false));
+        for (int i = 0; i < 100; i++) client.sendMessage(frame("/topic/session/s1/edits", "e" + i));
+        awaitTrue(() -> written.size() == 100);
+        for (int i = 0; i < 100; i++) assertTrue(((TextMessage) written.get(i)).getPayload().contains("e" + i + "\0"));
+    }
+
+    @Test
+    void stalledConsumerGetsSnapshotInsteadOfStaleEdits() throws Exception {
+        WebSocketSession client = connect(newQueues(60_000), rawSession(true));
+        for (int i = 0; i < 100; i++) client.sendMessage(frame("/topic/session/s1/edits", "x".repeat(500)));
+
+        verify(sessionService, timeout(5000)).resyncConnection("s1", "alice", "ws-1");
+        assertTrue(metrics.count("ws.send.coalesced-frames") > 0);
+        assertEquals(1, metrics.count("ws.send.resyncs"));
+        assertEquals(0, metrics.count("ws.send.overflow-disconnects"));
+        assertTrue(((Number) metrics.snapshot().get("ws.send.queued-bytes")).longValue() <= BUFFER_LIMIT);
+    }
+
+    @Test
+    void editsDroppedAfterQueuedSnapshotTriggerAnotherResync() throws Exception {
+        WebSocketSession client = connect(newQueues(60_000), rawSession(true));
+        for (int i = 0; i < 100; i++) client.sendMessage(frame("/topic/session/s1/edits", "x".repeat(500)));
+        verify(sessionService, timeout(5000)).resyncConnection("s1", "alice", "ws-1");
+
+        client.sendMessage(frame("/user/queue/sync", "{\"fullSnapshot\":true}"));
+        for (int i = 0; i < 100; i++) client.sendMessage(frame("/topic/session/s1/edits", "x".repeat(500)));
+        verify(sessionService, timeout(5000).times(2)).resyncConnection("s1", "alice", "ws-1");
+    }
+
+    @Test
+    void overflowWithoutEditsDisconnects() throws Exception {
+        WebSocketSession raw = rawSession(true);
+        WebSocketSession client = connect(newQueues(60_000), raw);
+        for (int i = 0; i < 100; i++) client.sendMessage(frame("/topic/session/s1/terminal", "y".repeat(500)));
+
+        verify(raw).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1, metrics.count("ws.send.overflow-disconnects"));
+        assertTrue(metrics.count("ws.send.dropped-frames") > 0);
+        verify(sessionService, never()).resyncConnection(any(), any(), any());
+    }
+
+    @Test
+    void writeStuckPastTimeLimitDisconnects() throws Exception {
+        WebSocketSession raw = rawSession(true);
+        WebSocketSession client = connect(newQueues(100), raw);
+        client.sendMessage(frame("/topic/session/s1/chat", "hi"));
+
+        verify(raw, timeout(5000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(1, metrics.count("ws.send.overflow-disconnects"));
+    }
+
+    @Test
+    void destinationIsReadFromTextAndBinaryFrames() {
+        assertEquals("/topic/session/s1/edits", SessionSendQueues.destinationOf(frame("/topic/session/s1/edits", "{}")));
+        byte[] binary = "MESSAGE\ndestination:/user/queue/sync\ncontent-type:application/octet-stream\n\n{}\0".getBytes(StandardCharsets.UTF_8);
+        assertEquals("/user/queue/sync", SessionSendQueues.destinationOf(new BinaryMessage(binary)));
+        assertNull(SessionSendQueues.destinationOf(new TextMessage("CONNECTED\nversion:1.2\n\n\0")));
+    }
+
+    /** A tab that stops reading while a paste burst streams in: queued bytes stay bounded. */
+    @Test
+    void stalledTabBacklogStaysBounded() throws Exception {
+        WebSocketSession client = connect(newQueues(60_000), rawSession(true));
+        for (int i = 0; i < 2000; i++) {
+            client.sendMessage(frame("/topic/session/s1/edits", "{\"op\":{\"text\":\"" + "z".repeat(200) + "\"}}"));
+        }
+        verify(sessionService, timeout(5000)).resyncConnection("s1", "alice", "ws-1");
+        assertTrue(((Number) metrics.snapshot().get("ws.send.queued-bytes")).longValue() <= BUFFER_LIMIT);
+        assertEquals(0, metrics.count("ws.send.overflow-disconnects"));
+    }
+
+    /** A snapshot larger than the whole buffer, e.g. a big document on join, still goes out on an idle connection. */
+    @Test
+    void oversizedFrameOnIdleConnectionIsDelivered() throws Exception {
+        WebSocketSession raw = rawSession(false);
+        WebSocketSession client = connect(newQueues(60_000), raw);
+        TextMessage snapshot = frame("/user/queue/sync", "{\"fullSnapshot\":true,\"text\":\"" + "d".repeat(BUFFER_LIMIT * 2) + "\"}");
+        client.sendMessage(snapshot);
+
+        awaitTrue(() -> written.size() == 1);
+        assertSame(snapshot, written.get(0));
+        verify(raw, never()).close(any());
+        verify(sessionService, never()).resyncConnection(any(), any(), any());
+        assertEquals(0, metrics.count("ws.send.overflow-disconnects"));
+        assertEquals(0, metrics.count("ws.send.dropped-frames"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private SessionSendQueues newQueues(long sendTimeLimitMs) {
+        ObjectProvider<SessionService> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(sessionService);
+        queues = new SessionSendQueues(metrics, provider, BUFFER_LIMIT, sendTimeLimitMs, 512 * 1024);
+        return queues;
+    }
+
+    // Connects raw through the decorated handler and returns the session the STOMP layer sends to
+    private WebSocketSession connect(SessionSendQueues queues, WebSocketSession raw) throws Exception {
+        WebSocketHandler stomp = mock(WebSocketHandler.class);
+        queues.decorate(stomp).afterConnectionEstablished(raw);
+        ArgumentCaptor<WebSocketSession> session = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(stomp).afterConnectionEstablished(session.capture());
+        return session.getValue();
+    }
+
+    private WebSocketSession rawSession(boolean stalled) throws Exception {
+        WebSocketSession raw = mock(WebSocketSession.class);
+        Map<String, Object> attributes = new HashMap<>(Map.of("principal", new StompPrincipal("alice")));
+        when(raw.getId()).thenReturn("ws-1");
+        when(raw.isOpen()).thenReturn(true);
+        when(raw.getAttributes()).thenReturn(attributes);
+        doAnswer(inv -> {
+            if (stalled) stall.await(30, TimeUnit.SECONDS);
+            written.add(inv.getArgument(0));
+            return null;
+        }).when(raw).sendMessage(any());
+        return raw;
+    }
+
+    private static TextMessage frame(String destination, String body) {
+        return new TextMessage("MESSAGE\ndestination:" + destination + "\nsubscription:sub-0\nmessage-id:1\n\n" + body + "\0");
+    }
+
+    private static void awaitTrue(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
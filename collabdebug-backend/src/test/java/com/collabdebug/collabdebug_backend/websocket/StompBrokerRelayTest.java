@@ -0,0 +1,189 @@
+package com.collabdebug.collabdebug_backend.websocket;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Broker relay mode (Spring's Reactor Netty TCP client) against {@link EmbeddedStompBroker}. */
+class StompBrokerRelayTest {
+
+    private static final int SESSIONS = 20;
+    private static final int TOPICS = 10;
+
+    private final ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+    private final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    private final SimpMessagingTemplate template = new SimpMessagingTemplate(brokerChannel);
+
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicReference<CountDownLatch> deliveries = new AtomicReference<>(new CountDownLatch(0));
+    private final AtomicReference<Message<?>> lastDelivery = new AtomicReference<>();
+
+    StompBrokerRelayTest() {
+        clientOutbound.subscribe(message -> {
+            SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+            if (type == SimpMessageType.CONNECT_ACK
+                    || StompCommand.CONNECTED.equals(message.getHeaders().get("stompCommand"))) {
+                connected.incrementAndGet();
+            } else if (type == SimpMessageType.MESSAGE) {
+                lastDelivery.set(message);
+                deliveries.get().countDown();
+            }
+        });
+    }
+
+    @Test
+    void relaysSubscriptionsAndMessagesThroughExternalBroker() throws Exception {
+        try (EmbeddedStompBroker broker = new EmbeddedStompBroker()) {
+            StompBrokerRelayMessageHandler relay = startRelay(broker);
+            connect("client-1");
+            awaitTrue(() -> connected.get() == 1, "client connects");
+            subscribe("client-1", "sub-0", "/topic/session/s1/chat");
+            awaitTrue(() -> broker.subscriptionCount() == 1, "subscription reaches the broker");
+
+            deliveries.set(new CountDownLatch(1));
+            template.convertAndSend("/topic/session/s1/chat", "hello".getBytes(StandardCharsets.UTF_8));
+            assertTrue(deliveries.get().await(5, TimeUnit.SECONDS));
+
+            Message<?> delivered = lastDelivery.get();
+            StompHeaderAccessor headers = StompHeaderAccessor.wrap(delivered);
+            assertEquals("client-1", headers.getSessionId());
+            assertEquals("sub-0", headers.getSubscriptionId());
+            assertEquals("hello", new String((byte[]) delivered.getPayload(), StandardCharsets.UTF_8));
+            relay.stop();
+        }
+    }
+
+    @Test
+    void fansOutToEverySubscriberThroughTheBroker() throws Exception {
+        try (EmbeddedStompBroker broker = new EmbeddedStompBroker()) {
+            StompBrokerRelayMessageHandler relay = startRelay(broker);
+            subscribeAll(SESSIONS, TOPICS);
+            awaitTrue(() -> broker.subscriptionCount() == SESSIONS * TOPICS, "all subscriptions reach the broker");
+
+            for (int t = 0; t < TOPICS; t++) {
+                CountDownLatch latch = new CountDownLatch(SESSIONS);
+                deliveries.set(latch);
+                template.convertAndSend("/topic/session/s" + t + "/edits", "{\"type\":\"edit\"}".getBytes(StandardCharsets.UTF_8));
+                assertTrue(latch.await(10, TimeUnit.SECONDS), "every subscriber receives the message");
+            }
+            relay.stop();
+        }
+    }
+
+    /**
+     * Manual benchmark: 100 sessions x 100 topics = 10k subscriptions through the relay. Prints the
+     * heap retained per subscription (relay and embedded broker together, same JVM) and the time
+     * until the last of the 100 subscribers of a topic receives a message. Run with
+     * {@code mvn test -Dtest=StompBrokerRelayTest#fanOutBenchmark} after removing {@code @Disabled}.
+     */
+    @Test
+    @Disabled("manual benchmark")
+    void fanOutBenchmark() throws Exception {
+        int sessions = 100, topics = 100, rounds = 1000;
+        try (EmbeddedStompBroker broker = new EmbeddedStompBroker()) {
+            long heapBefore = usedHeap();
+            StompBrokerRelayMessageHandler relay = startRelay(broker);
+            subscribeAll(sessions, topics);
+            awaitTrue(() -> broker.subscriptionCount() == sessions * topics, "all subscriptions reach the broker");
+            long heapAfter = usedHeap();
+
+            byte[] payload = "{\"type\":\"edit\"}".getBytes(StandardCharsets.UTF_8);
+            long[] latencies = new long[rounds];
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                CountDownLatch latch = new CountDownLatch(sessions);
+                deliveries.set(latch);
+                long sent = System.nanoTime();
+                template.convertAndSend("/topic/session/s" + (i % topics) + "/edits", payload);
+                assertTrue(latch.await(10, TimeUnit.SECONDS), "every subscriber receives the message");
+                latencies[i] = System.nanoTime() - sent;
+            }
+            long elapsed = System.nanoTime() - start;
+            relay.stop();
+
+            Arrays.sort(latencies);
+            System.out.printf("[bench] %d subscriptions: %d bytes of heap per subscription%n",
+                    sessions * topics, (heapAfter - heapBefore) / (sessions * topics));
+            System.out.printf("[bench] fan-out to %d subscribers: p50 %.2f ms, p99 %.2f ms, max %.2f ms, %.0f deliveries/sec%n",
+                    sessions, latencies[rounds / 2] / 1e6, latencies[rounds * 99 / 100] / 1e6, latencies[rounds - 1] / 1e6,
+                    (double) rounds * sessions / (elapsed / 1e9));
+        }
+    }
+
+    private StompBrokerRelayMessageHandler startRelay(EmbeddedStompBroker broker) {
+        StompBrokerRelayMessageHandler relay = new StompBrokerRelayMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic", "/queue"));
+        relay.setRelayHost("127.0.0.1");
+        relay.setRelayPort(broker.port());
+        relay.setSystemHeartbeatSendInterval(0);
+        relay.setSystemHeartbeatReceiveInterval(0);
+        relay.start();
+        awaitTrue(relay::isBrokerAvailable, "system session connects");
+        return relay;
+    }
+
+    private void subscribeAll(int sessions, int topics) {
+        for (int s = 0; s < sessions; s++) connect("client-" + s);
+        awaitTrue(() -> connected.get() == sessions, "all clients connect");
+        for (int s = 0; s < sessions; s++) {
+            for (int t = 0; t < topics; t++) subscribe("client-" + s, "sub-" + t, "/topic/session/s" + t + "/edits");
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private void connect(String sessionId) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.CONNECT);
+        headers.setSessionId(sessionId);
+        headers.setAcceptVersion("1.2");
+        headers.setHeartbeat(0, 0);
+        clientInbound.send(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+    }
+
+    private void subscribe(String sessionId, String subscriptionId, String destination) {
+        StompHeaderAccessor headers = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        headers.setSessionId(sessionId);
+        headers.setSubscriptionId(subscriptionId);
+        headers.setDestination(destination);
+        clientInbound.send(MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders()));
+    }
+
+    private static void awaitTrue(java.util.function.BooleanSupplier condition, String what) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out waiting: " + what);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -14,8 +14,48 @@ import SockJS from 'sockjs-client';
 
 // Define the correct backend WebSocket URL
 const BACKEND_URL = 'http://localhost:8080/ws/session'; 
+// Plain WebSocket endpoint (compressed, binary edit frames); SockJS on BACKEND_URL is the fallback
+const NATIVE_WS_URL = 'ws://localhost:8080/ws/session-native';
 
 
+// Applies a ranged edit op ({rangeStart, rangeEnd, text} as character offsets) to a document string
+const applyOp = (doc, op) => {
+    const start = Number(op.rangeStart);
+    const end = op.isInsert ? start : Number(op.rangeEnd);
+    return doc.slice(0, start) + (op.text || '') + doc.slice(end);
+};
+
+// Ranged op turning `from` into `to` (common prefix and suffix trimmed, like TextOperation.diff on
+// the server), or null if they are equal
+const diffOp = (from, to) => {
+    if (from === to) return null;
+    const max = Math.min(from.length, to.length);
+    let prefix = 0;
+    while (prefix < max && from.charCodeAt(prefix) === to.charCodeAt(prefix)) prefix++;
+    let suffix = 0;
+    while (suffix < max - prefix
+        && from.charCodeAt(from.length - 1 - suffix) === to.charCodeAt(to.length - 1 - suffix)) suffix++;
+    const end = from.length - suffix;
+    return { rangeStart: String(prefix), rangeEnd: String(end), text: to.slice(prefix, to.length - suffix), isInsert: prefix === end };
+};
+
+// Rewrites `op` to apply on top of `applied`, both written against the same document (mirrors
+// TextOperation.transformAgainst on the server). `op` was sequenced first, so it wins insert ties.
+const transformOp = (op, applied) => {
+    const start = Number(op.rangeStart);
+    const end = op.isInsert ? start : Number(op.rangeEnd);
+    const aStart = Number(applied.rangeStart);
+    const aEnd = applied.isInsert ? aStart : Number(applied.rangeEnd);
+    const aText = applied.text || '';
+    const delta = aText.length - (aEnd - aStart);
+    const mapStart = (pos) => pos < aStart || (pos === aStart && start === end) ? pos
+        : pos >= aEnd ? pos + delta : aStart + aText.length;
+    const mapEnd = (pos) => pos <= aStart ? pos : pos >= aEnd ? pos + delta : aStart;
+    const newStart = mapStart(start);
+    const newEnd = start === end ? newStart : Math.max(newStart, mapEnd(end));
+    return { rangeStart: String(newStart), rangeEnd: String(newEnd), text: op.text || '', isInsert: newStart === newEnd };
+};
+
 const SessionRoom = () => {
     const { sessionId } = useParams();
     const navigate = useNavigate();
@@ -33,6 +73,14 @@ const SessionRoom = () => {
     const [sessionActive, setSessionActive] = useState(true);
     const [showSessionEndModal, setShowSessionEndModal] = useState(false);
     const editorRef = useRef(null); 
+    // Last server document version applied locally (used to validate incoming deltas).
+    // -1 = unknown, so the first sync returns a full snapshot.
+    const serverVersionRef = useRef(-1);
+    // The document at serverVersionRef (shadowRef) and in the editor (localTextRef). Local changes
+    // are sent as one ranged op between the two, with at most one op awaiting its broadcast.
+    const shadowRef = useRef('');
+    const localTextRef = useRef('');
+    const inFlightOpIdRef = useRef(null);
     const chatEndRef = useRef(null);
     const stompClientRef = useRef(null);
     
@@ -119,6 +167,23 @@ const SessionRoom = () => {
         };
     }, [sessionId, sessionActive]);
 
+    // Sends the editor changes the server does not have yet as one ranged op, based on the last
+    // server version we applied. Waits while an earlier op has not come back in the broadcast.
+    const sendPendingEdit = useCallback(() => {
+        const client = stompClientRef.current;
+        if (!client || !client.connected) return;
+        if (inFlightOpIdRef.current || serverVersionRef.current < 0) return;
+        const op = diffOp(shadowRef.current, localTextRef.current);
+        if (!op) return;
+
+        op.opId = `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+        inFlightOpIdRef.current = op.opId;
+        client.publish({
+            destination: `/app/session/${sessionId}/edit`,
+            body: JSON.stringify({ sessionId, userId: currentUserRef.current, clientVersion: serverVersionRef.current, op })
+        });
+    }, [sessionId]);
+
     // --- WebSocket / STOMP Setup ---
     useEffect(() => {
         //  Get token
@@ -136,12 +201,16 @@ const SessionRoom = () => {
         const socketUrlWithToken = `${BACKEND_URL}?token=${token}`; 
         const authHeader = `Bearer ${token}`;
         
-        //  Use the correct backend URL for SockJS
-        const socket = new SockJS(socketUrlWithToken); 
+        //  Native WebSocket first; fall back to SockJS if it never manages to connect
+        let useSockJs = typeof WebSocket === 'undefined';
+        let everConnected = false;
         
         //  Use the modern Client API
         const client = new Client({ 
-            webSocketFactory: () => socket, // Pass the SockJS instance as a factory
+            // A new socket for every (re)connect attempt; binary frames are decoded by STOMP (message.body is text)
+            webSocketFactory: () => useSockJs
+                ? new SockJS(socketUrlWithToken)
+                : new WebSocket(`${NATIVE_WS_URL}?token=${token}`),
             reconnectDelay: 5000,
             debug: (str) => console.log(`[STOMP-Client] ${str}`),
             connectHeaders: { 
@@ -151,27 +220,98 @@ const SessionRoom = () => {
         
         // Set up connection handlers
         client.onConnect = () => {
-            console.log('STOMP connected');
+            console.log(`STOMP connected (${useSockJs ? 'SockJS' : 'native WebSocket'})`);
+            everConnected = true;
             setIsConnected(true);
 
+            // Asks the server for everything after our last seen version (missed ops or a full snapshot)
+            const requestSync = () => {
+                client.publish({
+                    destination: `/app/session/${sessionId}/sync`,
+                    body: JSON.stringify({ sessionId, userId: currentUserRef.current, clientVersion: serverVersionRef.current })
+                });
+            };
+
+            // Replaces both copies of the document, dropping changes not sent yet (snapshots, rejections)
+            const resetDocument = (text) => {
+                shadowRef.current = text;
+                localTextRef.current = text;
+                inFlightOpIdRef.current = null;
+                setCode(text);
+            };
+
+            // Applies a server op to the shadow, and to the editor on top of our unsent changes
+            const applyRemoteOp = (op) => {
+                const pending = diffOp(shadowRef.current, localTextRef.current);
+                localTextRef.current = applyOp(localTextRef.current, pending ? transformOp(op, pending) : op);
+                shadowRef.current = applyOp(shadowRef.current, op);
+            };
+
+            // Edits arrive in micro-batches ("edit-batch" frames); each edit is applied in order
+            const applyEdit = (edit) => {
+                const op = edit.op || {};
+                if (serverVersionRef.current >= 0 && edit.serverVersion <= serverVersionRef.current) {
+                    return true; // already covered by a sync reply
+                }
+
+                // Full-text broadcast (a new session owner resyncing everyone)
+                if (op.rangeStart === null || op.rangeStart === undefined) {
+                    serverVersionRef.current = edit.serverVersion;
+                    resetDocument(op.text || '');
+                    return true;
+                }
+
+                // Delta broadcast: only applicable on top of the version it was computed against
+                if (edit.baseVersion !== serverVersionRef.current) {
+                    console.warn(`[Collab] Delta base ${edit.baseVersion} != local version ${serverVersionRef.current}. Resyncing.`);
+                    requestSync();
+                    return false;
+                }
+                serverVersionRef.current = edit.serverVersion;
+
+                if (inFlightOpIdRef.current && op.opId === inFlightOpIdRef.current) {
+                    // Our own op as the server sequenced it: the editor has it already, send what we typed since
+                    shadowRef.current = applyOp(shadowRef.current, op);
+                    inFlightOpIdRef.current = null;
+                    sendPendingEdit();
+                } else {
+                    applyRemoteOp(op);
+                    setCode(localTextRef.current);
+                    console.log(`[Collab] Applied delta from ${edit.userId} (v${edit.serverVersion}).`);
+                }
+                return true;
+            };
+
             // Subscribe to the public topic for successful edits (from other users)
             client.subscribe(`/topic/session/${sessionId}/edits`, (message) => {
-                const edit = JSON.parse(message.body);
-                
-                // IMPORTANT: Only apply external edits (not the ones you sent)
-                if(edit.userId !== currentUserRef.current) { 
-                    const receivedCode = edit.op.text; // Assuming 'op' contains the full text
+                const frame = JSON.parse(message.body);
+                const edits = frame.edits || [frame];
+                for (const edit of edits) {
+                    if (!applyEdit(edit)) break; // out of step: the sync reply covers the rest
+                }
+            });
 
-                    // Update local React state
-                    setCode(receivedCode); 
-                    
-                    if (editorRef.current) {
-                        // Use setValue to update the editor content
-                        editorRef.current.setValue(receivedCode);
-                        console.log(`[Collab] Editor content updated by ${edit.userId}.`);
+            // Catch-up replies: the ops we missed, or the full document if we fell too far behind
+            client.subscribe(`/user/queue/sync`, (message) => {
+                const res = JSON.parse(message.body);
+                if (res.fullSnapshot) {
+                    resetDocument(res.snapshot || '');
+                } else if (res.fromVersion === serverVersionRef.current) {
+                    if (inFlightOpIdRef.current) {
+                        // Our op may be among these (catch-up ops carry no opId): take the server's text
+                        resetDocument(res.ops.reduce(applyOp, shadowRef.current));
+                    } else {
+                        res.ops.forEach(applyRemoteOp);
+                        setCode(localTextRef.current);
                     }
+                } else {
+                    return; // stale reply; a newer sync is in flight
                 }
+                serverVersionRef.current = res.serverVersion;
+                console.log(`[Collab] Synced to server version ${res.serverVersion}.`);
+                sendPendingEdit();
             });
+            requestSync();
 
             // Subscribe to the private queue for server resyncs/rejections
             client.subscribe(`/user/queue/edits`, (message) => {
@@ -180,9 +320,17 @@ const SessionRoom = () => {
                 // Check if the response indicates the edit was NOT applied (a rejection)
                 if (!response.applied) {
                     console.warn(`[Collab] Edit rejected. Server version: ${response.serverVersion}. Resyncing.`);
+                    serverVersionRef.current = response.serverVersion;
+
+                    // No document: the server cannot load the session right now, ask for a full snapshot shortly
+                    if (response.updatedText === null || response.updatedText === undefined) {
+                        inFlightOpIdRef.current = null;
+                        setTimeout(requestSync, 1000);
+                        return;
+                    }
                     
                     // Update React State
-                    setCode(response.updatedText);
+                    resetDocument(response.updatedText);
                     
                     // Update Monaco Editor directly for resync
                     if (editorRef.current) {
@@ -330,6 +478,10 @@ const SessionRoom = () => {
         
         client.onWebSocketClose = () => {
             console.warn('STOMP disconnected');
+            if (!everConnected && !useSockJs) {
+                console.warn('Native WebSocket unavailable, falling back to SockJS');
+                useSockJs = true;
+            }
             setIsConnected(false); // Set connection state to false on close
             // When WebSocket closes, try to publish a final leave event if needed
             // This catches cases where the user closes the tab/window
@@ -379,32 +531,6 @@ const SessionRoom = () => {
             setChatInput(''); // Clear input after sending
         }
     }, [stompClient, sessionId, chatInput]);
-    // Handler to send the local edit via WebSocket
-    const sendEdit = useCallback((newCode) => {
-        if(!sessionActive) return; // ignore edits after session end
-
-        if(stompClient && stompClient.connected) { 
-            
-            // Defensive check: if newCode is empty or null, skip publishing.
-            if (newCode === null || newCode === undefined) return; 
-
-            const editMessage = {
-                sessionId,
-                userId: currentUserRef.current,
-                // Assuming clientVersion tracking is not implemented yet, so it defaults to 0
-                // clientVersion: currentVersion, 
-                op: { 
-                    type: 'replace',
-                    text: newCode, 
-                }
-            };
-            
-            stompClient.publish({ 
-                destination: `/app/session/${sessionId}/edit`, 
-                body: JSON.stringify(editMessage) 
-            });
-        }
-    }, [stompClient, sessionId]);
 
     const handleLanguageChange = (e) => {
         const newLang = e.target.value;
@@ -436,12 +562,12 @@ const SessionRoom = () => {
         const safeCode = newCode || ''; 
         
         setCode(safeCode); // Update local state first
-        
-        // Only proceed to send the edit if the value is a string
-        if (typeof safeCode === 'string') {
-            sendEdit(safeCode); 
-        }
-    }, [sendEdit]);
+        if (!sessionActive) return; // ignore edits after session end
+
+        // Sent as a ranged op against the last server version (see sendPendingEdit)
+        localTextRef.current = safeCode;
+        sendPendingEdit();
+    }, [sendPendingEdit, sessionActive]);
 
 
     const handleRunCode = async () => {